@@ -0,0 +1,396 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+// Trigram inverted index over the lowercased ISBN, title, author and category
+// of every book. Candidates from the posting intersection are re-checked with
+// contains(), so results are exactly what the old full scan returned, in
+// catalogue order. Queries share a read lock; catalogue edits take the write
+// lock, which borrow and return never touch.
+//
+// A removed book leaves an empty doc slot behind. Once those are more than
+// half of all slots the index is renumbered and its postings rebuilt, so a
+// catalogue with churn does not grow it without bound.
+class BookSearchIndex {
+    private static final int GRAM = 3;
+    private static final char FIELD_SEPARATOR = '\0';
+    private static final int PARALLEL_BATCH = 4096;
+    private static final int MIN_COMPACT_SLOTS = 1024;
+
+    private List<Book> docs = new ArrayList<>();
+    private List<String> haystacks = new ArrayList<>();
+    private final Map<Book, Integer> docIds = new IdentityHashMap<>();
+    private GramTable postings = new GramTable();
+    private int emptySlots;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Works out the haystacks and trigrams of a batch without taking the
+    // lock, in parallel for large batches, so that add(prepared, i) only
+    // has to store them.
+    public Prepared prepare(List<Book> batch) {
+        Prepared prepared = new Prepared(batch);
+        IntStream range = IntStream.range(0, batch.size());
+        (batch.size() >= PARALLEL_BATCH ? range.parallel() : range).forEach(i -> {
+            prepared.haystacks[i] = haystackOf(batch.get(i));
+            prepared.grams[i] = gramsOf(prepared.haystacks[i]);
+        });
+        return prepared;
+    }
+
+    // Indexes the i-th book of a prepared batch unless it is indexed already.
+    public void add(Prepared prepared, int i) {
+        Book book = prepared.books.get(i);
+        lock.writeLock().lock();
+        try {
+            if (!docIds.containsKey(book)) {
+                addLocked(book, prepared.haystacks[i], prepared.grams[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            Integer id = docIds.remove(book);
+            if (id == null) {
+                return;
+            }
+            unindex(id, haystacks.get(id));
+            docs.set(id, null);
+            haystacks.set(id, null);
+            if (++emptySlots >= MIN_COMPACT_SLOTS && emptySlots * 2 > docs.size()) {
+                compactLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(Book book) {
+        lock.writeLock().lock();
+        try {
+            Integer id = docIds.get(book);
+            if (id == null) {
+                addLocked(book);
+                return;
+            }
+            String haystack = haystackOf(book);
+            unindex(id, haystacks.get(id));
+            haystacks.set(id, haystack);
+            for (long gram : gramsOf(haystack)) {
+                postings.getOrCreate(gram).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Book> search(String query) {
+        lock.readLock().lock();
+        try {
+            return booksLocked(searchIdsLocked(query.toLowerCase()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Doc ids of the matches, in catalogue order. Ids are only meaningful
+    // until the next add, remove or update.
+    public int[] searchIds(String query) {
+        lock.readLock().lock();
+        try {
+            return searchIdsLocked(query.toLowerCase());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The subset of ids, from an earlier searchIds, that also match query.
+    public int[] refineIds(int[] ids, String query) {
+        String lowerQuery = query.toLowerCase();
+        lock.readLock().lock();
+        try {
+            int[] matches = new int[ids.length];
+            int count = 0;
+            for (int id : ids) {
+                String haystack = id < haystacks.size() ? haystacks.get(id) : null;
+                if (haystack != null && haystack.contains(lowerQuery)) {
+                    matches[count++] = id;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> booksFor(int[] ids) {
+        lock.readLock().lock();
+        try {
+            return booksLocked(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids from before a compaction may point past the end or at another
+    // book; the catalogue version has moved on by then, so callers drop them.
+    private List<Book> booksLocked(int[] ids) {
+        List<Book> books = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Book book = id < docs.size() ? docs.get(id) : null;
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    private int[] searchIdsLocked(String lowerQuery) {
+        if (lowerQuery.length() < GRAM) {
+            // Too short to have a trigram; scan the cached lowercase fields.
+            int[] matches = new int[haystacks.size()];
+            int count = 0;
+            for (int id = 0; id < haystacks.size(); id++) {
+                String haystack = haystacks.get(id);
+                if (haystack != null && haystack.contains(lowerQuery)) {
+                    matches[count++] = id;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+
+        long[] grams = gramsOf(lowerQuery);
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            Postings list = postings.get(grams[i]);
+            if (list == null || list.size == 0) {
+                return new int[0];
+            }
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = lists[i].retainIn(candidates, count);
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            if (haystacks.get(id).contains(lowerQuery)) {
+                candidates[kept++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, kept);
+    }
+
+    private void addLocked(Book book) {
+        String haystack = haystackOf(book);
+        addLocked(book, haystack, gramsOf(haystack));
+    }
+
+    private void addLocked(Book book, String haystack, long[] grams) {
+        int id = docs.size();
+        docs.add(book);
+        haystacks.add(haystack);
+        docIds.put(book, id);
+        for (long gram : grams) {
+            postings.getOrCreate(gram).add(id);
+        }
+    }
+
+    // Renumbers the remaining books densely, keeping their order, and
+    // rebuilds the postings without the trigrams only removed books had.
+    private void compactLocked() {
+        List<Book> oldDocs = docs;
+        List<String> oldHaystacks = haystacks;
+        docs = new ArrayList<>(oldDocs.size() - emptySlots);
+        haystacks = new ArrayList<>(oldDocs.size() - emptySlots);
+        docIds.clear();
+        postings = new GramTable();
+        emptySlots = 0;
+        for (int id = 0; id < oldDocs.size(); id++) {
+            Book book = oldDocs.get(id);
+            if (book != null) {
+                addLocked(book, oldHaystacks.get(id), gramsOf(oldHaystacks.get(id)));
+            }
+        }
+    }
+
+    private void unindex(int id, String haystack) {
+        for (long gram : gramsOf(haystack)) {
+            Postings list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+            }
+        }
+    }
+
+    private static String haystackOf(Book book) {
+        return book.getTitle().toLowerCase() + FIELD_SEPARATOR
+                + book.getAuthor().toLowerCase() + FIELD_SEPARATOR
+                + book.getIsbn().toLowerCase() + FIELD_SEPARATOR
+                + book.getCategory().toLowerCase();
+    }
+
+    // Distinct trigrams of the text, sorted; none spans a field separator.
+    private static long[] gramsOf(String text) {
+        int windows = Math.max(0, text.length() - GRAM + 1);
+        long[] grams = new long[windows];
+        int n = 0;
+        for (int i = 0; i < windows; i++) {
+            char c0 = text.charAt(i);
+            char c1 = text.charAt(i + 1);
+            char c2 = text.charAt(i + 2);
+            if (c0 != FIELD_SEPARATOR && c1 != FIELD_SEPARATOR && c2 != FIELD_SEPARATOR) {
+                grams[n++] = ((long) c0 << 32) | ((long) c1 << 16) | c2;
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    // Open-addressing map from packed trigram to postings, avoiding a boxed
+    // key per lookup. Emptied postings stay in place and read as no match.
+    private static final class GramTable {
+        private long[] keys = new long[1 << 12];
+        private Postings[] values = new Postings[1 << 12];
+        private int size;
+
+        Postings get(long gram) {
+            int mask = keys.length - 1;
+            for (int slot = mix(gram) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long gram) {
+            int mask = keys.length - 1;
+            int slot = mix(gram) & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            Postings created = new Postings();
+            keys[slot] = gram;
+            values[slot] = created;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return created;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(long gram) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    // Sorted doc ids for one trigram.
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (size == 0 || ids[size - 1] < id) {
+                ids[size++] = id;
+                return;
+            }
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        // Keeps only the candidates also present in this list; returns the new count.
+        int retainIn(int[] candidates, int count) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < count && j < size; i++) {
+                int id = candidates[i];
+                while (j < size && ids[j] < id) {
+                    j++;
+                }
+                if (j < size && ids[j] == id) {
+                    candidates[kept++] = id;
+                }
+            }
+            return kept;
+        }
+    }
+
+    static final class Prepared {
+        private final List<Book> books;
+        private final String[] haystacks;
+        private final long[][] grams;
+
+        private Prepared(List<Book> books) {
+            this.books = books;
+            this.haystacks = new String[books.size()];
+            this.grams = new long[books.size()][];
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Rows are the Book objects themselves; cells are read (and dates formatted)
+// only when the table asks for a visible cell.
+class BooksTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"ISBN", "Title", "Author", "Category", "Total Copies", "Available", "Date Added"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private List<Book> books = new ArrayList<>();
+    // Whether books is this model's own copy rather than the caller's list.
+    private boolean copied = true;
+    // Row of each listed book by ISBN; built on first use after the rows move.
+    private Map<String, Integer> rows = new HashMap<>();
+
+    // Typically the manager's catalogue snapshot or a search result. The
+    // list is not changed; booksAdded and booksRemoved work on a copy.
+    public void setBooks(List<Book> books) {
+        this.books = books;
+        copied = false;
+        rows = null;
+        fireTableDataChanged();
+    }
+
+    public Book getBookAt(int row) {
+        return books.get(row);
+    }
+
+    // The row showing this Book object, or -1.
+    public int rowOf(Book book) {
+        if (rows == null) {
+            rows = new HashMap<>(books.size() * 4 / 3 + 1);
+            for (int i = 0; i < books.size(); i++) {
+                rows.put(books.get(i).getIsbn(), i);
+            }
+        }
+        Integer row = rows.get(book.getIsbn());
+        return row != null && books.get(row) == book ? row : -1;
+    }
+
+    // Appends books added to the shown catalogue. A book already listed, as
+    // when the snapshot was taken after it was added, is not listed twice.
+    public void booksAdded(Collection<Book> added) {
+        int first = books.size();
+        for (Book book : added) {
+            if (rowOf(book) < 0) {
+                ownBooks().add(book);
+                rows.put(book.getIsbn(), books.size() - 1);
+            }
+        }
+        if (books.size() > first) {
+            fireTableRowsInserted(first, books.size() - 1);
+        }
+    }
+
+    // Drops the rows of removed books, last row first, so JTable shifts the
+    // selection past each one instead of clearing it.
+    public void booksRemoved(Collection<Book> removed) {
+        Set<Integer> gone = new TreeSet<>(Collections.reverseOrder());
+        for (Book book : removed) {
+            int row = rowOf(book);
+            if (row >= 0) {
+                gone.add(row);
+            }
+        }
+        for (int row : gone) {
+            ownBooks().remove(row);
+            rows = null;
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    public void booksUpdated(Collection<Book> changed) {
+        for (Book book : changed) {
+            int row = rowOf(book);
+            if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+
+    private List<Book> ownBooks() {
+        if (!copied) {
+            books = new ArrayList<>(books);
+            copied = true;
+        }
+        return books;
+    }
+
+    @Override
+    public int getRowCount() {
+        return books.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book book = books.get(row);
+        switch (column) {
+            case 0: return book.getIsbn();
+            case 1: return book.getTitle();
+            case 2: return book.getAuthor();
+            case 3: return book.getCategory();
+            case 4: return book.getTotalCopies();
+            case 5: return book.getAvailableCopies();
+            case 6: return book.getDateAdded().format(DATE_FORMAT);
+            default: throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Rows are BorrowRecord objects; dates and status are formatted lazily for
+// the cells actually painted.
+class BorrowRecordsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"ISBN", "Title", "Borrower", "Email", "Borrow Date", "Due Date", "Return Date", "Status"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final LibraryClock clock;
+    private List<BorrowRecord> records = new ArrayList<>();
+
+    public BorrowRecordsTableModel(LibraryClock clock) {
+        this.clock = clock;
+    }
+
+    // For the full history this is a snapshot whose archived rows are only
+    // rebuilt as they are painted.
+    public void setRecords(List<BorrowRecord> records) {
+        this.records = records;
+        fireTableDataChanged();
+    }
+
+    // Statuses depend on today's date; repaint without touching the rows.
+    public void statusesChanged() {
+        if (!records.isEmpty()) {
+            fireTableRowsUpdated(0, records.size() - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return records.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        BorrowRecord record = records.get(row);
+        switch (column) {
+            case 0: return record.getIsbn();
+            case 1: return record.getTitle();
+            case 2: return record.getBorrowerName();
+            case 3: return record.getBorrowerEmail();
+            case 4: return record.getBorrowDate().format(DATE_FORMAT);
+            case 5: return record.getDueDate().format(DATE_FORMAT);
+            case 6: return record.getReturnDate() != null ? record.getReturnDate().format(DATE_FORMAT) : "";
+            case 7: return record.isReturned() ? "Returned" : (record.isOverdue(clock.today()) ? "Overdue" : "Active");
+            default: throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Bulk catalogue import from CSV: isbn,title,author,category,copies, with an
+// optional header row. Extra columns are ignored, so an inventory CSV export
+// imports as-is. The file is read sequentially into chunks of records,
+// chunks are parsed and validated in parallel, duplicates are dropped by
+// normalized ISBN as the chunks come back in file order (first occurrence
+// wins), and the survivors are applied with LibraryManager.addBooks.
+class CatalogueImport {
+    private static final int CHUNK_RECORDS = 8192;
+    private static final int MAX_ERRORS = 100;
+
+    // bytesRead stays below totalBytes until the records have been added to
+    // the catalogue, which for a large file takes a while after the last read.
+    interface Progress {
+        void update(long records, long bytesRead, long totalBytes);
+    }
+
+    public static final class Result {
+        private final long records;
+        private final int imported;
+        private final int duplicates;
+        private final int alreadyCatalogued;
+        private final long rejected;
+        private final List<String> errors;
+        private final long elapsedNanos;
+
+        Result(long records, int imported, int duplicates, int alreadyCatalogued, long rejected,
+               List<String> errors, long elapsedNanos) {
+            this.records = records;
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.alreadyCatalogued = alreadyCatalogued;
+            this.rejected = rejected;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRecords() { return records; }
+        public int getImported() { return imported; }
+        public int getDuplicates() { return duplicates; }
+        public int getAlreadyCatalogued() { return alreadyCatalogued; }
+        public long getRejected() { return rejected; }
+        // The first few validation errors, as "line N: reason".
+        public List<String> getErrors() { return errors; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public long recordsPerSecond() {
+            return elapsedNanos == 0 ? records : records * 1_000_000_000L / elapsedNanos;
+        }
+    }
+
+    private final LibraryManager manager;
+    private final int threads;
+
+    public CatalogueImport(LibraryManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CatalogueImport(LibraryManager manager, int threads) {
+        this.manager = manager;
+        this.threads = threads;
+    }
+
+    public Result importFile(Path file, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "catalogue-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Queue<Future<ParsedChunk>> pending = new ArrayDeque<>();
+        Batch batch = new Batch();
+        long totalBytes;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(channel), StandardCharsets.UTF_8), 1 << 16)) {
+            totalBytes = channel.size();
+            RecordReader records = new RecordReader(reader);
+            boolean first = true;
+            while (true) {
+                RawChunk chunk = records.next(CHUNK_RECORDS);
+                if (chunk == null) {
+                    break;
+                }
+                if (first && chunk.size > 0 && isHeader(chunk.records[0])) {
+                    chunk.skipFirst();
+                }
+                first = false;
+                pending.add(parsers.submit(() -> parse(chunk)));
+
+                while (pending.size() > threads * 2 || (!pending.isEmpty() && pending.peek().isDone())) {
+                    batch.absorb(take(pending));
+                    progress.update(batch.records, Math.min(channel.position(), totalBytes - 1), totalBytes);
+                }
+            }
+            while (!pending.isEmpty()) {
+                batch.absorb(take(pending));
+                progress.update(batch.records, totalBytes - 1, totalBytes);
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        List<Book> added = manager.addBooks(batch.books);
+        progress.update(batch.records, totalBytes, totalBytes);
+        return new Result(batch.records, added.size(), batch.duplicates, batch.books.size() - added.size(),
+                batch.rejected, batch.errors, System.nanoTime() - start);
+    }
+
+    private static ParsedChunk take(Queue<Future<ParsedChunk>> pending) throws IOException {
+        try {
+            return pending.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+    }
+
+    private static boolean isHeader(String record) {
+        return record.regionMatches(true, 0, "isbn", 0, 4) || record.regionMatches(true, 0, "\"isbn\"", 0, 6);
+    }
+
+    private static ParsedChunk parse(RawChunk chunk) {
+        ParsedChunk parsed = new ParsedChunk(chunk.size);
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < chunk.size; i++) {
+            String record = chunk.records[i];
+            if (record.isBlank()) {
+                continue;
+            }
+            parsed.records++;
+            split(record, fields, field);
+            String error = validate(fields);
+            if (error != null) {
+                parsed.errors.add("line " + chunk.lines[i] + ": " + error);
+                continue;
+            }
+            Book book = new Book(fields.get(0), fields.get(1), fields.get(2), fields.get(3),
+                    Integer.parseInt(fields.get(4)));
+            parsed.keys.add(Isbn.normalize(book.getIsbn()));
+            parsed.books.add(book);
+        }
+        return parsed;
+    }
+
+    private static String validate(List<String> fields) {
+        if (fields.size() < 5) {
+            return "expected isbn,title,author,category,copies but found " + fields.size() + " fields";
+        }
+        String[] names = {"ISBN", "title", "author", "category"};
+        for (int i = 0; i < names.length; i++) {
+            if (fields.get(i).isEmpty()) {
+                return names[i] + " is empty";
+            }
+        }
+        String copies = fields.get(4);
+        if (copies.isEmpty() || copies.length() > 6) {
+            return "copies must be a positive number";
+        }
+        for (int i = 0; i < copies.length(); i++) {
+            if (copies.charAt(i) < '0' || copies.charAt(i) > '9') {
+                return "copies must be a positive number";
+            }
+        }
+        if (Integer.parseInt(copies) < 1) {
+            return "copies must be a positive number";
+        }
+        return null;
+    }
+
+    // RFC 4180 fields, trimmed; a doubled quote inside quotes is a literal quote.
+    private static void split(String record, List<String> fields, StringBuilder field) {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+    }
+
+    // Splits the input into CSV records, joining lines that fall inside quotes.
+    private static final class RecordReader {
+        private final BufferedReader reader;
+        private int lineNumber;
+
+        RecordReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        RawChunk next(int maxRecords) throws IOException {
+            RawChunk chunk = new RawChunk(maxRecords);
+            String line;
+            while (chunk.size < maxRecords && (line = reader.readLine()) != null) {
+                int startLine = ++lineNumber;
+                String record = line;
+                if (hasOpenQuote(line)) {
+                    StringBuilder joined = new StringBuilder(line);
+                    boolean open = true;
+                    while (open && (line = reader.readLine()) != null) {
+                        lineNumber++;
+                        joined.append('\n').append(line);
+                        open ^= hasOpenQuote(line);
+                    }
+                    record = joined.toString();
+                }
+                chunk.records[chunk.size] = record;
+                chunk.lines[chunk.size++] = startLine;
+            }
+            return chunk.size == 0 ? null : chunk;
+        }
+
+        private static boolean hasOpenQuote(String line) {
+            boolean open = false;
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"') {
+                    open = !open;
+                }
+            }
+            return open;
+        }
+    }
+
+    private static final class RawChunk {
+        String[] records;
+        int[] lines;
+        int size;
+
+        RawChunk(int capacity) {
+            records = new String[capacity];
+            lines = new int[capacity];
+        }
+
+        void skipFirst() {
+            System.arraycopy(records, 1, records, 0, size - 1);
+            System.arraycopy(lines, 1, lines, 0, size - 1);
+            size--;
+        }
+    }
+
+    // Parsed chunks folded together in file order.
+    private static final class Batch {
+        final Set<String> seen = new HashSet<>();
+        final List<Book> books = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        long records;
+        long rejected;
+        int duplicates;
+
+        void absorb(ParsedChunk parsed) {
+            records += parsed.records;
+            rejected += parsed.errors.size();
+            for (int i = 0; i < parsed.books.size(); i++) {
+                if (seen.add(parsed.keys.get(i))) {
+                    books.add(parsed.books.get(i));
+                } else {
+                    duplicates++;
+                }
+            }
+            for (int i = 0; i < parsed.errors.size() && errors.size() < MAX_ERRORS; i++) {
+                errors.add(parsed.errors.get(i));
+            }
+        }
+    }
+
+    private static final class ParsedChunk {
+        final List<String> keys;
+        final List<Book> books;
+        final List<String> errors = new ArrayList<>();
+        long records;
+
+        ParsedChunk(int capacity) {
+            keys = new ArrayList<>(capacity);
+            books = new ArrayList<>(capacity);
+        }
+    }
+}
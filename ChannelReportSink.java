@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// UTF-8 encodes report text into one reusable byte buffer and writes it to
+// a channel: a file, a stream, or stdout.
+class ChannelReportSink implements ReportWriter.Sink {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_BYTES);
+    private long position;
+
+    protected ChannelReportSink(WritableByteChannel channel, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+    }
+
+    public static ChannelReportSink toFile(Path path) throws IOException {
+        return new ChannelReportSink(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), true);
+    }
+
+    // Closing the sink closes the stream, e.g. to end an HTTP response.
+    public static ChannelReportSink toStream(OutputStream stream) {
+        return new ChannelReportSink(Channels.newChannel(stream), true);
+    }
+
+    // Closing the sink flushes stdout but leaves it open.
+    public static ChannelReportSink toStdout() {
+        return new ChannelReportSink(Channels.newChannel(System.out), false);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        encode(CharBuffer.wrap(chars, offset, length), false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(CharBuffer.allocate(0), true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            } else {
+                System.out.flush();
+            }
+        }
+    }
+
+    // Called with each encoded chunk, before it is written at position.
+    protected void written(ByteBuffer chunk, long position) {
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        written(bytes.asReadOnlyBuffer(), position);
+        position += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
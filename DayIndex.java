@@ -0,0 +1,51 @@
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntPredicate;
+
+// Row numbers of an append-only table in a skip list keyed by epoch day, so
+// a date range is read day by day without touching rows outside it. Rows
+// are added in increasing order, which keeps each day's rows sorted.
+//
+// add is serialized by the table. Readers take no lock; see RowList.
+final class DayIndex {
+    private final ConcurrentSkipListMap<Integer, RowList> days = new ConcurrentSkipListMap<>();
+
+    void add(int day, int row) {
+        RowList rows = days.get(day);
+        if (rows == null) {
+            rows = new RowList();
+            days.put(day, rows);
+        }
+        rows.add(row);
+    }
+
+    // Visits the rows below rowLimit on days fromDay..toDay (inclusive), by
+    // day and then by row, in descending order if asked. Stops and returns
+    // false as soon as visitor does.
+    boolean scan(int fromDay, int toDay, boolean descending, int rowLimit, IntPredicate visitor) {
+        if (fromDay > toDay) {
+            return true;
+        }
+        NavigableMap<Integer, RowList> range = days.subMap(fromDay, true, toDay, true);
+        for (Map.Entry<Integer, RowList> day : (descending ? range.descendingMap() : range).entrySet()) {
+            if (!day.getValue().scan(descending, rowLimit, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Rows on days fromDay..toDay, counting any added after the caller's
+    // view; reads one count per day.
+    long count(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        long rows = 0;
+        for (RowList day : days.subMap(fromDay, true, toDay, true).values()) {
+            rows += day.count();
+        }
+        return rows;
+    }
+}
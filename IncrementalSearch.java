@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Search-as-you-type front end for the catalogue's search index. Recent
+// results are kept in an LRU cache bounded by total hits, and a query that
+// extends the previous one (so can only match a subset of it) re-checks the
+// previous hits instead of going back to the postings. Both are dropped
+// whenever the catalogue version changes, since doc ids and matches may
+// have moved.
+class IncrementalSearch {
+    private static final int CACHE_QUERIES = 64;
+    private static final int CACHE_HITS = 2_000_000;
+
+    private final LibraryManager manager;
+    private final LinkedHashMap<String, Result> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedHits;
+    private long version = -1;
+    private String lastQuery;
+    private Result lastResult;
+
+    public IncrementalSearch(LibraryManager manager) {
+        this.manager = manager;
+    }
+
+    // Returns a fresh list the caller may modify.
+    public synchronized List<Book> search(String query) {
+        long start = LibraryMetrics.start();
+        manager.trace(OperationTrace.Kind.SEARCH, null, query, null, null);
+        BookSearchIndex index = manager.searchIndex();
+        long current = manager.getCatalogueVersion();
+        if (current != version) {
+            cache.clear();
+            cachedHits = 0;
+            lastQuery = null;
+            lastResult = null;
+            version = current;
+        }
+
+        String lowerQuery = query.toLowerCase();
+        Result result = cache.get(lowerQuery);
+        if (result == null) {
+            int[] ids;
+            if (lastQuery != null && lowerQuery.contains(lastQuery)) {
+                ids = index.refineIds(lastResult.ids, lowerQuery);
+            } else {
+                ids = index.searchIds(lowerQuery);
+            }
+            result = new Result(ids, index.booksFor(ids));
+            remember(lowerQuery, result);
+        }
+        lastQuery = lowerQuery;
+        lastResult = result;
+        List<Book> books = new ArrayList<>(result.books);
+        LibraryMetrics.record(LibraryMetrics.Operation.SEARCH, start);
+        return books;
+    }
+
+    private void remember(String lowerQuery, Result result) {
+        cache.put(lowerQuery, result);
+        cachedHits += result.ids.length;
+        Iterator<Result> eldest = cache.values().iterator();
+        while (cache.size() > 1 && (cache.size() > CACHE_QUERIES || cachedHits > CACHE_HITS)) {
+            cachedHits -= eldest.next().ids.length;
+            eldest.remove();
+        }
+    }
+
+    private static final class Result {
+        final int[] ids;
+        final List<Book> books;
+
+        Result(int[] ids, List<Book> books) {
+            this.ids = ids;
+            this.books = books;
+        }
+    }
+}
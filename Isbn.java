@@ -0,0 +1,60 @@
+final class Isbn {
+    private Isbn() {
+    }
+
+    // Canonical key for an ISBN as typed: hyphens and spaces dropped, and an
+    // ISBN-10 whose check digit is right rewritten as its 978-prefixed
+    // ISBN-13 so both forms match. Anything else is kept as typed, so a
+    // mistyped ISBN-10 stays a key of its own rather than being rejected.
+    public static String normalize(String isbn) {
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c != '-' && c != ' ') {
+                digits.append(Character.toUpperCase(c));
+            }
+        }
+        if (digits.length() == 10 && isIsbn10(digits)) {
+            return toIsbn13(digits);
+        }
+        return digits.toString();
+    }
+
+    private static boolean isIsbn10(CharSequence s) {
+        for (int i = 0; i < 9; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        char last = s.charAt(9);
+        int check;
+        if (last >= '0' && last <= '9') {
+            check = last - '0';
+        } else if (last == 'X') {
+            check = 10;
+        } else {
+            return false;
+        }
+        // Weights 10 down to 1; the weighted sum is a multiple of 11.
+        int sum = check;
+        for (int i = 0; i < 9; i++) {
+            sum += (s.charAt(i) - '0') * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+
+    private static String toIsbn13(CharSequence isbn10) {
+        char[] out = new char[13];
+        out[0] = '9';
+        out[1] = '7';
+        out[2] = '8';
+        int sum = 9 + 7 * 3 + 8;
+        for (int i = 0; i < 9; i++) {
+            char c = isbn10.charAt(i);
+            out[i + 3] = c;
+            sum += (c - '0') * ((i + 3) % 2 == 0 ? 1 : 3);
+        }
+        out[12] = (char) ('0' + (10 - sum % 10) % 10);
+        return new String(out);
+    }
+}
@@ -0,0 +1,126 @@
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Minimal JSON output for the HTTP API. Callers spell out every field, so
+// nothing is discovered by reflection; commas are inserted automatically.
+final class JsonWriter {
+    private final StringBuilder out = new StringBuilder(256);
+    // True right after an opening bracket or a member name, where the next
+    // value must not be preceded by a comma.
+    private boolean atStart = true;
+
+    JsonWriter beginObject() {
+        separate();
+        out.append('{');
+        atStart = true;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        out.append('}');
+        atStart = false;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separate();
+        out.append('[');
+        atStart = true;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        out.append(']');
+        atStart = false;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separate();
+        string(name);
+        out.append(':');
+        atStart = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(value);
+        }
+        atStart = false;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separate();
+        out.append(value);
+        atStart = false;
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separate();
+        out.append(value);
+        atStart = false;
+        return this;
+    }
+
+    JsonWriter value(LocalDate value) {
+        return value(value != null ? value.toString() : null);
+    }
+
+    JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, LocalDate value) {
+        return name(name).value(value);
+    }
+
+    byte[] toBytes() {
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void separate() {
+        if (!atStart) {
+            out.append(',');
+        }
+    }
+
+    private void string(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency counts in log-linear buckets, in the manner of HdrHistogram:
+// values below 128 ns get a bucket each; above that, every power of two is
+// split into 64 buckets, so a reported value is within 1/64 (about 1.6%)
+// of the recorded one. Values are capped at 2^40 ns, about 18 minutes.
+//
+// record() only increments an array slot, so it allocates nothing and any
+// number of threads can record at once. As in LongAdder, the counts are
+// split into rows: every histogram starts with one, and the first time two
+// recorders collide on a slot the rows double, up to the number of cores.
+// A thread records into the row its hash picks. Each row is its own
+// padded array, so threads in different rows share no cache line. A
+// snapshot sums the rows; it may straddle concurrent records but never
+// loses them.
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+    // 128 bytes of longs either side of a row's counts, two cache lines.
+    private static final int PADDING = 16;
+    private static final int MAX_ROWS = Integer.highestOneBit(
+            Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private volatile AtomicLongArray[] rows = {newRow()};
+
+    void record(long nanos) {
+        int slot = PADDING + indexOf(Math.max(0, Math.min(nanos, MAX_VALUE)));
+        AtomicLongArray[] rows = this.rows;
+        AtomicLongArray row = rows[threadHash() & (rows.length - 1)];
+        long count = row.get(slot);
+        if (!row.compareAndSet(slot, count, count + 1)) {
+            row.incrementAndGet(slot);
+            grow(rows);
+        }
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (AtomicLongArray row : rows) {
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] += row.get(PADDING + i);
+            }
+        }
+        return new Snapshot(copy);
+    }
+
+    static Snapshot emptySnapshot() {
+        return new Snapshot(new long[BUCKETS]);
+    }
+
+    // Doubles the rows seen contended, unless another recorder already has.
+    private synchronized void grow(AtomicLongArray[] contended) {
+        if (rows != contended || contended.length >= MAX_ROWS) {
+            return;
+        }
+        AtomicLongArray[] grown = Arrays.copyOf(contended, contended.length * 2);
+        for (int i = contended.length; i < grown.length; i++) {
+            grown[i] = newRow();
+        }
+        rows = grown;
+    }
+
+    private static AtomicLongArray newRow() {
+        return new AtomicLongArray(PADDING + BUCKETS + PADDING);
+    }
+
+    // Fibonacci hashing of the thread's identity hash, spreading threads
+    // evenly over the low bits whatever their hash codes look like.
+    private static int threadHash() {
+        return (System.identityHashCode(Thread.currentThread()) * 0x9E3779B9) >>> 16;
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // The largest value that lands in the bucket, as HdrHistogram reports.
+    private static long highestValueAt(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final double totalNanos;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long count = 0;
+            double total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i];
+                total += (double) counts[i] * highestValueAt(i);
+            }
+            this.count = count;
+            this.totalNanos = total;
+        }
+
+        long getCount() { return count; }
+
+        double getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        long getMaxNanos() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValueAt(i);
+                }
+            }
+            return 0;
+        }
+
+        // percentile in [0, 100]; 0 when nothing was recorded.
+        long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueAt(i);
+                }
+            }
+            return getMaxNanos();
+        }
+
+        // The counts of both, as if recorded in one histogram.
+        Snapshot plus(Snapshot other) {
+            long[] sum = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                sum[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(sum);
+        }
+
+        // Only what was recorded after earlier was taken.
+        Snapshot since(Snapshot earlier) {
+            long[] difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                difference[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(difference);
+        }
+    }
+}
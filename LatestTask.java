@@ -0,0 +1,70 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// One slot of background UI work. Submitting a new job cancels the one still
+// running, and a cancelled job's result is never applied to the UI.
+class LatestTask {
+    private final LibraryMetrics.Operation timedAs;
+    private SwingWorker<?, ?> current;
+
+    LatestTask() {
+        this(null);
+    }
+
+    // Times each job from submission until its result is on screen.
+    LatestTask(LibraryMetrics.Operation timedAs) {
+        this.timedAs = timedAs;
+    }
+
+    public void submit(SwingWorker<?, ?> worker) {
+        cancel();
+        current = worker;
+        worker.execute();
+    }
+
+    public <T> void submit(Supplier<T> work, Consumer<T> onResult) {
+        long start = LibraryMetrics.start();
+        submit(new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() {
+                return work.get();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                if (current == this) {
+                    current = null;
+                }
+                try {
+                    onResult.accept(get());
+                    if (timedAs != null) {
+                        LibraryMetrics.record(timedAs, start);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // Nothing is shown for a failed job; the previous result stays on screen.
+                    System.err.println((timedAs != null ? timedAs.getLabel() : "Background task") + " failed: "
+                            + e.getCause());
+                }
+            }
+        });
+    }
+
+    // True from submit(work, onResult) until the result has been handed over.
+    public boolean isPending() {
+        return current != null;
+    }
+
+    public void cancel() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// Today's date for the library, as an epoch day. The day is worked out from
+// the underlying Clock once and cached with the instant it ends, so asking
+// for it costs one millisecond read and no allocation until midnight passes
+// or tick() is called. Loan dates are compared as epoch days against it.
+//
+// Managers use system() unless given another clock; fixed(date) gives code
+// and tests a day that never changes.
+final class LibraryClock {
+    private static final LibraryClock SYSTEM = new LibraryClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Day day;
+
+    LibraryClock(Clock clock) {
+        this.clock = clock;
+        this.day = dayAt(clock.instant());
+    }
+
+    static LibraryClock system() {
+        return SYSTEM;
+    }
+
+    static LibraryClock fixed(LocalDate date) {
+        return new LibraryClock(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    public int today() {
+        return current().epochDay;
+    }
+
+    public LocalDate date() {
+        return current().date;
+    }
+
+    // Re-reads the underlying clock now instead of waiting for the cached
+    // day to run out, e.g. after the clock was set back.
+    public void tick() {
+        day = dayAt(clock.instant());
+    }
+
+    private Day current() {
+        Day current = day;
+        if (clock.millis() >= current.endMillis) {
+            current = dayAt(clock.instant());
+            day = current;
+        }
+        return current;
+    }
+
+    private Day dayAt(Instant instant) {
+        ZoneId zone = clock.getZone();
+        LocalDate date = LocalDate.ofInstant(instant, zone);
+        return new Day(date, date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    private static final class Day {
+        final int epochDay;
+        final LocalDate date;
+        final long endMillis;
+
+        Day(LocalDate date, long endMillis) {
+            this.epochDay = (int) date.toEpochDay();
+            this.date = date;
+            this.endMillis = endMillis;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.List;
+
+// One change LibraryManager has made. Book events carry the catalogued Book
+// itself; loan events carry the loan and its book, which for a return may
+// be null when the book has since been removed.
+final class LibraryEvent {
+    enum Kind {
+        BOOK_ADDED,
+        BOOK_UPDATED,
+        BOOK_REMOVED,
+        BORROWED,
+        RETURNED
+    }
+
+    private final Kind kind;
+    private final Book book;
+    private final BorrowRecord record;
+
+    LibraryEvent(Kind kind, Book book, BorrowRecord record) {
+        this.kind = kind;
+        this.book = book;
+        this.record = record;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public BorrowRecord getRecord() {
+        return record;
+    }
+
+    // Catalogue additions and removals, as opposed to edits and loans that
+    // only change rows already listed.
+    public boolean changesCatalogue() {
+        return kind == Kind.BOOK_ADDED || kind == Kind.BOOK_REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + (book != null ? book.getIsbn() : record.getIsbn());
+    }
+
+    interface Listener {
+        // Events in the order they were published; never empty.
+        void libraryChanged(List<LibraryEvent> events);
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Delivers LibraryManager's change events to listeners in batches. Each
+// listener has its own queue and executor, typically the EDT. Publishing
+// queues the event and schedules one delivery unless one is already
+// waiting; a delivery takes everything queued by the time it runs. A burst
+// of changes made while the executor is busy, such as several desks'
+// loans while the EDT repaints, therefore arrives as a single batch.
+//
+// With a single-threaded executor a listener sees its batches one at a
+// time and events in publishing order. Publishing never waits for a
+// listener, and allocates nothing when there are none.
+final class LibraryEventBus {
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Executor executor, LibraryEvent.Listener listener) {
+        subscriptions.add(new Subscription(executor, listener));
+    }
+
+    public boolean hasListeners() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void publish(LibraryEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    private static final class Subscription implements Runnable {
+        private final Executor executor;
+        private final LibraryEvent.Listener listener;
+        private final Queue<LibraryEvent> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscription(Executor executor, LibraryEvent.Listener listener) {
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        void offer(LibraryEvent event) {
+            pending.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        // Clears the flag before draining, so an event queued during the
+        // drain is either taken by it or schedules the next delivery.
+        @Override
+        public void run() {
+            scheduled.set(false);
+            List<LibraryEvent> batch = new ArrayList<>();
+            for (LibraryEvent event; (event = pending.poll()) != null; ) {
+                batch.add(event);
+            }
+            if (!batch.isEmpty()) {
+                listener.libraryChanged(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Headless HTTP/JSON access to a LibraryManager, for checkout kiosks.
+//
+//   GET  /books?q=<query>[&limit=<n>]   search, as on the Books tab
+//   GET  /books/<isbn>                  one book
+//   POST /borrow   isbn, name, email    form-encoded body or query string
+//   POST /return   isbn, name
+//   GET  /stats                         running totals
+//   GET  /metrics                       operation counts and latencies
+//   GET  /reports/inventory|borrowing[?format=csv]   streamed report text
+//
+// Requests run on virtual threads when the JDK has them (21+). Otherwise
+// they run on a fixed pool, sized generously because most of a borrow's
+// time is spent waiting for the journal's group commit.
+final class LibraryHttpServer implements Closeable {
+    static final int DEFAULT_PORT = 8080;
+
+    private static final int FALLBACK_THREADS = 64;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_LIMIT = 1000;
+    private static final int MAX_BODY_BYTES = 8 * 1024;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's
+        // algorithm on, every small response waits out the client's delayed
+        // ACK (~40 ms). Read once, when the server implementation loads.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final LibraryManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private LibraryHttpServer(LibraryManager manager, InetSocketAddress address) throws IOException {
+        this.manager = manager;
+        this.server = HttpServer.create(address, 1024);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+            Thread thread = new Thread(task, "library-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/books", exchange -> handle(exchange, this::books));
+        server.createContext("/borrow", exchange -> handle(exchange, this::borrow));
+        server.createContext("/return", exchange -> handle(exchange, this::returnBook));
+        server.createContext("/stats", exchange -> handle(exchange, this::stats));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+        server.createContext("/reports/", exchange -> handle(exchange, this::report));
+    }
+
+    static LibraryHttpServer start(LibraryManager manager, InetSocketAddress address) throws IOException {
+        LibraryHttpServer server = new LibraryHttpServer(manager, address);
+        server.server.start();
+        return server;
+    }
+
+    InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Stops accepting requests and gives in-flight ones a second to finish.
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void books(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        // The context also receives /booksXYZ and deeper paths; only /books,
+        // /books/ and /books/<isbn> exist.
+        String path = exchange.getRequestURI().getRawPath();
+        if (!path.equals("/books") && !path.equals("/books/")) {
+            String segment = path.startsWith("/books/") ? path.substring("/books/".length()) : "";
+            if (segment.isEmpty() || segment.indexOf('/') >= 0) {
+                throw new HttpError(404, "no such resource " + path);
+            }
+            String isbn = decodePathSegment(segment);
+            Book book = manager.findBookByIsbn(isbn);
+            if (book == null) {
+                throw new HttpError(404, "no book with ISBN " + isbn);
+            }
+            sendJson(exchange, 200, book(new JsonWriter(), book));
+            return;
+        }
+
+        Map<String, String> params = queryParameters(exchange);
+        int limit = intParameter(params, "limit", DEFAULT_SEARCH_LIMIT);
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new HttpError(400, "limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        String query = params.getOrDefault("q", "");
+        List<Book> matches = query.isEmpty() ? manager.getAllBooks() : manager.searchBooks(query);
+        JsonWriter json = new JsonWriter().beginObject()
+                .field("total", matches.size())
+                .name("books").beginArray();
+        for (int i = 0; i < Math.min(limit, matches.size()); i++) {
+            book(json, matches.get(i));
+        }
+        sendJson(exchange, 200, json.endArray().endObject());
+    }
+
+    private void borrow(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        Map<String, String> params = formParameters(exchange);
+        String isbn = required(params, "isbn");
+        String name = required(params, "name");
+        String email = required(params, "email");
+        if (manager.findBookByIsbn(isbn) == null) {
+            throw new HttpError(404, "no book with ISBN " + isbn);
+        }
+        BorrowRecord record = manager.recordBorrow(isbn, name, email, manager.getClock().date());
+        if (record == null) {
+            throw new HttpError(409, "no copies of " + isbn + " available");
+        }
+        sendJson(exchange, 200, record(new JsonWriter(), record));
+    }
+
+    private void returnBook(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        Map<String, String> params = formParameters(exchange);
+        String isbn = required(params, "isbn");
+        String name = required(params, "name");
+        BorrowRecord record = manager.recordReturn(isbn, name, manager.getClock().date());
+        if (record == null) {
+            throw new HttpError(409, name + " has no open loan of " + isbn);
+        }
+        sendJson(exchange, 200, record(new JsonWriter(), record));
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        LibraryStats stats = manager.getStats();
+        JsonWriter json = new JsonWriter().beginObject()
+                .field("titles", stats.getTitles())
+                .field("totalCopies", stats.getTotalCopies())
+                .field("availableCopies", stats.getAvailableCopies())
+                .field("loansRecorded", stats.getLoansRecorded())
+                .field("activeLoans", stats.getActiveLoans())
+                .field("overdueLoans", stats.getOverdueLoans())
+                .name("titlesByCategory").beginObject();
+        for (Map.Entry<String, Long> category : stats.getTitlesByCategory().entrySet()) {
+            json.field(category.getKey(), category.getValue());
+        }
+        sendJson(exchange, 200, json.endObject().endObject());
+    }
+
+    // Cumulative since startup; latencies in microseconds.
+    private void metrics(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        LibraryMetrics.Snapshot snapshot = LibraryMetrics.snapshot();
+        JsonWriter json = new JsonWriter().beginObject().field("enabled", LibraryMetrics.ENABLED);
+        for (LibraryMetrics.Operation operation : LibraryMetrics.Operation.values()) {
+            LatencyHistogram.Snapshot histogram = snapshot.get(operation);
+            json.name(operation.name().toLowerCase()).beginObject()
+                    .field("count", histogram.getCount())
+                    .field("meanMicros", Math.round(histogram.getMeanNanos() / 1000))
+                    .field("p50Micros", histogram.valueAtPercentile(50) / 1000)
+                    .field("p99Micros", histogram.valueAtPercentile(99) / 1000)
+                    .field("p999Micros", histogram.valueAtPercentile(99.9) / 1000)
+                    .field("maxMicros", histogram.getMaxNanos() / 1000)
+                    .endObject();
+        }
+        sendJson(exchange, 200, json.endObject());
+    }
+
+    private void report(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        String name = exchange.getRequestURI().getPath().substring("/reports/".length());
+        LibraryReports report = LibraryReports.forCommandName(name);
+        if (report == null) {
+            throw new HttpError(404, "no report named " + name);
+        }
+        boolean csv = "csv".equals(queryParameters(exchange).get("format"));
+        exchange.getResponseHeaders().set("Content-Type",
+                (csv ? "text/csv" : "text/plain") + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        // Headers are sent, so a failure from here on can only cut the
+        // response short.
+        try (ReportWriter out = new ReportWriter(ChannelReportSink.toStream(exchange.getResponseBody()),
+                csv ? ReportWriter.Format.CSV : ReportWriter.Format.PLAIN)) {
+            report.write(manager, out, (done, total) -> { });
+        }
+    }
+
+    private static JsonWriter book(JsonWriter json, Book book) {
+        return json.beginObject()
+                .field("isbn", book.getIsbn())
+                .field("title", book.getTitle())
+                .field("author", book.getAuthor())
+                .field("category", book.getCategory())
+                .field("totalCopies", book.getTotalCopies())
+                .field("availableCopies", book.getAvailableCopies())
+                .field("dateAdded", book.getDateAdded())
+                .endObject();
+    }
+
+    private static JsonWriter record(JsonWriter json, BorrowRecord record) {
+        return json.beginObject()
+                .field("isbn", record.getIsbn())
+                .field("title", record.getTitle())
+                .field("borrowerName", record.getBorrowerName())
+                .field("borrowerEmail", record.getBorrowerEmail())
+                .field("borrowDate", record.getBorrowDate())
+                .field("dueDate", record.getDueDate())
+                .field("returnDate", record.getReturnDate())
+                .field("returned", record.isReturned())
+                .endObject();
+    }
+
+    private interface Route {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static void handle(HttpExchange exchange, Route route) {
+        try {
+            route.handle(exchange);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed: " + e);
+            sendError(exchange, 500, "internal error");
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            sendJson(exchange, status, new JsonWriter().beginObject().field("error", message).endObject());
+        } catch (IOException | IllegalStateException e) {
+            // Headers already sent, or the client went away.
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonWriter json) throws IOException {
+        byte[] body = json.toBytes();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new HttpError(405, "use " + method);
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new HttpError(400, "missing parameter: " + name);
+        }
+        return value.trim();
+    }
+
+    private static int intParameter(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be a number");
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        return params;
+    }
+
+    // Query string parameters, overridden by a form-encoded body.
+    private static Map<String, String> formParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = queryParameters(exchange);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new HttpError(413, "request body over " + MAX_BODY_BYTES + " bytes");
+            }
+            parseForm(new String(body, StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            } else if (!pair.isEmpty()) {
+                params.put(decode(pair), "");
+            }
+        }
+    }
+
+    // Percent-decoding only: unlike form data, '+' in a path is a literal plus.
+    private static String decodePathSegment(String segment) {
+        return decode(segment.replace("+", "%2B"));
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "malformed URL encoding");
+        }
+    }
+
+    // Newer JDKs only; looked up reflectively so the tree still builds on 17.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
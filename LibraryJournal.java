@@ -0,0 +1,499 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Append-only binary journal of catalogue and loan mutations. Each entry is
+// [int length][int crc32][payload]. Callers append while holding the ISBN's
+// lock stripe, so the journal order matches the order changes were applied,
+// and then wait outside the lock until a writer thread has made their entry
+// durable. Entries arriving while a batch is being written are grouped into
+// the next batch, so one fsync covers many concurrent callers.
+//
+// The journal is split into numbered segment files. rotate() closes the
+// current segment at an exact point in the entry order, which is what
+// LibrarySnapshot compacts up to.
+class LibraryJournal implements AutoCloseable {
+    enum SyncMode {
+        PER_BATCH,
+        PER_OP
+    }
+
+    private static final byte BOOK_ADDED = 1;
+    private static final byte BOOK_REMOVED = 2;
+    private static final byte BOOK_UPDATED = 3;
+    private static final byte BORROWED = 4;
+    private static final byte RETURNED = 5;
+    private static final byte LOAN_BATCH = 6;
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final byte[] ROTATE = new byte[0];
+
+    private final Path directory;
+    private final SyncMode syncMode;
+    private final Thread writer;
+    // A lock rather than the object monitor: callers waiting in awaitDurable
+    // may be virtual threads, and Object.wait() would pin their carriers.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private FileChannel channel;
+    private long writerSegment;
+    private List<byte[]> pending = new ArrayList<>();
+    private long appendedSequence;
+    private long durableSequence;
+    private long batches;
+    private long activeSegment;
+    private long activeSegmentEntries;
+    private long replayedEntries;
+    private IOException failure;
+    private boolean closed;
+
+    private LibraryJournal(Path directory, long segment, FileChannel channel, SyncMode syncMode) {
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.channel = channel;
+        this.writerSegment = segment;
+        this.activeSegment = segment;
+        this.writer = new Thread(this::writeLoop, "library-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Replays every segment numbered fromSegment or later into the manager,
+    // drops a torn or corrupt tail of the newest one, and opens it for
+    // appending. Damage in an older, already closed segment is an error.
+    public static LibraryJournal open(Path directory, long fromSegment, SyncMode syncMode, LibraryManager manager)
+            throws IOException {
+        List<Long> segments = segments(directory);
+        segments.removeIf(segment -> segment < fromSegment);
+        long last = segments.isEmpty() ? fromSegment : segments.get(segments.size() - 1);
+        long replayed = 0;
+        for (long segment : segments) {
+            if (segment == last) {
+                break;
+            }
+            try (FileChannel sealed = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.READ)) {
+                Replay result = replay(sealed, manager);
+                if (result.validLength != sealed.size()) {
+                    throw new IOException("Journal segment " + segment + " is damaged at byte " + result.validLength);
+                }
+                replayed += result.entries;
+            }
+        }
+        FileChannel channel = FileChannel.open(segmentFile(directory, last), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Replay result = replay(channel, manager);
+            channel.truncate(result.validLength);
+            channel.position(result.validLength);
+            replayed += result.entries;
+            LibraryJournal journal = new LibraryJournal(directory, last, channel, syncMode);
+            journal.activeSegmentEntries = result.entries;
+            journal.replayedEntries = replayed;
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Applies segments [fromSegment, toSegment) to the manager; used to roll a
+    // snapshot forward without touching the live journal.
+    public static void replaySegments(Path directory, long fromSegment, long toSegment, LibraryManager manager)
+            throws IOException {
+        for (long segment : segments(directory)) {
+            if (segment < fromSegment || segment >= toSegment) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentFile(directory, segment), StandardOpenOption.READ)) {
+                if (replay(channel, manager).validLength != channel.size()) {
+                    throw new IOException("Journal segment " + segment + " is damaged");
+                }
+            }
+        }
+    }
+
+    public static void deleteSegmentsBefore(Path directory, long segment) throws IOException {
+        for (long existing : segments(directory)) {
+            if (existing < segment) {
+                Files.deleteIfExists(segmentFile(directory, existing));
+            }
+        }
+    }
+
+    private static List<Long> segments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static Replay replay(FileChannel channel, LibraryManager manager) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+        long entries = 0;
+        long size = channel.size();
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload.array(), manager);
+            position += HEADER_BYTES + length;
+            entries++;
+        }
+        return new Replay(position, entries);
+    }
+
+    private static void apply(byte[] payload, LibraryManager manager) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        apply(in.readByte(), in, manager);
+    }
+
+    private static void apply(byte type, DataInputStream in, LibraryManager manager) throws IOException {
+        switch (type) {
+            case BOOK_ADDED:
+                manager.addBook(new Book(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(),
+                        LocalDate.ofEpochDay(in.readLong())));
+                break;
+            case BOOK_REMOVED:
+                manager.removeBook(in.readUTF());
+                break;
+            case BOOK_UPDATED:
+                manager.updateBook(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt());
+                break;
+            case BORROWED:
+                manager.applyBorrow(in.readUTF(), in.readUTF(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()));
+                break;
+            case RETURNED:
+                manager.applyReturn(in.readUTF(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()));
+                break;
+            case LOAN_BATCH:
+                for (int count = in.readInt(); count > 0; count--) {
+                    apply(in.readByte(), in, manager);
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal entry type " + type);
+        }
+    }
+
+    public long bookAdded(Book book) {
+        return append(out -> {
+            out.writeByte(BOOK_ADDED);
+            out.writeUTF(book.getIsbn());
+            out.writeUTF(book.getTitle());
+            out.writeUTF(book.getAuthor());
+            out.writeUTF(book.getCategory());
+            out.writeInt(book.getTotalCopies());
+            out.writeLong(book.getDateAdded().toEpochDay());
+        });
+    }
+
+    public long bookRemoved(String isbn) {
+        return append(out -> {
+            out.writeByte(BOOK_REMOVED);
+            out.writeUTF(isbn);
+        });
+    }
+
+    public long bookUpdated(Book book) {
+        return append(out -> {
+            out.writeByte(BOOK_UPDATED);
+            out.writeUTF(book.getIsbn());
+            out.writeUTF(book.getTitle());
+            out.writeUTF(book.getAuthor());
+            out.writeUTF(book.getCategory());
+            out.writeInt(book.getTotalCopies());
+        });
+    }
+
+    public long borrowed(BorrowRecord record) {
+        return append(out -> writeBorrowed(out, record));
+    }
+
+    public long returned(BorrowRecord record) {
+        return append(out -> writeReturned(out, record));
+    }
+
+    // The applied items of a LoanBatch as a single entry, so replay applies
+    // all of them or, if the entry is torn, none.
+    public long loanBatch(List<LoanBatch.Result> applied) {
+        return append(out -> {
+            out.writeByte(LOAN_BATCH);
+            out.writeInt(applied.size());
+            for (LoanBatch.Result result : applied) {
+                if (result.getOutcome() == LoanBatch.Outcome.BORROWED) {
+                    writeBorrowed(out, result.getRecord());
+                } else {
+                    writeReturned(out, result.getRecord());
+                }
+            }
+        });
+    }
+
+    private static void writeBorrowed(DataOutputStream out, BorrowRecord record) throws IOException {
+        out.writeByte(BORROWED);
+        out.writeUTF(record.getIsbn());
+        out.writeUTF(record.getBorrowerName());
+        out.writeUTF(record.getBorrowerEmail());
+        out.writeLong(record.getBorrowDay());
+    }
+
+    private static void writeReturned(DataOutputStream out, BorrowRecord record) throws IOException {
+        out.writeByte(RETURNED);
+        out.writeUTF(record.getIsbn());
+        out.writeUTF(record.getBorrowerName());
+        out.writeLong(record.getReturnDay());
+    }
+
+    public void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            // awaitUninterruptibly keeps the interrupt status set for the caller.
+            while (durableSequence < sequence && failure == null) {
+                durable.awaitUninterruptibly();
+            }
+            if (durableSequence < sequence) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long batchCount() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long replayedEntries() {
+        lock.lock();
+        try {
+            return replayedEntries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long activeSegmentEntries() {
+        lock.lock();
+        try {
+            return activeSegmentEntries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closes the current segment after every entry appended so far and starts
+    // a new one. Returns the new segment's number once the switch is durable;
+    // all earlier segments are then complete.
+    public long rotate() {
+        long ticket;
+        long segment;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            pending.add(ROTATE);
+            work.signal();
+            ticket = ++appendedSequence;
+            segment = ++activeSegment;
+            activeSegmentEntries = 0;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private long append(EntryWriter entry) {
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            entry.write(out);
+            out.flush();
+            payload = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            pending.add(payload);
+            work.signal();
+            activeSegmentEntries++;
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch;
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        work.await();
+                    } catch (InterruptedException e) {
+                        // Nothing queued from here on would be written, so
+                        // fail the waiters rather than leave them blocked.
+                        failure = new InterruptedIOException("Journal writer interrupted");
+                        durable.signalAll();
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                write(batch);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                durableSequence += batch.size();
+                batches++;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(List<byte[]> batch) throws IOException {
+        int bytes = 0;
+        for (byte[] payload : batch) {
+            bytes += HEADER_BYTES + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        CRC32 crc = new CRC32();
+        for (byte[] payload : batch) {
+            if (payload == ROTATE) {
+                flush(buffer);
+                channel.close();
+                writerSegment++;
+                channel = FileChannel.open(segmentFile(directory, writerSegment), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                continue;
+            }
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            if (syncMode == SyncMode.PER_OP) {
+                flush(buffer);
+            }
+        }
+        flush(buffer);
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        writeFully(buffer);
+        channel.force(false);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Replay {
+        final long validLength;
+        final long entries;
+
+        Replay(long validLength, long entries) {
+            this.validLength = validLength;
+            this.entries = entries;
+        }
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -1,86 +1,147 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 class Book {
     private String isbn;
-    private String title;
-    private String author;
-    private String category;
-    private int totalCopies;
-    private int availableCopies;
+    private volatile String title;
+    private volatile String author;
+    private volatile int categoryId;
+    private volatile int totalCopies;
+    private final AtomicInteger availableCopies;
     private LocalDate dateAdded;
 
     public Book(String isbn, String title, String author, String category, int totalCopies) {
+        this(isbn, title, author, category, totalCopies, LibraryClock.system().date());
+    }
+
+    Book(String isbn, String title, String author, String category, int totalCopies, LocalDate dateAdded) {
         this.isbn = isbn;
         this.title = title;
-        this.author = author;
-        this.category = category;
+        this.author = SymbolTable.AUTHORS.intern(author);
+        this.categoryId = SymbolTable.CATEGORIES.idOf(category);
         this.totalCopies = totalCopies;
-        this.availableCopies = totalCopies;
-        this.dateAdded = LocalDate.now();
+        this.availableCopies = new AtomicInteger(totalCopies);
+        this.dateAdded = dateAdded;
     }
 
     public String getIsbn() { return isbn; }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
-    public String getCategory() { return category; }
+    public String getCategory() { return SymbolTable.CATEGORIES.nameOf(categoryId); }
+    int getCategoryId() { return categoryId; }
     public int getTotalCopies() { return totalCopies; }
-    public int getAvailableCopies() { return availableCopies; }
+    public int getAvailableCopies() { return availableCopies.get(); }
     public LocalDate getDateAdded() { return dateAdded; }
 
     public void setTitle(String title) { this.title = title; }
-    public void setAuthor(String author) { this.author = author; }
-    public void setCategory(String category) { this.category = category; }
+    public void setAuthor(String author) { this.author = SymbolTable.AUTHORS.intern(author); }
+    public void setCategory(String category) { this.categoryId = SymbolTable.CATEGORIES.idOf(category); }
     public void setTotalCopies(int totalCopies) { 
         this.totalCopies = totalCopies;
-        if (availableCopies > totalCopies) {
-            availableCopies = totalCopies;
-        }
+        availableCopies.getAndUpdate(available -> Math.min(available, totalCopies));
     }
 
     public boolean borrowBook() {
-        if (availableCopies > 0) {
-            availableCopies--;
-            return true;
-        }
-        return false;
+        int available;
+        do {
+            available = availableCopies.get();
+            if (available <= 0) {
+                return false;
+            }
+        } while (!availableCopies.compareAndSet(available, available - 1));
+        return true;
     }
 
     public void returnBook() {
-        if (availableCopies < totalCopies) {
-            availableCopies++;
-        }
+        int available;
+        do {
+            available = availableCopies.get();
+            if (available >= totalCopies) {
+                return;
+            }
+        } while (!availableCopies.compareAndSet(available, available + 1));
     }
 
     public boolean isAvailable() {
-        return availableCopies > 0;
+        return availableCopies.get() > 0;
+    }
+
+    void restoreAvailableCopies(int available) {
+        availableCopies.set(available);
     }
 }
 
 class BorrowRecord {
+    static final int LOAN_DAYS = 14;
+
     private String isbn;
     private String title;
     private String borrowerName;
     private String borrowerEmail;
-    private LocalDate borrowDate;
-    private LocalDate dueDate;
-    private LocalDate returnDate;
-    private boolean isReturned;
+    // Epoch days; returnDay is only meaningful once isReturned is set.
+    private int borrowDay;
+    private int dueDay;
+    private int returnDay;
+    private volatile boolean isReturned;
 
     public BorrowRecord(String isbn, String title, String borrowerName, String borrowerEmail) {
+        this(isbn, title, borrowerName, borrowerEmail, LibraryClock.system().today());
+    }
+
+    BorrowRecord(String isbn, String title, String borrowerName, String borrowerEmail, LocalDate borrowDate) {
+        this(isbn, title, borrowerName, borrowerEmail, (int) borrowDate.toEpochDay());
+    }
+
+    BorrowRecord(String isbn, String title, String borrowerName, String borrowerEmail, int borrowDay) {
         this.isbn = isbn;
         this.title = title;
-        this.borrowerName = borrowerName;
-        this.borrowerEmail = borrowerEmail;
-        this.borrowDate = LocalDate.now();
-        this.dueDate = borrowDate.plusDays(14);
+        this.borrowerName = SymbolTable.BORROWERS.intern(borrowerName);
+        this.borrowerEmail = SymbolTable.BORROWERS.intern(borrowerEmail);
+        this.borrowDay = borrowDay;
+        this.dueDay = borrowDay + LOAN_DAYS;
         this.isReturned = false;
     }
 
@@ -88,141 +149,751 @@ class BorrowRecord {
     public String getTitle() { return title; }
     public String getBorrowerName() { return borrowerName; }
     public String getBorrowerEmail() { return borrowerEmail; }
-    public LocalDate getBorrowDate() { return borrowDate; }
-    public LocalDate getDueDate() { return dueDate; }
-    public LocalDate getReturnDate() { return returnDate; }
+    public LocalDate getBorrowDate() { return LocalDate.ofEpochDay(borrowDay); }
+    public LocalDate getDueDate() { return LocalDate.ofEpochDay(dueDay); }
+    public LocalDate getReturnDate() { return isReturned ? LocalDate.ofEpochDay(returnDay) : null; }
     public boolean isReturned() { return isReturned; }
+    int getBorrowDay() { return borrowDay; }
+    int getDueDay() { return dueDay; }
+    int getReturnDay() { return returnDay; }
 
     public void markReturned() {
+        markReturned(LibraryClock.system().today());
+    }
+
+    void markReturned(LocalDate returnDate) {
+        markReturned((int) returnDate.toEpochDay());
+    }
+
+    // returnDay is written before the volatile flag that publishes it.
+    void markReturned(int returnDay) {
+        this.returnDay = returnDay;
         this.isReturned = true;
-        this.returnDate = LocalDate.now();
     }
 
     public boolean isOverdue() {
-        return !isReturned && LocalDate.now().isAfter(dueDate);
+        return isOverdue(LibraryClock.system().today());
+    }
+
+    boolean isOverdue(int today) {
+        return !isReturned && today > dueDay;
     }
 }
 
+// Safe for concurrent use from several desks. Lookups and reads are lock-free;
+// every mutation of one ISBN runs under that ISBN's lock stripe, so borrowers
+// of different titles never contend and copy counts change atomically.
 class LibraryManager {
-    private List<Book> books;
-    private List<BorrowRecord> borrowRecords;
+    private static final int LOCK_STRIPES = 256;
+    private static final long COMPACTION_THRESHOLD = 100_000;
+    private static final long ARCHIVE_THRESHOLD = 50_000;
+
+    private Map<String, Book> books;
+    private VersionedList<Book> catalogue;
+    // Each catalogued book's sequence in catalogue, by normalized ISBN.
+    private Map<String, Long> catalogueSequences;
+    private AtomicLong catalogueVersion;
+    private VersionedList<BorrowRecord> borrowRecords;
+    private LoanArchive archive;
+    private ReadWriteLock historyLock;
+    private AtomicLong unarchivedReturns;
+    private AtomicBoolean archiving;
+    private BookSearchIndex searchIndex;
+    private OpenLoanIndex openLoans;
+    private OverdueTracker overdueTracker;
+    private LibraryStats.Counters counters;
+    private Object[] locks;
+    private LibraryJournal journal;
+    private Path dataDirectory;
+    private ExecutorService compactor;
+    private AtomicBoolean compacting;
+    private volatile OperationTrace.Recorder traceRecorder;
+    private LibraryEventBus events;
+    private LibraryClock clock;
+    private LibraryMetrics.Recorder metrics;
 
     public LibraryManager() {
-        books = new ArrayList<>();
-        borrowRecords = new ArrayList<>();
-        initializeSampleData();
+        this(true);
+    }
+
+    // Restores state from the newest snapshot in dataDirectory plus the
+    // journal segments written after it, and records every later mutation.
+    // The sample catalogue is only seeded into an empty directory.
+    public LibraryManager(Path dataDirectory, LibraryJournal.SyncMode syncMode) throws IOException {
+        this(dataDirectory, syncMode, true);
+    }
+
+    LibraryManager(Path dataDirectory, LibraryJournal.SyncMode syncMode, boolean sampleData) throws IOException {
+        this(false);
+        this.dataDirectory = dataDirectory;
+        Files.createDirectories(dataDirectory);
+        long firstSegment = LibrarySnapshot.loadLatest(dataDirectory, this);
+        journal = LibraryJournal.open(dataDirectory, firstSegment, syncMode, this);
+        compacting = new AtomicBoolean();
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "library-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sampleData && firstSegment == 0 && journal.replayedEntries() == 0) {
+            initializeSampleData();
+        }
+    }
+
+    LibraryManager(boolean sampleData) {
+        this(sampleData, LibraryClock.system());
+    }
+
+    // clock decides today's date for loans, returns and overdue checks made
+    // without an explicit date.
+    LibraryManager(boolean sampleData, LibraryClock clock) {
+        this.clock = clock;
+        books = new ConcurrentHashMap<>();
+        catalogue = new VersionedList<>();
+        catalogueSequences = new ConcurrentHashMap<>();
+        catalogueVersion = new AtomicLong();
+        borrowRecords = new VersionedList<>();
+        archive = new LoanArchive();
+        historyLock = new ReentrantReadWriteLock();
+        unarchivedReturns = new AtomicLong();
+        archiving = new AtomicBoolean();
+        searchIndex = new BookSearchIndex();
+        openLoans = new OpenLoanIndex();
+        overdueTracker = new OverdueTracker();
+        counters = new LibraryStats.Counters();
+        metrics = new LibraryMetrics.Recorder();
+        events = new LibraryEventBus();
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        if (sampleData) {
+            initializeSampleData();
+        }
     }
 
     private void initializeSampleData() {
-        books.add(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
-        books.add(new Book("978-0135166307", "Java: The Complete Reference", "Herbert Schildt", "Programming", 2));
-        books.add(new Book("978-0132350884", "Clean Code", "Robert Martin", "Programming", 4));
-        books.add(new Book("978-0596007126", "Head First Design Patterns", "Eric Freeman", "Programming", 2));
-        books.add(new Book("978-1617294945", "Spring in Action", "Craig Walls", "Programming", 1));
+        addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
+        addBook(new Book("978-0135166307", "Java: The Complete Reference", "Herbert Schildt", "Programming", 2));
+        addBook(new Book("978-0132350884", "Clean Code", "Robert Martin", "Programming", 4));
+        addBook(new Book("978-0596007126", "Head First Design Patterns", "Eric Freeman", "Programming", 2));
+        addBook(new Book("978-1617294945", "Spring in Action", "Craig Walls", "Programming", 1));
+    }
+
+    private Object lockFor(String isbnKey) {
+        return locks[stripeOf(isbnKey)];
+    }
+
+    private static int stripeOf(String isbnKey) {
+        int h = isbnKey.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    // Runs body holding every marked stripe. Stripes are always taken in
+    // ascending order, so two batches can never deadlock on each other.
+    private long underStripes(boolean[] stripes, int from, LongSupplier body) {
+        for (int stripe = from; stripe < stripes.length; stripe++) {
+            if (stripes[stripe]) {
+                synchronized (locks[stripe]) {
+                    return underStripes(stripes, stripe + 1, body);
+                }
+            }
+        }
+        return body.getAsLong();
     }
 
     public boolean addBook(Book book) {
-        for (Book b : books) {
-            if (b.getIsbn().equals(book.getIsbn())) {
+        String isbnKey = Isbn.normalize(book.getIsbn());
+        long ticket;
+        synchronized (lockFor(isbnKey)) {
+            if (books.putIfAbsent(isbnKey, book) != null) {
                 return false;
             }
+            catalogueSequences.put(isbnKey, catalogue.add(book));
+            searchIndex.add(book);
+            counters.bookAdded(book);
+            catalogueVersion.incrementAndGet();
+            publish(LibraryEvent.Kind.BOOK_ADDED, book, null);
+            ticket = journal != null ? journal.bookAdded(book) : 0;
         }
-        books.add(book);
+        awaitDurable(ticket);
         return true;
     }
 
+    // Adds every book whose ISBN is not catalogued yet and returns those
+    // added. Trigrams for the whole batch are worked out up front, so each
+    // book is catalogued, indexed and journaled together under its stripe
+    // lock, as addBook does, and is searchable as soon as it can be found
+    // by ISBN. The batch shares one journal wait and one catalogue version
+    // bump.
+    public List<Book> addBooks(Collection<Book> batch) {
+        List<Book> candidates = new ArrayList<>(batch);
+        BookSearchIndex.Prepared prepared = searchIndex.prepare(candidates);
+        List<Book> added = new ArrayList<>(candidates.size());
+        long ticket = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            Book book = candidates.get(i);
+            String isbnKey = Isbn.normalize(book.getIsbn());
+            synchronized (lockFor(isbnKey)) {
+                if (books.putIfAbsent(isbnKey, book) != null) {
+                    continue;
+                }
+                catalogueSequences.put(isbnKey, catalogue.add(book));
+                searchIndex.add(prepared, i);
+                counters.bookAdded(book);
+                added.add(book);
+                publish(LibraryEvent.Kind.BOOK_ADDED, book, null);
+                if (journal != null) {
+                    ticket = journal.bookAdded(book);
+                }
+            }
+        }
+        catalogueVersion.incrementAndGet();
+        // Tickets grow in append order, so once the last one is durable
+        // every earlier book of the batch is too.
+        awaitDurable(ticket);
+        return added;
+    }
+
     public boolean removeBook(String isbn) {
-        return books.removeIf(book -> book.getIsbn().equals(isbn));
+        String isbnKey = Isbn.normalize(isbn);
+        long ticket;
+        synchronized (lockFor(isbnKey)) {
+            Book removed = books.remove(isbnKey);
+            if (removed == null) {
+                return false;
+            }
+            catalogue.remove(catalogueSequences.remove(isbnKey));
+            searchIndex.remove(removed);
+            counters.bookRemoved(removed);
+            catalogueVersion.incrementAndGet();
+            publish(LibraryEvent.Kind.BOOK_REMOVED, removed, null);
+            ticket = journal != null ? journal.bookRemoved(removed.getIsbn()) : 0;
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    public boolean updateBook(String isbn, String title, String author, String category, int totalCopies) {
+        String isbnKey = Isbn.normalize(isbn);
+        long ticket;
+        synchronized (lockFor(isbnKey)) {
+            Book book = bookFor(isbnKey);
+            if (book == null) {
+                return false;
+            }
+            int oldCategory = book.getCategoryId();
+            int oldTotal = book.getTotalCopies();
+            int oldAvailable = book.getAvailableCopies();
+            book.setTitle(title);
+            book.setAuthor(author);
+            book.setCategory(category);
+            book.setTotalCopies(totalCopies);
+            searchIndex.update(book);
+            counters.bookUpdated(oldCategory, oldTotal, oldAvailable, book);
+            catalogueVersion.incrementAndGet();
+            publish(LibraryEvent.Kind.BOOK_UPDATED, book, null);
+            ticket = journal != null ? journal.bookUpdated(book) : 0;
+        }
+        awaitDurable(ticket);
+        return true;
     }
 
     public Book findBookByIsbn(String isbn) {
-        return books.stream()
-                .filter(book -> book.getIsbn().equals(isbn))
-                .findFirst()
-                .orElse(null);
+        trace(OperationTrace.Kind.LOOKUP, null, isbn, null, null);
+        return bookFor(Isbn.normalize(isbn));
+    }
+
+    private Book bookFor(String isbnKey) {
+        return books.get(isbnKey);
     }
 
     public List<Book> searchBooks(String query) {
-        List<Book> results = new ArrayList<>();
-        String lowerQuery = query.toLowerCase();
-        
-        for (Book book : books) {
-            if (book.getTitle().toLowerCase().contains(lowerQuery) ||
-                book.getAuthor().toLowerCase().contains(lowerQuery) ||
-                book.getIsbn().toLowerCase().contains(lowerQuery) ||
-                book.getCategory().toLowerCase().contains(lowerQuery)) {
-                results.add(book);
+        long start = LibraryMetrics.start();
+        trace(OperationTrace.Kind.SEARCH, null, query, null, null);
+        List<Book> matches = searchIndex.search(query);
+        metrics.record(LibraryMetrics.Operation.SEARCH, start);
+        return matches;
+    }
+
+    BookSearchIndex searchIndex() {
+        return searchIndex;
+    }
+
+    // Changes whenever a book is added, removed or edited.
+    public long getCatalogueVersion() {
+        return catalogueVersion.get();
+    }
+
+    public boolean borrowBook(String isbn, String borrowerName, String borrowerEmail) {
+        return recordBorrow(isbn, borrowerName, borrowerEmail, clock.date()) != null;
+    }
+
+    // Returns the new loan, or null when the book is unknown or not available.
+    BorrowRecord recordBorrow(String isbn, String borrowerName, String borrowerEmail, LocalDate borrowDate) {
+        long start = LibraryMetrics.start();
+        BorrowRecord record = applyBorrow(isbn, borrowerName, borrowerEmail, borrowDate);
+        metrics.record(LibraryMetrics.Operation.BORROW, start);
+        return record;
+    }
+
+    // recordBorrow without timing it, for journal replay.
+    BorrowRecord applyBorrow(String isbn, String borrowerName, String borrowerEmail, LocalDate borrowDate) {
+        String isbnKey = Isbn.normalize(isbn);
+        BorrowRecord record;
+        long ticket;
+        synchronized (lockFor(isbnKey)) {
+            trace(OperationTrace.Kind.BORROW, borrowDate, isbn, borrowerName, borrowerEmail);
+            Book book = bookFor(isbnKey);
+            record = book != null ? borrowLocked(isbnKey, book, borrowerName, borrowerEmail, borrowDate) : null;
+            if (record == null) {
+                return null;
             }
+            ticket = journal != null ? journal.borrowed(record) : 0;
         }
-        return results;
+        awaitDurable(ticket);
+        return record;
     }
 
-    public boolean borrowBook(String isbn, String borrowerName, String borrowerEmail) {
-        Book book = findBookByIsbn(isbn);
-        if (book != null && book.borrowBook()) {
-            borrowRecords.add(new BorrowRecord(isbn, book.getTitle(), borrowerName, borrowerEmail));
-            return true;
+    private BorrowRecord borrowLocked(String isbnKey, Book book, String borrowerName, String borrowerEmail,
+                                      LocalDate borrowDate) {
+        if (!book.borrowBook()) {
+            return null;
         }
-        return false;
+        BorrowRecord record = new BorrowRecord(book.getIsbn(), book.getTitle(), borrowerName, borrowerEmail,
+                borrowDate);
+        borrowRecords.add(record);
+        openLoans.add(isbnKey, record);
+        overdueTracker.add(record);
+        counters.availableChanged(-1);
+        counters.loanOpened();
+        publish(LibraryEvent.Kind.BORROWED, book, record);
+        return record;
     }
 
     public boolean returnBook(String isbn, String borrowerName) {
-        for (BorrowRecord record : borrowRecords) {
-            if (record.getIsbn().equals(isbn) && 
-                record.getBorrowerName().equals(borrowerName) && 
-                !record.isReturned()) {
-                record.markReturned();
-                Book book = findBookByIsbn(isbn);
-                if (book != null) {
-                    book.returnBook();
+        return recordReturn(isbn, borrowerName, clock.date()) != null;
+    }
+
+    // Returns the loan that was closed, or null when no open loan matches.
+    BorrowRecord recordReturn(String isbn, String borrowerName, LocalDate returnDate) {
+        long start = LibraryMetrics.start();
+        BorrowRecord record = applyReturn(isbn, borrowerName, returnDate);
+        metrics.record(LibraryMetrics.Operation.RETURN, start);
+        return record;
+    }
+
+    // recordReturn without timing it, for journal replay.
+    BorrowRecord applyReturn(String isbn, String borrowerName, LocalDate returnDate) {
+        String isbnKey = Isbn.normalize(isbn);
+        BorrowRecord record;
+        long ticket;
+        synchronized (lockFor(isbnKey)) {
+            trace(OperationTrace.Kind.RETURN, returnDate, isbn, borrowerName, null);
+            record = returnLocked(isbnKey, bookFor(isbnKey), borrowerName, returnDate);
+            if (record == null) {
+                return null;
+            }
+            ticket = journal != null ? journal.returned(record) : 0;
+        }
+        awaitDurable(ticket);
+        archiveIfDue();
+        return record;
+    }
+
+    private BorrowRecord returnLocked(String isbnKey, Book book, String borrowerName, LocalDate returnDate) {
+        BorrowRecord record = openLoans.removeFirst(isbnKey, borrowerName);
+        if (record == null) {
+            return null;
+        }
+        record.markReturned(returnDate);
+        overdueTracker.remove(record);
+        counters.loanClosed();
+        unarchivedReturns.incrementAndGet();
+        if (book != null) {
+            int before = book.getAvailableCopies();
+            book.returnBook();
+            counters.availableChanged(book.getAvailableCopies() - before);
+        }
+        publish(LibraryEvent.Kind.RETURNED, book, record);
+        return record;
+    }
+
+    public List<LoanBatch.Result> applyLoans(LoanBatch batch) {
+        return applyLoans(batch, clock.date());
+    }
+
+    // Applies the batch in order under all of its stripes and returns one
+    // result per item; see LoanBatch.
+    List<LoanBatch.Result> applyLoans(LoanBatch batch, LocalDate date) {
+        long start = LibraryMetrics.start();
+        List<LoanBatch.Item> items = batch.items();
+        String[] keys = new String[items.size()];
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Isbn.normalize(items.get(i).getIsbn());
+            stripes[stripeOf(keys[i])] = true;
+        }
+
+        List<LoanBatch.Result> results = new ArrayList<>(items.size());
+        long ticket = underStripes(stripes, 0, () -> {
+            Map<String, Book> resolved = new HashMap<>();
+            List<LoanBatch.Result> applied = new ArrayList<>(items.size());
+            for (int i = 0; i < keys.length; i++) {
+                LoanBatch.Item item = items.get(i);
+                Book book = resolved.computeIfAbsent(keys[i], this::bookFor);
+                LoanBatch.Result result;
+                if (item.getKind() == LoanBatch.Kind.BORROW) {
+                    trace(OperationTrace.Kind.BORROW, date, item.getIsbn(), item.getBorrowerName(),
+                            item.getBorrowerEmail());
+                    BorrowRecord record = book != null
+                            ? borrowLocked(keys[i], book, item.getBorrowerName(), item.getBorrowerEmail(), date)
+                            : null;
+                    LoanBatch.Outcome outcome = book == null ? LoanBatch.Outcome.UNKNOWN_ISBN
+                            : record == null ? LoanBatch.Outcome.UNAVAILABLE : LoanBatch.Outcome.BORROWED;
+                    result = new LoanBatch.Result(item, outcome, record, book);
+                } else {
+                    trace(OperationTrace.Kind.RETURN, date, item.getIsbn(), item.getBorrowerName(), null);
+                    BorrowRecord record = returnLocked(keys[i], book, item.getBorrowerName(), date);
+                    result = new LoanBatch.Result(item, record != null ? LoanBatch.Outcome.RETURNED
+                            : LoanBatch.Outcome.NO_OPEN_LOAN, record, book);
+                }
+                results.add(result);
+                if (result.succeeded()) {
+                    applied.add(result);
                 }
-                return true;
+            }
+            return journal != null && !applied.isEmpty() ? journal.loanBatch(applied) : 0;
+        });
+        awaitDurable(ticket);
+        archiveIfDue();
+        metrics.record(LibraryMetrics.Operation.LOAN_BATCH, start);
+        return results;
+    }
+
+    private void awaitDurable(long ticket) {
+        if (ticket != 0) {
+            journal.awaitDurable(ticket);
+            if (journal.activeSegmentEntries() >= COMPACTION_THRESHOLD && compacting.compareAndSet(false, true)) {
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    } catch (IOException | RuntimeException e) {
+                        // The journal keeps growing until a later compaction succeeds.
+                        System.err.println("Could not compact the library journal in " + dataDirectory + ": " + e);
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    private void archiveIfDue() {
+        if (unarchivedReturns.get() >= ARCHIVE_THRESHOLD && archiving.compareAndSet(false, true)) {
+            try {
+                archiveReturnedLoans();
+            } finally {
+                archiving.set(false);
             }
         }
-        return false;
     }
 
+    // Moves returned loans out of the live queue into the columnar archive.
+    // Runs on the returning desk's thread once every ARCHIVE_THRESHOLD returns.
+    public void archiveReturnedLoans() {
+        historyLock.writeLock().lock();
+        try {
+            unarchivedReturns.set(0);
+            borrowRecords.removeIf(record -> {
+                if (!record.isReturned()) {
+                    return false;
+                }
+                archive.add(record);
+                return true;
+            });
+        } finally {
+            historyLock.writeLock().unlock();
+        }
+    }
+
+    // Seals the current journal segment and writes a snapshot covering it.
+    // The snapshot is built by rolling the previous one forward through the
+    // sealed segments in a scratch manager, so live traffic is never paused;
+    // the sealed segments and older snapshots are then deleted.
+    public void compact() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (compactor) {
+            long segment = journal.rotate();
+            LibraryManager scratch = new LibraryManager(false);
+            long from = LibrarySnapshot.loadLatest(dataDirectory, scratch);
+            LibraryJournal.replaySegments(dataDirectory, from, segment, scratch);
+            LibrarySnapshot.write(dataDirectory, segment, scratch.getAllBooks(), scratch.getAllBorrowRecords());
+            LibraryJournal.deleteSegmentsBefore(dataDirectory, segment);
+            LibrarySnapshot.deleteBefore(dataDirectory, segment);
+        }
+    }
+
+    void restoreBook(Book book, int availableCopies) {
+        addBook(book);
+        counters.availableChanged(availableCopies - book.getAvailableCopies());
+        book.restoreAvailableCopies(availableCopies);
+    }
+
+    void restoreRecord(BorrowRecord record) {
+        if (record.isReturned()) {
+            archive.add(record);
+            counters.loanRestored(false);
+            return;
+        }
+        borrowRecords.add(record);
+        counters.loanRestored(true);
+        openLoans.add(Isbn.normalize(record.getIsbn()), record);
+        overdueTracker.add(record);
+    }
+
+    // A returned loan straight into the archive, without building a BorrowRecord.
+    void restoreReturnedLoan(String isbn, String title, String borrowerName, String borrowerEmail,
+                             int borrowDay, int returnDay) {
+        archive.add(isbn, title, borrowerName, borrowerEmail, borrowDay, returnDay);
+        counters.loanRestored(false);
+    }
+
+    public List<BorrowRecord> getActiveLoansForBorrower(String borrowerName) {
+        return new ArrayList<>(openLoans.forBorrower(borrowerName));
+    }
+
+    public List<BorrowRecord> getActiveLoansForIsbn(String isbn) {
+        return new ArrayList<>(openLoans.forIsbn(Isbn.normalize(isbn)));
+    }
+
+    // The catalogue in the order books were added, as of this call. Taking
+    // it copies nothing; books added or removed afterwards are not in it,
+    // though copy counts and edits to the books themselves show through.
     public List<Book> getAllBooks() {
-        return new ArrayList<>(books);
+        return catalogue.snapshot();
     }
 
+    // Books in catalogue order whose category matches exactly; compares the
+    // category's symbol id rather than the string.
+    public List<Book> getBooksInCategory(String category) {
+        int categoryId = SymbolTable.CATEGORIES.find(category);
+        List<Book> matches = new ArrayList<>();
+        if (categoryId < 0) {
+            return matches;
+        }
+        for (Book book : catalogue.snapshot()) {
+            if (book.getCategoryId() == categoryId) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+
+    public int getBookCount() {
+        return books.size();
+    }
+
+    // Every loan as of this call: archived (returned) loans first, then the
+    // live list of open and recently returned ones. Taking it copies
+    // nothing, and archived rows are only rebuilt as they are read. Returns
+    // after the call still show on the records they close.
     public List<BorrowRecord> getAllBorrowRecords() {
-        return new ArrayList<>(borrowRecords);
+        historyLock.readLock().lock();
+        try {
+            return new History(archive.snapshot(), borrowRecords.snapshot());
+        } finally {
+            historyLock.readLock().unlock();
+        }
     }
 
-    public List<BorrowRecord> getActiveBorrowRecords() {
-        List<BorrowRecord> active = new ArrayList<>();
-        for (BorrowRecord record : borrowRecords) {
-            if (!record.isReturned()) {
-                active.add(record);
-            }
+    // The first page of query's matches in the whole history as of this
+    // call; see LoanQuery.
+    public LoanQuery.Page queryBorrowRecords(LoanQuery query) {
+        LoanArchive.View archived;
+        List<BorrowRecord> live;
+        historyLock.readLock().lock();
+        try {
+            archived = archive.view();
+            live = borrowRecords.snapshot();
+        } finally {
+            historyLock.readLock().unlock();
         }
-        return active;
+        return query.firstPage(archived, live, clock.today());
+    }
+
+    // The page after the one cursor came from, read from the same snapshot.
+    public LoanQuery.Page queryBorrowRecords(LoanQuery.Cursor cursor) {
+        return cursor.nextPage();
+    }
+
+    public List<BorrowRecord> getActiveBorrowRecords() {
+        return overdueTracker.openLoans();
     }
 
     public List<BorrowRecord> getOverdueRecords() {
-        List<BorrowRecord> overdue = new ArrayList<>();
-        for (BorrowRecord record : borrowRecords) {
-            if (record.isOverdue()) {
-                overdue.add(record);
+        int today = clock.today();
+        overdueTracker.advanceTo(today);
+        return overdueTracker.overdueAsOf(today);
+    }
+
+    // O(1) in catalogue and loan size; see LibraryStats for consistency.
+    public LibraryStats getStats() {
+        overdueTracker.advanceTo(clock.today());
+        return counters.snapshot(overdueTracker.overdueCount());
+    }
+
+    public void addOverdueListener(OverdueTracker.OverdueListener listener) {
+        overdueTracker.addListener(listener);
+    }
+
+    // Delivers every later change to listener on executor, in batches; see
+    // LibraryEventBus. The catalogue, search index, loan indexes and
+    // counters are updated before a change is published, so a listener that
+    // reads them, or takes a snapshot, finds the change already there.
+    public void addListener(Executor executor, LibraryEvent.Listener listener) {
+        events.subscribe(executor, listener);
+    }
+
+    // Called under the book's stripe lock once the change is complete, so
+    // events for one ISBN are published in the order they happened.
+    private void publish(LibraryEvent.Kind kind, Book book, BorrowRecord record) {
+        if (events.hasListeners()) {
+            events.publish(new LibraryEvent(kind, book, record));
+        }
+    }
+
+    public LibraryClock getClock() {
+        return clock;
+    }
+
+    // Also the clock's tick, so a changed system date is picked up within
+    // one check.
+    public void checkOverdue() {
+        clock.tick();
+        overdueTracker.advanceTo(clock.today());
+    }
+
+    // Records every later search, lookup, borrow and return; null stops.
+    // The manager closes the recorder when it is closed itself.
+    void setTraceRecorder(OperationTrace.Recorder recorder) {
+        traceRecorder = recorder;
+    }
+
+    void trace(OperationTrace.Kind kind, LocalDate date, String subject, String borrowerName,
+               String borrowerEmail) {
+        OperationTrace.Recorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.record(kind, date != null ? date : clock.date(), subject, borrowerName, borrowerEmail);
+        }
+    }
+
+    public void close() throws IOException {
+        OperationTrace.Recorder recorder = traceRecorder;
+        if (recorder != null) {
+            traceRecorder = null;
+            recorder.close();
+        }
+        if (journal != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            journal.close();
+        }
+    }
+
+    private static final class History extends AbstractList<BorrowRecord> implements RandomAccess {
+        private final List<BorrowRecord> archived;
+        private final List<BorrowRecord> live;
+
+        History(List<BorrowRecord> archived, List<BorrowRecord> live) {
+            this.archived = archived;
+            this.live = live;
+        }
+
+        @Override
+        public BorrowRecord get(int index) {
+            int archivedRows = archived.size();
+            return index < archivedRows ? archived.get(index) : live.get(index - archivedRows);
+        }
+
+        @Override
+        public int size() {
+            return archived.size() + live.size();
+        }
+
+        // Archived rows are new objects on every read, so a record a caller
+        // holds can only be among the live ones.
+        @Override
+        public int indexOf(Object record) {
+            int row = live.indexOf(record);
+            return row < 0 ? -1 : archived.size() + row;
+        }
+
+        @Override
+        public int lastIndexOf(Object record) {
+            int row = live.lastIndexOf(record);
+            return row < 0 ? -1 : archived.size() + row;
         }
-        return overdue;
     }
 }
 
 public class LibraryManagementSystem extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final Path DATA_DIRECTORY = Paths.get("library-data");
+    private static final int SEARCH_DEBOUNCE_MS = 150;
+    private static final int REPORT_PAGE_LINES = 500;
+    private static final int RECORDS_PAGE_ROWS = 200;
+
     private LibraryManager libraryManager;
     private JTabbedPane tabbedPane;
-    private DefaultTableModel booksTableModel;
-    private DefaultTableModel borrowRecordsTableModel;
+    private BooksTableModel booksTableModel;
+    private BorrowRecordsTableModel borrowRecordsTableModel;
+    private LoanQuery recordsQuery = new LoanQuery().sortBy(LoanQuery.Column.BORROW_DATE, true)
+            .pageSize(RECORDS_PAGE_ROWS);
+    // The cursor each page up to the shown one was read from; null for the first.
+    private final List<LoanQuery.Cursor> recordsPageStarts = new ArrayList<>();
+    private LoanQuery.Cursor recordsNextPage;
+    private JButton previousRecordsButton;
+    private JButton nextRecordsButton;
+    private JLabel recordsPageLabel;
+    private final LatestTask booksTask = new LatestTask(LibraryMetrics.Operation.BOOKS_REFRESH);
+    private final LatestTask recordsTask = new LatestTask(LibraryMetrics.Operation.RECORDS_REFRESH);
+    private final LatestTask reportTask = new LatestTask();
+    private final LatestTask exportTask = new LatestTask();
+    private ReportPager reportPager;
+    private JProgressBar reportProgress;
+    private LibraryReports shownReport = LibraryReports.INVENTORY;
+    private IncrementalSearch bookSearch;
+    private String booksQuery = "";
     private JTable booksTable;
     private JTable borrowRecordsTable;
 
     public LibraryManagementSystem() {
-        libraryManager = new LibraryManager();
+        try {
+            libraryManager = new LibraryManager(DATA_DIRECTORY, LibraryJournal.SyncMode.PER_BATCH);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Could not open " + DATA_DIRECTORY + ": " + e.getMessage()
+                    + "\nChanges will not be saved.", "Error", JOptionPane.ERROR_MESSAGE);
+            libraryManager = new LibraryManager();
+        }
+        try {
+            libraryManager.setTraceRecorder(OperationTrace.Recorder.fromSystemProperty());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Could not record a trace: " + e.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+        bookSearch = new IncrementalSearch(libraryManager);
         initializeGUI();
+        libraryManager.addListener(SwingUtilities::invokeLater, this::libraryChanged);
         refreshTables();
+        libraryManager.addOverdueListener(records -> SwingUtilities.invokeLater(this::recordsChanged));
+        new Timer(60_000, e -> libraryManager.checkOverdue()).start();
     }
 
     private void initializeGUI() {
@@ -230,6 +901,18 @@ public class LibraryManagementSystem extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1000, 700);
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    libraryManager.close();
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this,
+                            "Could not close the library journal: " + ex.getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
 
         tabbedPane = new JTabbedPane();
         
@@ -237,6 +920,7 @@ public class LibraryManagementSystem extends JFrame {
         tabbedPane.addTab("Borrow/Return", createBorrowReturnPanel());
         tabbedPane.addTab("Records", createRecordsPanel());
         tabbedPane.addTab("Reports", createReportsPanel());
+        tabbedPane.addTab("Metrics", createMetricsPanel());
 
         add(tabbedPane);
     }
@@ -244,13 +928,7 @@ public class LibraryManagementSystem extends JFrame {
     private JPanel createBooksPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        String[] columnNames = {"ISBN", "Title", "Author", "Category", "Total Copies", "Available", "Date Added"};
-        booksTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        booksTableModel = new BooksTableModel();
         booksTable = new JTable(booksTableModel);
         booksTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
@@ -266,15 +944,39 @@ public class LibraryManagementSystem extends JFrame {
         editButton.addActionListener(e -> showEditBookDialog());
         
         JButton deleteButton = new JButton("Delete Book");
-        deleteButton.addActionListener(e -> deleteSelectedBook());
+        deleteButton.addActionListener(e -> deleteSelectedBook(deleteButton));
+
+        JButton importButton = new JButton("Import...");
+        importButton.addActionListener(e -> importCatalogue());
         
         JTextField searchField = new JTextField(20);
         JButton searchButton = new JButton("Search");
         searchButton.addActionListener(e -> searchBooks(searchField.getText()));
+        searchField.addActionListener(e -> searchBooks(searchField.getText()));
+
+        Timer searchDebounce = new Timer(SEARCH_DEBOUNCE_MS, e -> searchBooks(searchField.getText()));
+        searchDebounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+        });
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(importButton);
         buttonPanel.add(new JLabel("Search:"));
         buttonPanel.add(searchField);
         buttonPanel.add(searchButton);
@@ -322,15 +1024,17 @@ public class LibraryManagementSystem extends JFrame {
                 return;
             }
 
-            if (libraryManager.borrowBook(isbn, name, email)) {
-                JOptionPane.showMessageDialog(this, "Book borrowed successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                borrowIsbnField.setText("");
-                borrowerNameField.setText("");
-                borrowerEmailField.setText("");
-                refreshTables();
-            } else {
-                JOptionPane.showMessageDialog(this, "Book not available or not found.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            runChange(borrowButton, () -> libraryManager.recordBorrow(isbn, name, email,
+                    libraryManager.getClock().date()), record -> {
+                if (record != null) {
+                    JOptionPane.showMessageDialog(this, "Book borrowed successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    borrowIsbnField.setText("");
+                    borrowerNameField.setText("");
+                    borrowerEmailField.setText("");
+                } else {
+                    JOptionPane.showMessageDialog(this, "Book not available or not found.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
         borrowPanel.add(borrowButton, gbc);
 
@@ -360,57 +1064,207 @@ public class LibraryManagementSystem extends JFrame {
                 return;
             }
 
-            if (libraryManager.returnBook(isbn, name)) {
-                JOptionPane.showMessageDialog(this, "Book returned successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                returnIsbnField.setText("");
-                returnNameField.setText("");
-                refreshTables();
-            } else {
-                JOptionPane.showMessageDialog(this, "No matching borrow record found.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            runChange(returnButton, () -> libraryManager.recordReturn(isbn, name, libraryManager.getClock().date()),
+                    record -> {
+                if (record != null) {
+                    JOptionPane.showMessageDialog(this, "Book returned successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    returnIsbnField.setText("");
+                    returnNameField.setText("");
+                } else {
+                    JOptionPane.showMessageDialog(this, "No matching borrow record found.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
         returnPanel.add(returnButton, gbc);
 
+        JPanel batchPanel = new JPanel(new GridBagLayout());
+        batchPanel.setBorder(BorderFactory.createTitledBorder("Self-Checkout Stack / Returns Bin"));
+
+        gbc.gridx = 0; gbc.gridy = 0; gbc.anchor = GridBagConstraints.NORTHWEST;
+        batchPanel.add(new JLabel("ISBNs (one per line):"), gbc);
+        gbc.gridx = 1;
+        JTextArea batchIsbnArea = new JTextArea(6, 15);
+        batchPanel.add(new JScrollPane(batchIsbnArea), gbc);
+
+        gbc.gridx = 0; gbc.gridy = 1; gbc.anchor = GridBagConstraints.CENTER;
+        batchPanel.add(new JLabel("Borrower Name:"), gbc);
+        gbc.gridx = 1;
+        JTextField batchNameField = new JTextField(15);
+        batchPanel.add(batchNameField, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 2;
+        batchPanel.add(new JLabel("Borrower Email:"), gbc);
+        gbc.gridx = 1;
+        JTextField batchEmailField = new JTextField(15);
+        batchPanel.add(batchEmailField, gbc);
+
+        JButton borrowAllButton = new JButton("Borrow All");
+        borrowAllButton.addActionListener(e -> applyLoanBatch(LoanBatch.Kind.BORROW, borrowAllButton, batchIsbnArea,
+                batchNameField, batchEmailField));
+        JButton returnAllButton = new JButton("Return All");
+        returnAllButton.addActionListener(e -> applyLoanBatch(LoanBatch.Kind.RETURN, returnAllButton, batchIsbnArea,
+                batchNameField, batchEmailField));
+        JPanel batchButtons = new JPanel();
+        batchButtons.add(borrowAllButton);
+        batchButtons.add(returnAllButton);
+        gbc.gridx = 1; gbc.gridy = 3;
+        batchPanel.add(batchButtons, gbc);
+
         gbc.gridx = 0; gbc.gridy = 0; gbc.anchor = GridBagConstraints.NORTH;
         panel.add(borrowPanel, gbc);
         gbc.gridx = 0; gbc.gridy = 1;
         panel.add(returnPanel, gbc);
+        gbc.gridx = 1; gbc.gridy = 0; gbc.gridheight = 2;
+        panel.add(batchPanel, gbc);
 
         return panel;
     }
 
+    // Borrows or returns every listed ISBN for one borrower as a single
+    // batch and reports per-item failures. The tables catch up from the
+    // batch's events.
+    private void applyLoanBatch(LoanBatch.Kind kind, JButton button, JTextArea isbnArea, JTextField nameField,
+                                JTextField emailField) {
+        String name = nameField.getText().trim();
+        String email = emailField.getText().trim();
+        if (name.isEmpty() || (kind == LoanBatch.Kind.BORROW && email.isEmpty())) {
+            JOptionPane.showMessageDialog(this, "Please fill all fields.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        LoanBatch batch = new LoanBatch();
+        for (String line : isbnArea.getText().split("\\R")) {
+            String isbn = line.trim();
+            if (isbn.isEmpty()) {
+                continue;
+            }
+            if (kind == LoanBatch.Kind.BORROW) {
+                batch.borrow(isbn, name, email);
+            } else {
+                batch.returnBook(isbn, name);
+            }
+        }
+        if (batch.size() == 0) {
+            JOptionPane.showMessageDialog(this, "Please enter at least one ISBN.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        runChange(button, () -> libraryManager.applyLoans(batch), results -> {
+            int succeeded = 0;
+            StringBuilder failures = new StringBuilder();
+            for (LoanBatch.Result result : results) {
+                if (result.succeeded()) {
+                    succeeded++;
+                } else {
+                    failures.append("\n").append(result.getItem().getIsbn()).append(": ")
+                            .append(describe(result.getOutcome()));
+                }
+            }
+
+            String verb = kind == LoanBatch.Kind.BORROW ? "borrowed" : "returned";
+            String summary = succeeded + " of " + results.size() + " books " + verb + ".";
+            if (failures.length() == 0) {
+                isbnArea.setText("");
+                JOptionPane.showMessageDialog(this, summary, "Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, summary + failures, "Some Items Failed", JOptionPane.WARNING_MESSAGE);
+            }
+        });
+    }
+
+    private static String describe(LoanBatch.Outcome outcome) {
+        switch (outcome) {
+            case UNKNOWN_ISBN: return "not found";
+            case UNAVAILABLE: return "no copies available";
+            case NO_OPEN_LOAN: return "no matching borrow record";
+            default: return outcome.toString();
+        }
+    }
+
     private JPanel createRecordsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        String[] columnNames = {"ISBN", "Title", "Borrower", "Email", "Borrow Date", "Due Date", "Return Date", "Status"};
-        borrowRecordsTableModel = new DefaultTableModel(columnNames, 0) {
+        borrowRecordsTableModel = new BorrowRecordsTableModel(libraryManager.getClock());
+        borrowRecordsTable = new JTable(borrowRecordsTableModel);
+        borrowRecordsTable.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public void mouseClicked(MouseEvent e) {
+                int column = borrowRecordsTable.convertColumnIndexToModel(borrowRecordsTable.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    sortRecords(LoanQuery.Column.values()[column]);
+                }
             }
-        };
-        borrowRecordsTable = new JTable(borrowRecordsTableModel);
+        });
+        showRecordsSort();
 
         JScrollPane scrollPane = new JScrollPane(borrowRecordsTable);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        JPanel buttonPanel = new JPanel(new FlowLayout());
-        
-        JButton showAllButton = new JButton("Show All Records");
-        showAllButton.addActionListener(e -> showAllRecords());
-        
-        JButton showActiveButton = new JButton("Show Active Records");
-        showActiveButton.addActionListener(e -> showActiveRecords());
-        
-        JButton showOverdueButton = new JButton("Show Overdue Records");
-        showOverdueButton.addActionListener(e -> showOverdueRecords());
+        JPanel filterPanel = new JPanel(new FlowLayout());
+        JTextField borrowerField = new JTextField(10);
+        JTextField isbnField = new JTextField(10);
+        JComboBox<String> statusBox = new JComboBox<>(new String[] {"All", "Open", "Overdue", "Returned"});
+        JComboBox<String> dateBox = new JComboBox<>(new String[] {"Borrowed", "Due", "Returned"});
+        JTextField fromField = new JTextField(8);
+        JTextField toField = new JTextField(8);
+        JButton filterButton = new JButton("Filter");
+        ActionListener filter = e -> filterRecords(borrowerField.getText(), isbnField.getText(),
+                statusBox.getSelectedIndex(), dateBox.getSelectedIndex(), fromField.getText(), toField.getText());
+        filterButton.addActionListener(filter);
+        borrowerField.addActionListener(filter);
+        isbnField.addActionListener(filter);
+        statusBox.addActionListener(filter);
+        fromField.addActionListener(filter);
+        toField.addActionListener(filter);
+
+        filterPanel.add(new JLabel("Borrower:"));
+        filterPanel.add(borrowerField);
+        filterPanel.add(new JLabel("ISBN:"));
+        filterPanel.add(isbnField);
+        filterPanel.add(new JLabel("Status:"));
+        filterPanel.add(statusBox);
+        filterPanel.add(dateBox);
+        filterPanel.add(new JLabel("from"));
+        filterPanel.add(fromField);
+        filterPanel.add(new JLabel("to"));
+        filterPanel.add(toField);
+        filterPanel.add(filterButton);
+        panel.add(filterPanel, BorderLayout.NORTH);
+
+        JPanel pagePanel = new JPanel(new FlowLayout());
+        previousRecordsButton = new JButton("< Previous");
+        previousRecordsButton.addActionListener(e -> {
+            recordsPageStarts.remove(recordsPageStarts.size() - 1);
+            loadRecordsPage();
+        });
+        nextRecordsButton = new JButton("Next >");
+        nextRecordsButton.addActionListener(e -> {
+            recordsPageStarts.add(recordsNextPage);
+            loadRecordsPage();
+        });
+        recordsPageLabel = new JLabel();
+        pagePanel.add(previousRecordsButton);
+        pagePanel.add(recordsPageLabel);
+        pagePanel.add(nextRecordsButton);
+        panel.add(pagePanel, BorderLayout.SOUTH);
 
-        buttonPanel.add(showAllButton);
-        buttonPanel.add(showActiveButton);
-        buttonPanel.add(showOverdueButton);
+        return panel;
+    }
 
-        panel.add(buttonPanel, BorderLayout.SOUTH);
+    private JPanel createMetricsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        if (!LibraryMetrics.ENABLED) {
+            panel.add(new JLabel("Metrics are turned off (-Dlibrary.metrics=false).", SwingConstants.CENTER),
+                    BorderLayout.CENTER);
+            return panel;
+        }
 
+        MetricsTableModel metricsTableModel = new MetricsTableModel();
+        metricsTableModel.update(LibraryMetrics.snapshot());
+        panel.add(new JScrollPane(new JTable(metricsTableModel)), BorderLayout.CENTER);
+        panel.add(new JLabel("Totals since startup; rates and latencies over the last "
+                + MetricsTableModel.WINDOW_SNAPSHOTS + " seconds."), BorderLayout.SOUTH);
+        new Timer(1000, e -> metricsTableModel.update(LibraryMetrics.snapshot())).start();
         return panel;
     }
 
@@ -419,72 +1273,80 @@ public class LibraryManagementSystem extends JFrame {
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(10, 10, 10, 10);
 
-        JTextArea reportArea = new JTextArea(20, 50);
-        reportArea.setEditable(false);
-        reportArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
-        JScrollPane scrollPane = new JScrollPane(reportArea);
+        reportPager = new ReportPager();
 
         gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 4;
-        panel.add(scrollPane, gbc);
+        panel.add(reportPager, gbc);
+
+        reportProgress = new JProgressBar(0, 100);
+        reportProgress.setStringPainted(true);
 
         JButton inventoryButton = new JButton("Inventory Report");
-        inventoryButton.addActionListener(e -> {
-            StringBuilder report = new StringBuilder();
-            report.append("LIBRARY INVENTORY REPORT\n");
-            report.append("========================\n\n");
-            
-            List<Book> books = libraryManager.getAllBooks();
-            report.append(String.format("Total Books: %d\n\n", books.size()));
-            
-            for (Book book : books) {
-                report.append(String.format("ISBN: %s\n", book.getIsbn()));
-                report.append(String.format("Title: %s\n", book.getTitle()));
-                report.append(String.format("Author: %s\n", book.getAuthor()));
-                report.append(String.format("Category: %s\n", book.getCategory()));
-                report.append(String.format("Total Copies: %d\n", book.getTotalCopies()));
-                report.append(String.format("Available: %d\n", book.getAvailableCopies()));
-                report.append("----------------------------------------\n");
-            }
-            
-            reportArea.setText(report.toString());
-        });
+        inventoryButton.addActionListener(e -> showReport(LibraryReports.INVENTORY));
 
         JButton borrowingButton = new JButton("Borrowing Report");
-        borrowingButton.addActionListener(e -> {
-            StringBuilder report = new StringBuilder();
-            report.append("BORROWING ACTIVITY REPORT\n");
-            report.append("=========================\n\n");
-            
-            List<BorrowRecord> records = libraryManager.getAllBorrowRecords();
-            List<BorrowRecord> active = libraryManager.getActiveBorrowRecords();
-            List<BorrowRecord> overdue = libraryManager.getOverdueRecords();
-            
-            report.append(String.format("Total Borrowing Records: %d\n", records.size()));
-            report.append(String.format("Active Borrows: %d\n", active.size()));
-            report.append(String.format("Overdue Books: %d\n\n", overdue.size()));
-            
-            if (!overdue.isEmpty()) {
-                report.append("OVERDUE BOOKS:\n");
-                report.append("==============\n");
-                for (BorrowRecord record : overdue) {
-                    report.append(String.format("Title: %s\n", record.getTitle()));
-                    report.append(String.format("Borrower: %s\n", record.getBorrowerName()));
-                    report.append(String.format("Due Date: %s\n", record.getDueDate()));
-                    report.append("----------------------------------------\n");
-                }
-            }
-            
-            reportArea.setText(report.toString());
-        });
+        borrowingButton.addActionListener(e -> showReport(LibraryReports.BORROWING));
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportReport());
 
         gbc.gridx = 0; gbc.gridy = 1; gbc.gridwidth = 1;
         panel.add(inventoryButton, gbc);
         gbc.gridx = 1;
         panel.add(borrowingButton, gbc);
+        gbc.gridx = 2;
+        panel.add(exportButton, gbc);
+        gbc.gridx = 3;
+        panel.add(reportProgress, gbc);
 
         return panel;
     }
 
+    private void showReport(LibraryReports report) {
+        shownReport = report;
+        reportTask.submit(new ReportWorker<PagedReport>(report, ReportWriter.Format.PLAIN) {
+            @Override
+            protected PagedReport open() throws IOException {
+                return PagedReport.create(REPORT_PAGE_LINES);
+            }
+
+            @Override
+            protected void finished(PagedReport pages) {
+                reportPager.show(pages);
+            }
+
+            @Override
+            protected void abandoned(PagedReport pages) {
+                pages.delete();
+            }
+        });
+    }
+
+    // Saves the report last shown; a .csv file name selects CSV output.
+    private void exportReport() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(shownReport.commandName() + "-report.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path path = chooser.getSelectedFile().toPath();
+        ReportWriter.Format format = path.getFileName().toString().toLowerCase().endsWith(".csv")
+                ? ReportWriter.Format.CSV : ReportWriter.Format.PLAIN;
+        exportTask.submit(new ReportWorker<ChannelReportSink>(shownReport, format) {
+            @Override
+            protected ChannelReportSink open() throws IOException {
+                return ChannelReportSink.toFile(path);
+            }
+
+            @Override
+            protected void finished(ChannelReportSink sink) {
+                JOptionPane.showMessageDialog(LibraryManagementSystem.this, "Report saved to " + path,
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+
     private void showAddBookDialog() {
         JDialog dialog = new JDialog(this, "Add New Book", true);
         dialog.setSize(400, 300);
@@ -542,13 +1404,14 @@ public class LibraryManagementSystem extends JFrame {
             }
 
             Book book = new Book(isbn, title, author, category, copies);
-            if (libraryManager.addBook(book)) {
-                JOptionPane.showMessageDialog(dialog, "Book added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                refreshTables();
-            } else {
-                JOptionPane.showMessageDialog(dialog, "Book with this ISBN already exists.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            runChange(saveButton, () -> libraryManager.addBook(book), added -> {
+                if (added) {
+                    JOptionPane.showMessageDialog(dialog, "Book added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "Book with this ISBN already exists.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -570,9 +1433,7 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
-        String isbn = (String) booksTableModel.getValueAt(selectedRow, 0);
-        Book book = libraryManager.findBookByIsbn(isbn);
-        if (book == null) return;
+        Book book = booksTableModel.getBookAt(selectedRow);
 
         JDialog dialog = new JDialog(this, "Edit Book", true);
         dialog.setSize(400, 300);
@@ -629,14 +1490,15 @@ public class LibraryManagementSystem extends JFrame {
                 return;
             }
 
-            book.setTitle(title);
-            book.setAuthor(author);
-            book.setCategory(category);
-            book.setTotalCopies(copies);
-
-            JOptionPane.showMessageDialog(dialog, "Book updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            dialog.dispose();
-            refreshTables();
+            runChange(saveButton, () -> libraryManager.updateBook(book.getIsbn(), title, author, category, copies),
+                    updated -> {
+                if (updated) {
+                    JOptionPane.showMessageDialog(dialog, "Book updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "This book has been deleted.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                dialog.dispose();
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -651,112 +1513,410 @@ public class LibraryManagementSystem extends JFrame {
         dialog.setVisible(true);
     }
 
-    private void deleteSelectedBook() {
+    private void deleteSelectedBook(JButton deleteButton) {
         int selectedRow = booksTable.getSelectedRow();
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(this, "Please select a book to delete.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        String isbn = (String) booksTableModel.getValueAt(selectedRow, 0);
-        String title = (String) booksTableModel.getValueAt(selectedRow, 1);
+        Book book = booksTableModel.getBookAt(selectedRow);
 
         int confirm = JOptionPane.showConfirmDialog(this, 
-            "Are you sure you want to delete '" + title + "'?", 
+            "Are you sure you want to delete '" + book.getTitle() + "'?", 
             "Confirm Delete", 
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            if (libraryManager.removeBook(isbn)) {
-                JOptionPane.showMessageDialog(this, "Book deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshTables();
+            runChange(deleteButton, () -> libraryManager.removeBook(book.getIsbn()), removed -> {
+                if (removed) {
+                    JOptionPane.showMessageDialog(this, "Book deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
+        }
+    }
+
+    // Applies a change on a worker thread, because a journaled change waits
+    // for its fsync, and shows its outcome back on the EDT. The button that
+    // started it is disabled meanwhile so a slow disk cannot queue it twice.
+    private <T> void runChange(JButton button, Supplier<T> change, Consumer<T> onDone) {
+        button.setEnabled(false);
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() {
+                return change.get();
             }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                try {
+                    onDone.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this,
+                            "The change could not be saved: " + e.getCause().getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void importCatalogue() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        Path path = chooser.getSelectedFile().toPath();
+
+        JDialog dialog = new JDialog(this, "Importing " + path.getFileName(), false);
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        JLabel status = new JLabel("Reading...");
+        JPanel content = new JPanel(new BorderLayout(5, 5));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(progressBar, BorderLayout.CENTER);
+        content.add(status, BorderLayout.SOUTH);
+        dialog.add(content);
+        dialog.setSize(400, 110);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+
+        long start = System.nanoTime();
+        new SwingWorker<CatalogueImport.Result, Long>() {
+            @Override
+            protected CatalogueImport.Result doInBackground() throws IOException {
+                return new CatalogueImport(libraryManager).importFile(path, (records, bytesRead, totalBytes) -> {
+                    setProgress(totalBytes == 0 ? 100 : (int) (100L * bytesRead / totalBytes));
+                    publish(records);
+                });
+            }
+
+            @Override
+            protected void process(List<Long> counts) {
+                long records = counts.get(counts.size() - 1);
+                long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                progressBar.setValue(getProgress());
+                status.setText(records + " records read (" + records * 1000 / elapsedMillis + " records/sec)");
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                try {
+                    CatalogueImport.Result result = get();
+                    StringBuilder message = new StringBuilder();
+                    message.append("Imported ").append(result.getImported()).append(" of ")
+                            .append(result.getRecords()).append(" records (")
+                            .append(result.recordsPerSecond()).append(" records/sec).");
+                    message.append("\nDuplicate ISBNs in file: ").append(result.getDuplicates());
+                    message.append("\nAlready in catalogue: ").append(result.getAlreadyCatalogued());
+                    message.append("\nRejected: ").append(result.getRejected());
+                    for (int i = 0; i < Math.min(10, result.getErrors().size()); i++) {
+                        message.append("\n  ").append(result.getErrors().get(i));
+                    }
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this, message.toString(),
+                            "Import Complete", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this, "Import failed: " + cause.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
     private void searchBooks(String query) {
+        booksQuery = query;
         if (query.trim().isEmpty()) {
             refreshBooksTable();
             return;
         }
 
-        List<Book> results = libraryManager.searchBooks(query);
-        booksTableModel.setRowCount(0);
-        
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        for (Book book : results) {
-            Object[] row = {
-                book.getIsbn(),
-                book.getTitle(),
-                book.getAuthor(),
-                book.getCategory(),
-                book.getTotalCopies(),
-                book.getAvailableCopies(),
-                book.getDateAdded().format(formatter)
-            };
-            booksTableModel.addRow(row);
+        booksTask.submit(() -> bookSearch.search(query), this::showBooks);
+    }
+
+    // Shows the first page of the Records tab's filters, keeping the sort.
+    // Dates are yyyy-MM-dd; either end of the range may be left empty.
+    private void filterRecords(String borrower, String isbn, int status, int dateField, String from, String to) {
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = from.trim().isEmpty() ? null : LocalDate.parse(from.trim());
+            toDate = to.trim().isEmpty() ? null : LocalDate.parse(to.trim());
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Dates must look like 2024-01-31.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        LoanQuery query = new LoanQuery().sortBy(recordsQuery.getSortColumn(), recordsQuery.isDescending())
+                .pageSize(RECORDS_PAGE_ROWS);
+        if (!borrower.trim().isEmpty()) {
+            query.borrower(borrower.trim());
+        }
+        if (!isbn.trim().isEmpty()) {
+            query.isbn(isbn.trim());
+        }
+        query.status(status == 0 ? null : LoanQuery.Status.values()[status - 1]);
+        if (fromDate != null || toDate != null) {
+            if (dateField == 0) {
+                query.borrowedBetween(fromDate, toDate);
+            } else if (dateField == 1) {
+                query.dueBetween(fromDate, toDate);
+            } else {
+                query.returnedBetween(fromDate, toDate);
+            }
         }
+        showRecords(query);
     }
 
-    private void showAllRecords() {
-        List<BorrowRecord> records = libraryManager.getAllBorrowRecords();
-        updateBorrowRecordsTable(records);
+    // A header click sorts by that column, or reverses the sort if it
+    // already is the one.
+    private void sortRecords(LoanQuery.Column column) {
+        boolean descending = column == recordsQuery.getSortColumn() && !recordsQuery.isDescending();
+        recordsQuery.sortBy(column, descending);
+        showRecordsSort();
+        showRecords(recordsQuery);
     }
 
-    private void showActiveRecords() {
-        List<BorrowRecord> records = libraryManager.getActiveBorrowRecords();
-        updateBorrowRecordsTable(records);
+    private void showRecordsSort() {
+        for (int i = 0; i < borrowRecordsTable.getColumnCount(); i++) {
+            TableColumn column = borrowRecordsTable.getColumnModel().getColumn(i);
+            String name = borrowRecordsTableModel.getColumnName(column.getModelIndex());
+            if (column.getModelIndex() == recordsQuery.getSortColumn().ordinal()) {
+                name += recordsQuery.isDescending() ? " \u25BC" : " \u25B2";
+            }
+            column.setHeaderValue(name);
+        }
+        borrowRecordsTable.getTableHeader().repaint();
     }
 
-    private void showOverdueRecords() {
-        List<BorrowRecord> records = libraryManager.getOverdueRecords();
-        updateBorrowRecordsTable(records);
+    private void showRecords(LoanQuery query) {
+        recordsQuery = query;
+        recordsPageStarts.clear();
+        recordsPageStarts.add(null);
+        loadRecordsPage();
     }
 
-    private void updateBorrowRecordsTable(List<BorrowRecord> records) {
-        borrowRecordsTableModel.setRowCount(0);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        
-        for (BorrowRecord record : records) {
-            Object[] row = {
-                record.getIsbn(),
-                record.getTitle(),
-                record.getBorrowerName(),
-                record.getBorrowerEmail(),
-                record.getBorrowDate().format(formatter),
-                record.getDueDate().format(formatter),
-                record.getReturnDate() != null ? record.getReturnDate().format(formatter) : "",
-                record.isReturned() ? "Returned" : (record.isOverdue() ? "Overdue" : "Active")
-            };
-            borrowRecordsTableModel.addRow(row);
+    private void loadRecordsPage() {
+        LoanQuery query = recordsQuery;
+        LoanQuery.Cursor start = recordsPageStarts.get(recordsPageStarts.size() - 1);
+        int firstRow = (recordsPageStarts.size() - 1) * RECORDS_PAGE_ROWS;
+        previousRecordsButton.setEnabled(false);
+        nextRecordsButton.setEnabled(false);
+        recordsTask.submit(() -> start == null ? libraryManager.queryBorrowRecords(query)
+                : libraryManager.queryBorrowRecords(start), page -> {
+            borrowRecordsTableModel.setRecords(page.getRecords());
+            recordsNextPage = page.getNext();
+            previousRecordsButton.setEnabled(recordsPageStarts.size() > 1);
+            nextRecordsButton.setEnabled(recordsNextPage != null);
+            recordsPageLabel.setText(page.getRecords().isEmpty() ? "No records"
+                    : "Records " + (firstRow + 1) + "-" + (firstRow + page.getRecords().size()));
+        });
+    }
+
+    // The first page is read again from a fresh snapshot. Later pages keep
+    // the snapshot they came from until the user pages back, and only
+    // repaint statuses.
+    private void recordsChanged() {
+        if (recordsPageStarts.size() == 1) {
+            loadRecordsPage();
+        } else {
+            borrowRecordsTableModel.statusesChanged();
+        }
+    }
+
+    // Brings both tables up to date with a batch of changes without
+    // leaving the current search or records view. While the whole catalogue
+    // is shown, added books are appended, removed ones dropped and edited or
+    // loaned ones repainted, so the selected row stays selected. A search,
+    // or a catalogue snapshot still being loaded, is re-run instead, once for
+    // the whole batch; snapshots are taken after the changes were published,
+    // so none of them can be missed.
+    private void libraryChanged(List<LibraryEvent> events) {
+        boolean searching = !booksQuery.trim().isEmpty();
+        boolean reloadBooks = booksTask.isPending();
+        boolean loansChanged = false;
+        List<Book> addedBooks = new ArrayList<>();
+        Set<Book> removedBooks = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Book> changedBooks = new ArrayList<>();
+        for (LibraryEvent event : events) {
+            if (event.changesCatalogue()) {
+                reloadBooks |= searching;
+                if (event.getKind() == LibraryEvent.Kind.BOOK_ADDED) {
+                    addedBooks.add(event.getBook());
+                } else {
+                    removedBooks.add(event.getBook());
+                }
+                continue;
+            }
+            if (event.getKind() == LibraryEvent.Kind.BOOK_UPDATED) {
+                // An edited title or author can move a book in or out of a search.
+                reloadBooks |= searching;
+            } else {
+                loansChanged = true;
+            }
+            if (event.getBook() != null) {
+                changedBooks.add(event.getBook());
+            }
+        }
+
+        if (reloadBooks) {
+            searchBooks(booksQuery);
+        } else {
+            // A book added and removed within the batch is never listed; a
+            // re-added ISBN is a new Book, so identity tells them apart.
+            addedBooks.removeIf(removedBooks::contains);
+            booksTableModel.booksRemoved(removedBooks);
+            booksTableModel.booksAdded(addedBooks);
+            booksTableModel.booksUpdated(changedBooks);
+        }
+        if (loansChanged) {
+            recordsChanged();
         }
     }
 
     private void refreshTables() {
         refreshBooksTable();
-        showAllRecords();
+        showRecords(recordsQuery);
     }
 
     private void refreshBooksTable() {
-        booksTableModel.setRowCount(0);
-        List<Book> books = libraryManager.getAllBooks();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        
-        for (Book book : books) {
-            Object[] row = {
-                book.getIsbn(),
-                book.getTitle(),
-                book.getAuthor(),
-                book.getCategory(),
-                book.getTotalCopies(),
-                book.getAvailableCopies(),
-                book.getDateAdded().format(formatter)
-            };
-            booksTableModel.addRow(row);
+        booksTask.submit(libraryManager::getAllBooks, this::showBooks);
+    }
+
+    // Keeps the selected book selected if it is among the new rows.
+    private void showBooks(List<Book> books) {
+        int selectedRow = booksTable.getSelectedRow();
+        Book selected = selectedRow >= 0 ? booksTableModel.getBookAt(selectedRow) : null;
+        booksTableModel.setBooks(books);
+        int row = selected != null ? booksTableModel.rowOf(selected) : -1;
+        if (row >= 0) {
+            booksTable.setRowSelectionInterval(row, row);
+        }
+    }
+
+    // Writes a report to a sink off the EDT, with progress, so a large
+    // report never blocks the window.
+    private abstract class ReportWorker<S extends ReportWriter.Sink> extends SwingWorker<S, Void> {
+        private final LibraryReports report;
+        private final ReportWriter.Format format;
+
+        ReportWorker(LibraryReports report, ReportWriter.Format format) {
+            this.report = report;
+            this.format = format;
+            reportProgress.setValue(0);
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    reportProgress.setValue((Integer) e.getNewValue());
+                }
+            });
+        }
+
+        protected abstract S open() throws IOException;
+
+        protected abstract void finished(S sink);
+
+        protected void abandoned(S sink) {
+        }
+
+        @Override
+        protected S doInBackground() throws IOException {
+            S sink = open();
+            try (ReportWriter out = new ReportWriter(sink, format)) {
+                report.write(libraryManager, out, this::progress);
+            } catch (IOException | RuntimeException e) {
+                abandoned(sink);
+                throw e;
+            }
+            return sink;
+        }
+
+        private void progress(int done, int total) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            if (done == total || done % 1000 == 0) {
+                setProgress((int) (100L * done / total));
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                S sink = get();
+                setProgress(100);
+                finished(sink);
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                JOptionPane.showMessageDialog(LibraryManagementSystem.this, "Report failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    // One page of the current report at a time, with paging controls.
+    private static class ReportPager extends JPanel {
+        private static final long serialVersionUID = 1L;
+        private final JTextArea area = new JTextArea(20, 50);
+        private final JLabel pageLabel = new JLabel(" ");
+        private final JButton previousButton = new JButton("< Previous");
+        private final JButton nextButton = new JButton("Next >");
+        private PagedReport report;
+        private int page;
+
+        ReportPager() {
+            super(new BorderLayout(5, 5));
+            area.setEditable(false);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            previousButton.addActionListener(e -> showPage(page - 1));
+            nextButton.addActionListener(e -> showPage(page + 1));
+            previousButton.setEnabled(false);
+            nextButton.setEnabled(false);
+
+            JPanel navigation = new JPanel();
+            navigation.add(previousButton);
+            navigation.add(pageLabel);
+            navigation.add(nextButton);
+            add(new JScrollPane(area), BorderLayout.CENTER);
+            add(navigation, BorderLayout.SOUTH);
+        }
+
+        void show(PagedReport next) {
+            if (report != null) {
+                report.delete();
+            }
+            report = next;
+            showPage(0);
+        }
+
+        private void showPage(int index) {
+            try {
+                area.setText(report.readPage(index));
+                area.setCaretPosition(0);
+                page = index;
+            } catch (IOException e) {
+                area.setText("Could not read report: " + e.getMessage());
+            }
+            pageLabel.setText("Page " + (page + 1) + " of " + report.pageCount());
+            previousButton.setEnabled(page > 0);
+            nextButton.setEnabled(page + 1 < report.pageCount());
         }
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--report")) {
+            System.exit(printReport(args));
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
+
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.getSystemLookAndFeelClassName();
@@ -767,4 +1927,68 @@ public class LibraryManagementSystem extends JFrame {
             new LibraryManagementSystem().setVisible(true);
         });
     }
+
+    // java LibraryManagementSystem --serve [port]
+    // Runs headless with the HTTP API until the process is stopped.
+    private static void serve(String[] args) {
+        int port = LibraryHttpServer.DEFAULT_PORT;
+        try {
+            if (args.length > 1) {
+                port = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: java LibraryManagementSystem --serve [port]");
+            System.exit(2);
+        }
+
+        try {
+            LibraryManager manager = new LibraryManager(DATA_DIRECTORY, LibraryJournal.SyncMode.PER_BATCH);
+            manager.setTraceRecorder(OperationTrace.Recorder.fromSystemProperty());
+            LibraryHttpServer server = LibraryHttpServer.start(manager, new InetSocketAddress(port));
+            ScheduledExecutorService overdueCheck = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "overdue-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            overdueCheck.scheduleWithFixedDelay(manager::checkOverdue, 1, 1, TimeUnit.MINUTES);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                overdueCheck.shutdownNow();
+                try {
+                    manager.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close the library journal: " + e.getMessage());
+                }
+            }));
+            System.out.println("Serving the library on port " + server.getAddress().getPort()
+                    + (server.usesVirtualThreads() ? " (virtual threads)" : ""));
+        } catch (IOException e) {
+            System.err.println("Could not start the library server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // java LibraryManagementSystem --report inventory|borrowing [--csv]
+    private static int printReport(String[] args) {
+        LibraryReports report = args.length > 1 ? LibraryReports.forCommandName(args[1]) : null;
+        if (report == null) {
+            System.err.println("Usage: java LibraryManagementSystem --report inventory|borrowing [--csv]");
+            return 2;
+        }
+        ReportWriter.Format format = args.length > 2 && args[2].equals("--csv")
+                ? ReportWriter.Format.CSV : ReportWriter.Format.PLAIN;
+
+        try {
+            LibraryManager manager = new LibraryManager(DATA_DIRECTORY, LibraryJournal.SyncMode.PER_BATCH);
+            try (ReportWriter out = new ReportWriter(ChannelReportSink.toStdout(), format)) {
+                report.write(manager, out, (done, total) -> { });
+            } finally {
+                manager.close();
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Could not write report: " + e.getMessage());
+            return 1;
+        }
+    }
 }
\ No newline at end of file
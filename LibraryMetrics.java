@@ -0,0 +1,129 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Process-wide latency histograms for the operations desks and kiosks wait
+// on. Timing a call is
+//
+//     long start = LibraryMetrics.start();
+//     ...
+//     LibraryMetrics.record(LibraryMetrics.Operation.BORROW, start);
+//
+// Each LibraryManager records into a Recorder of its own instead, so the
+// shards of a ShardedLibrary never write to each other's histograms;
+// snapshot() adds up every recorder.
+//
+// Run with -Dlibrary.metrics=false to turn it off. ENABLED is a constant,
+// so the JIT then drops both calls and the clock reads along with them.
+final class LibraryMetrics {
+    static final boolean ENABLED = !"false".equals(System.getProperty("library.metrics"));
+
+    enum Operation {
+        BORROW("Borrow"),
+        RETURN("Return"),
+        LOAN_BATCH("Loan batch"),
+        SEARCH("Search"),
+        BOOKS_REFRESH("Books table refresh"),
+        RECORDS_REFRESH("Records table refresh");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        String getLabel() { return label; }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    // Every recorder that has recorded anything. None is ever dropped, so
+    // snapshots stay cumulative.
+    private static final List<Recorder> RECORDERS = new CopyOnWriteArrayList<>();
+    private static final Recorder SHARED = new Recorder();
+
+    private LibraryMetrics() {
+    }
+
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static void record(Operation operation, long start) {
+        SHARED.record(operation, start);
+    }
+
+    static Snapshot snapshot() {
+        Map<Operation, LatencyHistogram.Snapshot> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram.Snapshot sum = LatencyHistogram.emptySnapshot();
+            for (Recorder recorder : RECORDERS) {
+                LatencyHistogram histogram = recorder.histograms.get(operation.ordinal());
+                if (histogram != null) {
+                    sum = sum.plus(histogram.snapshot());
+                }
+            }
+            histograms.put(operation, sum);
+        }
+        return new Snapshot(System.nanoTime(), histograms);
+    }
+
+    static final class Recorder {
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+                new AtomicReferenceArray<>(OPERATIONS.length);
+        private boolean registered;
+
+        void record(Operation operation, long start) {
+            if (ENABLED) {
+                LatencyHistogram histogram = histograms.get(operation.ordinal());
+                if (histogram == null) {
+                    histogram = create(operation);
+                }
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        // Histograms are made on first use, so a manager that never times
+        // anything, such as the scratch one a compaction replays into,
+        // costs snapshot() nothing.
+        private synchronized LatencyHistogram create(Operation operation) {
+            LatencyHistogram histogram = histograms.get(operation.ordinal());
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                histograms.set(operation.ordinal(), histogram);
+                if (!registered) {
+                    registered = true;
+                    RECORDERS.add(this);
+                }
+            }
+            return histogram;
+        }
+    }
+
+    // Cumulative counts since startup, and when they were taken; subtract an
+    // earlier snapshot for throughput and percentiles over an interval.
+    static final class Snapshot {
+        private final long takenAtNanos;
+        private final Map<Operation, LatencyHistogram.Snapshot> histograms;
+
+        private Snapshot(long takenAtNanos, Map<Operation, LatencyHistogram.Snapshot> histograms) {
+            this.takenAtNanos = takenAtNanos;
+            this.histograms = Collections.unmodifiableMap(histograms);
+        }
+
+        long getTakenAtNanos() { return takenAtNanos; }
+
+        LatencyHistogram.Snapshot get(Operation operation) {
+            return histograms.get(operation);
+        }
+
+        Snapshot since(Snapshot earlier) {
+            Map<Operation, LatencyHistogram.Snapshot> interval = new EnumMap<>(Operation.class);
+            histograms.forEach((operation, histogram) ->
+                    interval.put(operation, histogram.since(earlier.get(operation))));
+            return new Snapshot(takenAtNanos, interval);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// The reports offered by the Reports tab and the --report command line.
+// Both walk a snapshot of the catalogue rather than a copy of it.
+enum LibraryReports {
+    INVENTORY("inventory") {
+        @Override
+        void write(LibraryManager manager, ReportWriter out, Progress progress) throws IOException {
+            out.title("LIBRARY INVENTORY REPORT");
+            List<Book> books = manager.getAllBooks();
+            LibraryStats stats = manager.getStats();
+            int total = books.size();
+            out.total("Total Books", total)
+                    .total("Total Copies", stats.getTotalCopies())
+                    .total("Available Copies", stats.getAvailableCopies())
+                    .blankLine();
+            if (!stats.getTitlesByCategory().isEmpty()) {
+                out.section("BOOKS BY CATEGORY:");
+                for (Map.Entry<String, Long> category : stats.getTitlesByCategory().entrySet()) {
+                    out.total(category.getKey(), category.getValue());
+                }
+                out.blankLine();
+            }
+            out.columns("ISBN", "Title", "Author", "Category", "Total Copies", "Available");
+
+            int done = 0;
+            for (Book book : books) {
+                out.field("ISBN", book.getIsbn())
+                        .field("Title", book.getTitle())
+                        .field("Author", book.getAuthor())
+                        .field("Category", book.getCategory())
+                        .field("Total Copies", book.getTotalCopies())
+                        .field("Available", book.getAvailableCopies())
+                        .endRecord();
+                progress.update(++done, total);
+            }
+        }
+    },
+    BORROWING("borrowing") {
+        @Override
+        void write(LibraryManager manager, ReportWriter out, Progress progress) throws IOException {
+            out.title("BORROWING ACTIVITY REPORT");
+            LibraryStats stats = manager.getStats();
+            out.total("Total Borrowing Records", stats.getLoansRecorded())
+                    .total("Active Borrows", stats.getActiveLoans())
+                    .total("Overdue Books", stats.getOverdueLoans())
+                    .blankLine();
+
+            List<BorrowRecord> overdue = manager.getOverdueRecords();
+            out.columns("Title", "Borrower", "Due Date");
+
+            if (!overdue.isEmpty()) {
+                out.section("OVERDUE BOOKS:");
+            }
+            for (int i = 0; i < overdue.size(); i++) {
+                BorrowRecord record = overdue.get(i);
+                out.field("Title", record.getTitle())
+                        .field("Borrower", record.getBorrowerName())
+                        .field("Due Date", record.getDueDate())
+                        .endRecord();
+                progress.update(i + 1, overdue.size());
+            }
+        }
+    };
+
+    interface Progress {
+        void update(int done, int total);
+    }
+
+    private final String commandName;
+
+    LibraryReports(String commandName) {
+        this.commandName = commandName;
+    }
+
+    public String commandName() {
+        return commandName;
+    }
+
+    public static LibraryReports forCommandName(String name) {
+        for (LibraryReports report : values()) {
+            if (report.commandName.equalsIgnoreCase(name)) {
+                return report;
+            }
+        }
+        return null;
+    }
+
+    abstract void write(LibraryManager manager, ReportWriter out, Progress progress) throws IOException;
+}
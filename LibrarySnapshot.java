@@ -0,0 +1,185 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Compact binary image of the catalogue and borrowing history. snapshot-N
+// holds the state after every journal segment numbered below N, so startup
+// maps the newest snapshot and replays only segments N and later.
+//
+// Layout: magic, version, book count, books, record count, records, crc32.
+// Strings are written once and referenced by id afterwards, so repeated
+// ISBNs, titles and borrowers cost four bytes per record.
+final class LibrarySnapshot {
+    private static final int MAGIC = 0x4C494253;
+    private static final int VERSION = 1;
+    private static final int NOT_RETURNED = Integer.MIN_VALUE;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private LibrarySnapshot() {
+    }
+
+    // Loads the newest snapshot into the manager and returns the first journal
+    // segment not covered by it, or 0 when there is no snapshot yet.
+    public static long loadLatest(Path directory, LibraryManager manager) throws IOException {
+        List<Long> snapshots = snapshots(directory);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        long segment = snapshots.get(snapshots.size() - 1);
+        load(snapshotFile(directory, segment), manager);
+        return segment;
+    }
+
+    public static void write(Path directory, long segment, Collection<Book> books,
+                             Collection<BorrowRecord> records) throws IOException {
+        Path target = snapshotFile(directory, segment);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temp), crc), 1 << 16))) {
+            Map<String, Integer> strings = new HashMap<>();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(books.size());
+            for (Book book : books) {
+                writeString(out, strings, book.getIsbn());
+                writeString(out, strings, book.getTitle());
+                writeString(out, strings, book.getAuthor());
+                writeString(out, strings, book.getCategory());
+                out.writeInt(book.getTotalCopies());
+                out.writeInt(book.getAvailableCopies());
+                out.writeInt((int) book.getDateAdded().toEpochDay());
+            }
+            out.writeInt(records.size());
+            for (BorrowRecord record : records) {
+                writeString(out, strings, record.getIsbn());
+                writeString(out, strings, record.getTitle());
+                writeString(out, strings, record.getBorrowerName());
+                writeString(out, strings, record.getBorrowerEmail());
+                out.writeInt(record.getBorrowDay());
+                out.writeInt(record.isReturned() ? record.getReturnDay() : NOT_RETURNED);
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static void deleteBefore(Path directory, long segment) throws IOException {
+        for (long existing : snapshots(directory)) {
+            if (existing < segment) {
+                Files.deleteIfExists(snapshotFile(directory, existing));
+            }
+        }
+    }
+
+    private static void load(Path file, LibraryManager manager) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 12) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bodyLength = buffer.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(bodyLength)
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Snapshot " + file + " is damaged");
+            }
+            List<String> strings = new ArrayList<>();
+            Map<Integer, LocalDate> dates = new HashMap<>();
+
+            int bookCount = buffer.getInt();
+            for (int i = 0; i < bookCount; i++) {
+                String isbn = readString(buffer, strings);
+                String title = readString(buffer, strings);
+                String author = readString(buffer, strings);
+                String category = readString(buffer, strings);
+                int total = buffer.getInt();
+                int available = buffer.getInt();
+                LocalDate added = date(dates, buffer.getInt());
+                manager.restoreBook(new Book(isbn, title, author, category, total, added), available);
+            }
+            int recordCount = buffer.getInt();
+            for (int i = 0; i < recordCount; i++) {
+                String isbn = readString(buffer, strings);
+                String title = readString(buffer, strings);
+                String borrower = readString(buffer, strings);
+                String email = readString(buffer, strings);
+                int borrowed = buffer.getInt();
+                int returned = buffer.getInt();
+                if (returned != NOT_RETURNED) {
+                    manager.restoreReturnedLoan(isbn, title, borrower, email, borrowed, returned);
+                } else {
+                    manager.restoreRecord(new BorrowRecord(isbn, title, borrower, email, borrowed));
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings, String value)
+            throws IOException {
+        Integer id = strings.get(value);
+        if (id != null) {
+            out.writeInt(id);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(-1 - bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, List<String> strings) {
+        int header = buffer.getInt();
+        if (header >= 0) {
+            return strings.get(header);
+        }
+        byte[] bytes = new byte[-1 - header];
+        buffer.get(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+
+    private static LocalDate date(Map<Integer, LocalDate> dates, int epochDay) {
+        return dates.computeIfAbsent(epochDay, LocalDate::ofEpochDay);
+    }
+
+    private static List<Long> snapshots(Path directory) throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                snapshots.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+
+    private static Path snapshotFile(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", PREFIX, segment, SUFFIX));
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Catalogue and loan totals as of one moment. LibraryManager keeps the
+// running Counters up to date as it mutates, so reading stats never walks
+// books or loans. Each counter is exact once in-flight mutations finish;
+// a snapshot taken mid-traffic may mix counters from either side of one.
+final class LibraryStats {
+    private final long titles;
+    private final long totalCopies;
+    private final long availableCopies;
+    private final long loansRecorded;
+    private final long activeLoans;
+    private final long overdueLoans;
+    private final Map<String, Long> titlesByCategory;
+
+    private LibraryStats(long titles, long totalCopies, long availableCopies, long loansRecorded,
+                         long activeLoans, long overdueLoans, Map<String, Long> titlesByCategory) {
+        this.titles = titles;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.loansRecorded = loansRecorded;
+        this.activeLoans = activeLoans;
+        this.overdueLoans = overdueLoans;
+        this.titlesByCategory = titlesByCategory;
+    }
+
+    public long getTitles() { return titles; }
+    public long getTotalCopies() { return totalCopies; }
+    public long getAvailableCopies() { return availableCopies; }
+    public long getLoansRecorded() { return loansRecorded; }
+    public long getActiveLoans() { return activeLoans; }
+    public long getOverdueLoans() { return overdueLoans; }
+
+    // Sorted by category name; categories with no titles left are omitted.
+    public Map<String, Long> getTitlesByCategory() { return titlesByCategory; }
+
+    // Totals over several libraries, such as the shards of a ShardedLibrary.
+    static LibraryStats sum(Collection<LibraryStats> parts) {
+        long titles = 0;
+        long totalCopies = 0;
+        long availableCopies = 0;
+        long loansRecorded = 0;
+        long activeLoans = 0;
+        long overdueLoans = 0;
+        Map<String, Long> categories = new TreeMap<>();
+        for (LibraryStats part : parts) {
+            titles += part.titles;
+            totalCopies += part.totalCopies;
+            availableCopies += part.availableCopies;
+            loansRecorded += part.loansRecorded;
+            activeLoans += part.activeLoans;
+            overdueLoans += part.overdueLoans;
+            part.titlesByCategory.forEach((category, count) -> categories.merge(category, count, Long::sum));
+        }
+        return new LibraryStats(titles, totalCopies, availableCopies, loansRecorded, activeLoans, overdueLoans,
+                Collections.unmodifiableMap(categories));
+    }
+
+    // LongAdders rather than AtomicLongs: desks borrowing different titles
+    // update them concurrently and should not contend on one cache line.
+    static final class Counters {
+        private final LongAdder titles = new LongAdder();
+        private final LongAdder totalCopies = new LongAdder();
+        private final LongAdder availableCopies = new LongAdder();
+        private final LongAdder loansRecorded = new LongAdder();
+        private final LongAdder activeLoans = new LongAdder();
+        private final Map<Integer, LongAdder> titlesByCategory = new ConcurrentHashMap<>();
+
+        void bookAdded(Book book) {
+            titles.increment();
+            totalCopies.add(book.getTotalCopies());
+            availableCopies.add(book.getAvailableCopies());
+            category(book.getCategoryId()).increment();
+        }
+
+        void bookRemoved(Book book) {
+            titles.decrement();
+            totalCopies.add(-book.getTotalCopies());
+            availableCopies.add(-book.getAvailableCopies());
+            category(book.getCategoryId()).decrement();
+        }
+
+        void bookUpdated(int oldCategoryId, int oldTotal, int oldAvailable, Book book) {
+            totalCopies.add(book.getTotalCopies() - oldTotal);
+            availableCopies.add(book.getAvailableCopies() - oldAvailable);
+            if (oldCategoryId != book.getCategoryId()) {
+                category(oldCategoryId).decrement();
+                category(book.getCategoryId()).increment();
+            }
+        }
+
+        void availableChanged(int delta) {
+            availableCopies.add(delta);
+        }
+
+        void loanOpened() {
+            loansRecorded.increment();
+            activeLoans.increment();
+        }
+
+        void loanClosed() {
+            activeLoans.decrement();
+        }
+
+        void loanRestored(boolean open) {
+            loansRecorded.increment();
+            if (open) {
+                activeLoans.increment();
+            }
+        }
+
+        LibraryStats snapshot(long overdueLoans) {
+            Map<String, Long> categories = new TreeMap<>();
+            titlesByCategory.forEach((categoryId, count) -> {
+                long titlesInCategory = count.sum();
+                if (titlesInCategory > 0) {
+                    categories.put(SymbolTable.CATEGORIES.nameOf(categoryId), titlesInCategory);
+                }
+            });
+            return new LibraryStats(titles.sum(), totalCopies.sum(), availableCopies.sum(), loansRecorded.sum(),
+                    activeLoans.sum(), overdueLoans, Collections.unmodifiableMap(categories));
+        }
+
+        private LongAdder category(int categoryId) {
+            return titlesByCategory.computeIfAbsent(categoryId, c -> new LongAdder());
+        }
+    }
+}
@@ -0,0 +1,272 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+// Returned loans packed into primitive columns: per row, one dictionary id
+// for the book (ISBN and title as borrowed), one for the borrower (name and
+// email), and the borrow and return dates as epoch days. The due date is
+// always BorrowRecord.LOAN_DAYS after borrowing, so it is not stored. Rows
+// are rebuilt as BorrowRecord objects only while a query iterates them.
+// Rows are also indexed by borrow day, by return day, by book id and by
+// borrower id for LoanQuery.
+//
+// Appends are serialized. Readers see every row below the volatile size
+// they read, since each append fills its columns before publishing it.
+class LoanArchive implements Iterable<BorrowRecord> {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+    private final PairDictionary books = new PairDictionary();
+    private final PairDictionary borrowers = new PairDictionary();
+    private int[][] bookIds = new int[16][];
+    private int[][] borrowerIds = new int[16][];
+    private int[][] borrowDays = new int[16][];
+    private int[][] returnDays = new int[16][];
+    private final DayIndex byBorrowDay = new DayIndex();
+    private final DayIndex byReturnDay = new DayIndex();
+    private RowList[] byBook = new RowList[1024];
+    private RowList[] byBorrower = new RowList[1024];
+    private volatile int size;
+
+    public void add(BorrowRecord record) {
+        add(record.getIsbn(), record.getTitle(), record.getBorrowerName(), record.getBorrowerEmail(),
+                record.getBorrowDay(), record.getReturnDay());
+    }
+
+    public synchronized void add(String isbn, String title, String borrowerName, String borrowerEmail,
+                                 int borrowDay, int returnDay) {
+        int row = size;
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk == bookIds.length) {
+            bookIds = Arrays.copyOf(bookIds, chunk * 2);
+            borrowerIds = Arrays.copyOf(borrowerIds, chunk * 2);
+            borrowDays = Arrays.copyOf(borrowDays, chunk * 2);
+            returnDays = Arrays.copyOf(returnDays, chunk * 2);
+        }
+        if (bookIds[chunk] == null) {
+            bookIds[chunk] = new int[CHUNK_ROWS];
+            borrowerIds[chunk] = new int[CHUNK_ROWS];
+            borrowDays[chunk] = new int[CHUNK_ROWS];
+            returnDays[chunk] = new int[CHUNK_ROWS];
+        }
+        int offset = row & CHUNK_MASK;
+        int bookId = books.idOf(isbn, title);
+        int borrowerId = borrowers.idOf(borrowerName, borrowerEmail);
+        bookIds[chunk][offset] = bookId;
+        borrowerIds[chunk][offset] = borrowerId;
+        borrowDays[chunk][offset] = borrowDay;
+        returnDays[chunk][offset] = returnDay;
+        byBorrowDay.add(borrowDay, row);
+        byReturnDay.add(returnDay, row);
+        byBook = addRow(byBook, bookId, row);
+        byBorrower = addRow(byBorrower, borrowerId, row);
+        size = row + 1;
+    }
+
+    private static RowList[] addRow(RowList[] index, int id, int row) {
+        if (id == index.length) {
+            index = Arrays.copyOf(index, id * 2);
+        }
+        if (index[id] == null) {
+            index[id] = new RowList();
+        }
+        index[id].add(row);
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Iterates the rows present when iteration starts.
+    @Override
+    public Iterator<BorrowRecord> iterator() {
+        return snapshot().iterator();
+    }
+
+    // The rows present now, rebuilt one at a time as they are read. Taking
+    // it copies nothing; rows appended later are not part of it.
+    public List<BorrowRecord> snapshot() {
+        View view = view();
+        return new AbstractList<BorrowRecord>() {
+            @Override
+            public BorrowRecord get(int row) {
+                if (row < 0 || row >= view.size) {
+                    throw new IndexOutOfBoundsException("row " + row + ", size " + view.size);
+                }
+                return view.record(row);
+            }
+
+            @Override
+            public int size() {
+                return view.size;
+            }
+        };
+    }
+
+    // The columns, dictionaries and indexes as of now, for reading row by
+    // row without building records.
+    synchronized View view() {
+        return new View(size, bookIds, borrowerIds, borrowDays, returnDays, books.view(), borrowers.view(),
+                byBorrowDay, byReturnDay, byBook, byBorrower);
+    }
+
+    static final class View {
+        private final int size;
+        private final int[][] bookIds;
+        private final int[][] borrowerIds;
+        private final int[][] borrowDays;
+        private final int[][] returnDays;
+        private final PairDictionary.View books;
+        private final PairDictionary.View borrowers;
+        private final DayIndex byBorrowDay;
+        private final DayIndex byReturnDay;
+        private final RowList[] byBook;
+        private final RowList[] byBorrower;
+
+        private View(int size, int[][] bookIds, int[][] borrowerIds, int[][] borrowDays, int[][] returnDays,
+                     PairDictionary.View books, PairDictionary.View borrowers, DayIndex byBorrowDay,
+                     DayIndex byReturnDay, RowList[] byBook, RowList[] byBorrower) {
+            this.size = size;
+            this.bookIds = bookIds;
+            this.borrowerIds = borrowerIds;
+            this.borrowDays = borrowDays;
+            this.returnDays = returnDays;
+            this.books = books;
+            this.borrowers = borrowers;
+            this.byBorrowDay = byBorrowDay;
+            this.byReturnDay = byReturnDay;
+            this.byBook = byBook;
+            this.byBorrower = byBorrower;
+        }
+
+        int size() { return size; }
+        int bookId(int row) { return bookIds[row >>> CHUNK_BITS][row & CHUNK_MASK]; }
+        int borrowerId(int row) { return borrowerIds[row >>> CHUNK_BITS][row & CHUNK_MASK]; }
+        int borrowDay(int row) { return borrowDays[row >>> CHUNK_BITS][row & CHUNK_MASK]; }
+        int returnDay(int row) { return returnDays[row >>> CHUNK_BITS][row & CHUNK_MASK]; }
+
+        // Distinct (ISBN, title) and (name, email) pairs; ids run from 0.
+        int bookCount() { return books.count; }
+        int borrowerCount() { return borrowers.count; }
+        String isbn(int bookId) { return books.firsts[bookId]; }
+        String title(int bookId) { return books.seconds[bookId]; }
+        String borrowerName(int borrowerId) { return borrowers.firsts[borrowerId]; }
+        String borrowerEmail(int borrowerId) { return borrowers.seconds[borrowerId]; }
+
+        BorrowRecord record(int row) {
+            int book = bookId(row);
+            int borrower = borrowerId(row);
+            BorrowRecord record = new BorrowRecord(isbn(book), title(book), borrowerName(borrower),
+                    borrowerEmail(borrower), borrowDay(row));
+            record.markReturned(returnDay(row));
+            return record;
+        }
+
+        // See DayIndex.scan; only rows in this view are visited.
+        boolean scanBorrowDays(int fromDay, int toDay, boolean descending, IntPredicate visitor) {
+            return byBorrowDay.scan(fromDay, toDay, descending, size, visitor);
+        }
+
+        boolean scanReturnDays(int fromDay, int toDay, boolean descending, IntPredicate visitor) {
+            return byReturnDay.scan(fromDay, toDay, descending, size, visitor);
+        }
+
+        // At least the rows of this view on those days; see DayIndex.count.
+        long borrowDayRows(int fromDay, int toDay) {
+            return byBorrowDay.count(fromDay, toDay);
+        }
+
+        long returnDayRows(int fromDay, int toDay) {
+            return byReturnDay.count(fromDay, toDay);
+        }
+
+        // The rows of one dictionary id in row order, or descending; see
+        // RowList.scan. Only rows in this view are visited.
+        boolean scanBookRows(int bookId, boolean descending, IntPredicate visitor) {
+            return byBook[bookId].scan(descending, size, visitor);
+        }
+
+        boolean scanBorrowerRows(int borrowerId, boolean descending, IntPredicate visitor) {
+            return byBorrower[borrowerId].scan(descending, size, visitor);
+        }
+
+        // At least the rows of this view with that id.
+        int bookRows(int bookId) {
+            return byBook[bookId].count();
+        }
+
+        int borrowerRows(int borrowerId) {
+            return byBorrower[borrowerId].count();
+        }
+    }
+
+    // Dense ids for distinct (first, second) string pairs. Only used under
+    // the archive's lock.
+    private static final class PairDictionary {
+        private final Map<Pair, Integer> ids = new HashMap<>();
+        private String[] firsts = new String[1024];
+        private String[] seconds = new String[1024];
+        private int count;
+
+        int idOf(String first, String second) {
+            Integer id = ids.get(new Pair(first, second));
+            if (id != null) {
+                return id;
+            }
+            if (count == firsts.length) {
+                firsts = Arrays.copyOf(firsts, count * 2);
+                seconds = Arrays.copyOf(seconds, count * 2);
+            }
+            firsts[count] = first;
+            seconds[count] = second;
+            ids.put(new Pair(first, second), count);
+            return count++;
+        }
+
+        View view() {
+            return new View(firsts, seconds, count);
+        }
+
+        static final class View {
+            final String[] firsts;
+            final String[] seconds;
+            final int count;
+
+            View(String[] firsts, String[] seconds, int count) {
+                this.firsts = firsts;
+                this.seconds = seconds;
+                this.count = count;
+            }
+        }
+    }
+
+    private static final class Pair {
+        final String first;
+        final String second;
+
+        Pair(String first, String second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Pair)) {
+                return false;
+            }
+            Pair pair = (Pair) other;
+            return first.equals(pair.first) && second.equals(pair.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return first.hashCode() * 31 + second.hashCode();
+        }
+    }
+}
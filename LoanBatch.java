@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A self-checkout stack or a returns bin: borrow and return operations that
+// LibraryManager.applyLoans applies together. Each ISBN is resolved once,
+// every lock stripe the batch touches is held while it applies, and the
+// changes are journaled as one entry. Crash recovery therefore replays the
+// whole batch or none of it, and other stripe-locked changes such as a
+// borrow, return or edit of one of its books happen wholly before or after
+// it. Readers that take no stripe locks (getAllBooks, search, statistics,
+// snapshots) can still see a batch half applied. Items that cannot be
+// applied are reported in their Result and do not stop the rest of the
+// batch.
+class LoanBatch {
+    enum Kind {
+        BORROW,
+        RETURN
+    }
+
+    enum Outcome {
+        BORROWED,
+        RETURNED,
+        UNKNOWN_ISBN,
+        UNAVAILABLE,
+        NO_OPEN_LOAN
+    }
+
+    static final class Item {
+        private final Kind kind;
+        private final String isbn;
+        private final String borrowerName;
+        private final String borrowerEmail;
+
+        private Item(Kind kind, String isbn, String borrowerName, String borrowerEmail) {
+            this.kind = kind;
+            this.isbn = isbn;
+            this.borrowerName = borrowerName;
+            this.borrowerEmail = borrowerEmail;
+        }
+
+        public Kind getKind() { return kind; }
+        public String getIsbn() { return isbn; }
+        public String getBorrowerName() { return borrowerName; }
+        public String getBorrowerEmail() { return borrowerEmail; }
+    }
+
+    static final class Result {
+        private final Item item;
+        private final Outcome outcome;
+        private final BorrowRecord record;
+        private final Book book;
+
+        Result(Item item, Outcome outcome, BorrowRecord record, Book book) {
+            this.item = item;
+            this.outcome = outcome;
+            this.record = record;
+            this.book = book;
+        }
+
+        public Item getItem() { return item; }
+        public Outcome getOutcome() { return outcome; }
+        // The loan opened or closed; null when the item was not applied.
+        public BorrowRecord getRecord() { return record; }
+        // The catalogued book, if any, whose copy count the item changed.
+        public Book getBook() { return book; }
+
+        public boolean succeeded() {
+            return outcome == Outcome.BORROWED || outcome == Outcome.RETURNED;
+        }
+    }
+
+    private final List<Item> items = new ArrayList<>();
+
+    public LoanBatch borrow(String isbn, String borrowerName, String borrowerEmail) {
+        items.add(new Item(Kind.BORROW, isbn, borrowerName, borrowerEmail));
+        return this;
+    }
+
+    public LoanBatch returnBook(String isbn, String borrowerName) {
+        items.add(new Item(Kind.RETURN, isbn, borrowerName, null));
+        return this;
+    }
+
+    public List<Item> items() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
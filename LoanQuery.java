@@ -0,0 +1,753 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// A query over the whole loan history: filters on borrower, ISBN, status and
+// borrow, due and return date ranges, one sort column and a page size.
+// LibraryManager.queryBorrowRecords returns the first page, and each page's
+// cursor fetches the next one from the same history snapshot, so paging
+// never skips or repeats a row while loans come and go. Returns made after
+// the snapshot still show on the open loans they close.
+//
+// Rows are ordered by the sort column and then by their place in the
+// history. Archived loans are read through the archive's indexes. When few
+// archived rows can match (one borrower's or one book's loans, a short
+// date range, a small archive) they are matched and sorted once per query,
+// and each page is a binary search into them. Otherwise a page reads rows
+// in an order that is already sort order, by day for a date column, by
+// dictionary rank and then row for a string column, by row for status,
+// and stops once it is full. Live loans, open and recently returned, are
+// few; they are matched and sorted once per query.
+class LoanQuery {
+    static final int MAX_PAGE_ROWS = 100_000;
+
+    enum Status {
+        OPEN,
+        OVERDUE,
+        RETURNED
+    }
+
+    // The Records table's columns, in its order.
+    enum Column {
+        ISBN,
+        TITLE,
+        BORROWER,
+        EMAIL,
+        BORROW_DATE,
+        DUE_DATE,
+        RETURN_DATE,
+        STATUS
+    }
+
+    private String borrowerName;
+    private String isbn;
+    private Status status;
+    private int borrowedFrom = Integer.MIN_VALUE;
+    private int borrowedTo = Integer.MAX_VALUE;
+    private int dueFrom = Integer.MIN_VALUE;
+    private int dueTo = Integer.MAX_VALUE;
+    private int returnedFrom = Integer.MIN_VALUE;
+    private int returnedTo = Integer.MAX_VALUE;
+    private Column sortColumn = Column.BORROW_DATE;
+    private boolean descending;
+    private int pageSize = 100;
+
+    LoanQuery() {
+    }
+
+    private LoanQuery(LoanQuery other) {
+        borrowerName = other.borrowerName;
+        isbn = other.isbn;
+        status = other.status;
+        borrowedFrom = other.borrowedFrom;
+        borrowedTo = other.borrowedTo;
+        dueFrom = other.dueFrom;
+        dueTo = other.dueTo;
+        returnedFrom = other.returnedFrom;
+        returnedTo = other.returnedTo;
+        sortColumn = other.sortColumn;
+        descending = other.descending;
+        pageSize = other.pageSize;
+    }
+
+    // The exact name, as for returns; null for any borrower.
+    public LoanQuery borrower(String borrowerName) {
+        this.borrowerName = borrowerName;
+        return this;
+    }
+
+    // Any form Isbn.normalize accepts; null for any book.
+    public LoanQuery isbn(String isbn) {
+        this.isbn = isbn;
+        return this;
+    }
+
+    // Null for any status.
+    public LoanQuery status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    // Date ranges are inclusive, and a null bound leaves that end open. A
+    // return date range leaves out open loans.
+    public LoanQuery borrowedBetween(LocalDate from, LocalDate to) {
+        borrowedFrom = fromDay(from);
+        borrowedTo = toDay(to);
+        return this;
+    }
+
+    public LoanQuery dueBetween(LocalDate from, LocalDate to) {
+        dueFrom = fromDay(from);
+        dueTo = toDay(to);
+        return this;
+    }
+
+    public LoanQuery returnedBetween(LocalDate from, LocalDate to) {
+        returnedFrom = fromDay(from);
+        returnedTo = toDay(to);
+        return this;
+    }
+
+    // Open loans sort after every return date.
+    public LoanQuery sortBy(Column column, boolean descending) {
+        sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    public Column getSortColumn() { return sortColumn; }
+    public boolean isDescending() { return descending; }
+
+    public LoanQuery pageSize(int rows) {
+        if (rows < 1 || rows > MAX_PAGE_ROWS) {
+            throw new IllegalArgumentException("page size must be 1.." + MAX_PAGE_ROWS + ": " + rows);
+        }
+        pageSize = rows;
+        return this;
+    }
+
+    private static int fromDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : Integer.MIN_VALUE;
+    }
+
+    private static int toDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : Integer.MAX_VALUE;
+    }
+
+    // Runs on a copy, so changing this query later leaves its cursors alone.
+    Page firstPage(LoanArchive.View archived, List<BorrowRecord> live, int today) {
+        return new Plan(new LoanQuery(this), archived, live, today).page(-1);
+    }
+
+    static final class Page {
+        private final List<BorrowRecord> records;
+        private final Cursor next;
+
+        private Page(List<BorrowRecord> records, Cursor next) {
+            this.records = records;
+            this.next = next;
+        }
+
+        public List<BorrowRecord> getRecords() { return records; }
+        // Null on the last page.
+        public Cursor getNext() { return next; }
+    }
+
+    // Where a page ended, in the snapshot its query ran against.
+    static final class Cursor {
+        private final Plan plan;
+        private final int position;
+
+        private Cursor(Plan plan, int position) {
+            this.plan = plan;
+            this.position = position;
+        }
+
+        Page nextPage() {
+            return plan.page(position);
+        }
+    }
+
+    // Where a plan reads its archived candidates from.
+    private enum Source {
+        ALL_ROWS,
+        BORROWER_ROWS,
+        BOOK_ROWS,
+        BORROW_DAYS,
+        RETURN_DAYS
+    }
+
+    // One query against one snapshot. A position numbers the snapshot's rows
+    // as getAllBorrowRecords does: archived rows first, then live ones.
+    private static final class Plan {
+        // Archived candidates up to this many are sorted once per query.
+        private static final int SORTED_ROWS = 1 << 20;
+
+        private final LoanQuery query;
+        private final LoanArchive.View archived;
+        private final List<BorrowRecord> live;
+        private final int archivedRows;
+        private final int today;
+        private final String isbnKey;
+        // Borrow days satisfying both the borrow and the due date range.
+        private final int firstBorrowDay;
+        private final int lastBorrowDay;
+        private final boolean stringSort;
+        private BitSet archivedBorrowers;
+        private BitSet archivedBooks;
+        private Source source;
+        private long[] sortedCodes;
+        private int[] ranks;
+        private int[] rankOrder;
+        private String[] rankedValues;
+        private int[] liveOrder;
+        private int[] liveKeys;
+        private String[] liveValues;
+
+        Plan(LoanQuery query, LoanArchive.View archived, List<BorrowRecord> live, int today) {
+            this.query = query;
+            this.archived = archived;
+            this.live = live;
+            this.today = today;
+            archivedRows = archived.size();
+            isbnKey = query.isbn != null ? Isbn.normalize(query.isbn) : null;
+            firstBorrowDay = Math.max(query.borrowedFrom, shift(query.dueFrom, -BorrowRecord.LOAN_DAYS));
+            lastBorrowDay = Math.min(query.borrowedTo, shift(query.dueTo, -BorrowRecord.LOAN_DAYS));
+            Column column = query.sortColumn;
+            stringSort = column == Column.ISBN || column == Column.TITLE || column == Column.BORROWER
+                    || column == Column.EMAIL;
+        }
+
+        private static int shift(int day, int days) {
+            return day == Integer.MIN_VALUE || day == Integer.MAX_VALUE ? day : day + days;
+        }
+
+        // The rows after position (-1 for the first page), one more than a
+        // page so the last page is recognised without another query.
+        synchronized Page page(int after) {
+            int limit = query.pageSize + 1;
+            int[] fromArchive = query.status == Status.OPEN || query.status == Status.OVERDUE
+                    ? new int[0] : archivedPage(after, limit);
+            int[] fromLive = livePage(after, limit);
+
+            int[] positions = new int[Math.min(limit, fromArchive.length + fromLive.length)];
+            int a = 0;
+            int l = 0;
+            for (int i = 0; i < positions.length; i++) {
+                boolean takeArchived = l == fromLive.length
+                        || a < fromArchive.length && compare(fromArchive[a], fromLive[l]) < 0;
+                positions[i] = takeArchived ? fromArchive[a++] : fromLive[l++];
+            }
+
+            int rows = Math.min(query.pageSize, positions.length);
+            List<BorrowRecord> records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                int position = positions[i];
+                records.add(position < archivedRows ? archived.record(position) : live.get(position - archivedRows));
+            }
+            Cursor next = positions.length > rows ? new Cursor(this, positions[rows - 1]) : null;
+            return new Page(records, next);
+        }
+
+        private int[] archivedPage(int after, int limit) {
+            if (!prepareArchivedFilters()) {
+                return new int[0];
+            }
+            if (stringSort && ranks == null) {
+                rankDictionary();
+            }
+            Column column = query.sortColumn;
+            boolean byReturn = column == Column.RETURN_DATE;
+            boolean byDay = byReturn || column == Column.BORROW_DATE || column == Column.DUE_DATE;
+            if (source == null) {
+                long candidates = chooseSource();
+                // Unless a borrower or a book narrows it down, a date column
+                // reads its day index, which is in sort order already.
+                boolean inOrder = byDay && (source == Source.ALL_ROWS
+                        || source == (byReturn ? Source.RETURN_DAYS : Source.BORROW_DAYS));
+                if (!inOrder && candidates <= SORTED_ROWS) {
+                    sortedCodes = sortCandidates();
+                }
+            }
+            long floor = after < 0 ? Long.MIN_VALUE : archivedThreshold(after);
+            if (sortedCodes != null) {
+                int from = 0;
+                int to = sortedCodes.length;
+                while (from < to) {
+                    int middle = (from + to) >>> 1;
+                    if (sortedCodes[middle] <= floor) {
+                        from = middle + 1;
+                    } else {
+                        to = middle;
+                    }
+                }
+                int[] rows = new int[Math.min(limit, sortedCodes.length - from)];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = rowOf(sortedCodes[from + i]);
+                }
+                return rows;
+            }
+
+            IntList rows = new IntList();
+            IntPredicate collect = row -> {
+                if (code(row) > floor && archivedMatches(row)) {
+                    rows.add(row);
+                }
+                return rows.size < limit;
+            };
+            if (byDay) {
+                // Read days from the cursor on.
+                int from = byReturn ? query.returnedFrom : firstBorrowDay;
+                int to = byReturn ? query.returnedTo : lastBorrowDay;
+                if (after >= 0) {
+                    int day = (int) (floor >> 32);
+                    day = query.descending ? ~day : day;
+                    day = column == Column.DUE_DATE ? shift(day, -BorrowRecord.LOAN_DAYS) : day;
+                    if (query.descending) {
+                        to = Math.min(to, day);
+                    } else {
+                        from = Math.max(from, day);
+                    }
+                }
+                if (byReturn) {
+                    archived.scanReturnDays(from, to, query.descending, collect);
+                } else {
+                    archived.scanBorrowDays(from, to, query.descending, collect);
+                }
+            } else if (stringSort) {
+                scanRanks(floor, collect);
+            } else {
+                // Every archived row has the same status, so rows go in
+                // position order; skip those up to the cursor.
+                int from = 0;
+                int to = archivedRows;
+                while (from < to) {
+                    int middle = (from + to) >>> 1;
+                    if (code(rowAt(middle)) <= floor) {
+                        from = middle + 1;
+                    } else {
+                        to = middle;
+                    }
+                }
+                for (int i = from; i < archivedRows; i++) {
+                    if (!collect.test(rowAt(i))) {
+                        break;
+                    }
+                }
+            }
+            return rows.toArray();
+        }
+
+        // Picks the index holding the fewest archived rows that can match
+        // and returns how many it holds.
+        private long chooseSource() {
+            source = Source.ALL_ROWS;
+            long fewest = archivedRows;
+            if (archivedBorrowers != null) {
+                long rows = 0;
+                for (int id = archivedBorrowers.nextSetBit(0); id >= 0; id = archivedBorrowers.nextSetBit(id + 1)) {
+                    rows += archived.borrowerRows(id);
+                }
+                if (rows < fewest) {
+                    source = Source.BORROWER_ROWS;
+                    fewest = rows;
+                }
+            }
+            if (archivedBooks != null) {
+                long rows = 0;
+                for (int id = archivedBooks.nextSetBit(0); id >= 0; id = archivedBooks.nextSetBit(id + 1)) {
+                    rows += archived.bookRows(id);
+                }
+                if (rows < fewest) {
+                    source = Source.BOOK_ROWS;
+                    fewest = rows;
+                }
+            }
+            // An open-ended date range is not worth counting day by day.
+            if (firstBorrowDay != Integer.MIN_VALUE || lastBorrowDay != Integer.MAX_VALUE) {
+                long rows = archived.borrowDayRows(firstBorrowDay, lastBorrowDay);
+                if (rows < fewest) {
+                    source = Source.BORROW_DAYS;
+                    fewest = rows;
+                }
+            }
+            if (query.returnedFrom != Integer.MIN_VALUE || query.returnedTo != Integer.MAX_VALUE) {
+                long rows = archived.returnDayRows(query.returnedFrom, query.returnedTo);
+                if (rows < fewest) {
+                    source = Source.RETURN_DAYS;
+                    fewest = rows;
+                }
+            }
+            return fewest;
+        }
+
+        // The codes of every matching archived row, sorted.
+        private long[] sortCandidates() {
+            IntList matches = new IntList();
+            IntPredicate offer = row -> {
+                if (archivedMatches(row)) {
+                    matches.add(row);
+                }
+                return true;
+            };
+            switch (source) {
+                case BORROWER_ROWS:
+                    for (int id = archivedBorrowers.nextSetBit(0); id >= 0; id = archivedBorrowers.nextSetBit(id + 1)) {
+                        archived.scanBorrowerRows(id, false, offer);
+                    }
+                    break;
+                case BOOK_ROWS:
+                    for (int id = archivedBooks.nextSetBit(0); id >= 0; id = archivedBooks.nextSetBit(id + 1)) {
+                        archived.scanBookRows(id, false, offer);
+                    }
+                    break;
+                case BORROW_DAYS:
+                    archived.scanBorrowDays(firstBorrowDay, lastBorrowDay, false, offer);
+                    break;
+                case RETURN_DAYS:
+                    archived.scanReturnDays(query.returnedFrom, query.returnedTo, false, offer);
+                    break;
+                default:
+                    for (int row = 0; row < archivedRows; row++) {
+                        offer.test(row);
+                    }
+            }
+            int[] rows = matches.toArray();
+            long[] codes = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                codes[i] = code(rows[i]);
+            }
+            Arrays.sort(codes);
+            return codes;
+        }
+
+        // Visits archived rows rank by rank of the sort column's dictionary,
+        // each rank's rows by position, starting at the rank of floor and
+        // reversed when descending. Stops as soon as visitor does.
+        private void scanRanks(long floor, IntPredicate visitor) {
+            boolean books = query.sortColumn == Column.ISBN || query.sortColumn == Column.TITLE;
+            int key = query.descending ? ~(int) (floor >> 32) : (int) (floor >> 32);
+            int low = 0;
+            int high = rankOrder.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (query.descending ? ranks[rankOrder[middle]] <= key : ranks[rankOrder[middle]] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int step = query.descending ? -1 : 1;
+            int i = query.descending ? low - 1 : low;
+            while (i >= 0 && i < rankOrder.length) {
+                int first = i;
+                int rank = ranks[rankOrder[i]];
+                while (i >= 0 && i < rankOrder.length && ranks[rankOrder[i]] == rank) {
+                    i += step;
+                }
+                if (i - first == step) {
+                    int id = rankOrder[first];
+                    boolean more = books ? archived.scanBookRows(id, query.descending, visitor)
+                            : archived.scanBorrowerRows(id, query.descending, visitor);
+                    if (!more) {
+                        return;
+                    }
+                    continue;
+                }
+                // Several ids share the rank; merge their rows.
+                IntList group = new IntList();
+                for (int j = first; j != i; j += step) {
+                    IntPredicate add = row -> {
+                        group.add(row);
+                        return true;
+                    };
+                    if (books) {
+                        archived.scanBookRows(rankOrder[j], false, add);
+                    } else {
+                        archived.scanBorrowerRows(rankOrder[j], false, add);
+                    }
+                }
+                int[] rows = group.toArray();
+                Arrays.sort(rows);
+                for (int j = 0; j < rows.length; j++) {
+                    if (!visitor.test(rows[query.descending ? rows.length - 1 - j : j])) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private int rowAt(int index) {
+            return query.descending ? archivedRows - 1 - index : index;
+        }
+
+        private int rowOf(long code) {
+            return query.descending ? ~(int) code : (int) code;
+        }
+
+        // Resolves the borrower and ISBN filters to dictionary ids once;
+        // false when no archived row can match.
+        private boolean prepareArchivedFilters() {
+            if (query.borrowerName != null && archivedBorrowers == null) {
+                archivedBorrowers = new BitSet(archived.borrowerCount());
+                for (int id = 0; id < archived.borrowerCount(); id++) {
+                    if (archived.borrowerName(id).equals(query.borrowerName)) {
+                        archivedBorrowers.set(id);
+                    }
+                }
+            }
+            if (isbnKey != null && archivedBooks == null) {
+                archivedBooks = new BitSet(archived.bookCount());
+                for (int id = 0; id < archived.bookCount(); id++) {
+                    if (Isbn.normalize(archived.isbn(id)).equals(isbnKey)) {
+                        archivedBooks.set(id);
+                    }
+                }
+            }
+            return (archivedBorrowers == null || !archivedBorrowers.isEmpty())
+                    && (archivedBooks == null || !archivedBooks.isEmpty());
+        }
+
+        private boolean archivedMatches(int row) {
+            if (archivedBorrowers != null && !archivedBorrowers.get(archived.borrowerId(row))
+                    || archivedBooks != null && !archivedBooks.get(archived.bookId(row))) {
+                return false;
+            }
+            int borrowDay = archived.borrowDay(row);
+            int returnDay = archived.returnDay(row);
+            return borrowDay >= firstBorrowDay && borrowDay <= lastBorrowDay
+                    && returnDay >= query.returnedFrom && returnDay <= query.returnedTo;
+        }
+
+        // An archived row's place in sort order as one long: the key (a date,
+        // a status or a dictionary rank) above the position, both inverted
+        // for a descending sort.
+        private long code(int row) {
+            return code(archivedKey(row), row);
+        }
+
+        private long code(int key, int position) {
+            return query.descending
+                    ? (long) ~key << 32 | (~position & 0xFFFFFFFFL)
+                    : (long) key << 32 | position;
+        }
+
+        private int archivedKey(int row) {
+            switch (query.sortColumn) {
+                case ISBN:
+                case TITLE: return ranks[archived.bookId(row)];
+                case BORROWER:
+                case EMAIL: return ranks[archived.borrowerId(row)];
+                case BORROW_DATE: return archived.borrowDay(row);
+                case DUE_DATE: return archived.borrowDay(row) + BorrowRecord.LOAN_DAYS;
+                case RETURN_DATE: return archived.returnDay(row);
+                default: return 2;
+            }
+        }
+
+        // The code every archived row after position exceeds. A live
+        // position follows every archived row with an equal key.
+        private long archivedThreshold(int position) {
+            if (position < archivedRows) {
+                return code(position);
+            }
+            int key;
+            if (stringSort) {
+                String value = stringValue(position);
+                int low = 0;
+                int high = rankedValues.length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (String.CASE_INSENSITIVE_ORDER.compare(rankedValues[middle], value) <= 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                key = low - 1;
+            } else {
+                key = intValue(position);
+            }
+            return code(key, Integer.MAX_VALUE);
+        }
+
+        // Ranks the dictionary behind the sort column, case-insensitively;
+        // equal values share a rank.
+        private void rankDictionary() {
+            boolean books = query.sortColumn == Column.ISBN || query.sortColumn == Column.TITLE;
+            int count = books ? archived.bookCount() : archived.borrowerCount();
+            String[] values = new String[count];
+            Integer[] order = new Integer[count];
+            for (int id = 0; id < count; id++) {
+                switch (query.sortColumn) {
+                    case ISBN: values[id] = archived.isbn(id); break;
+                    case TITLE: values[id] = archived.title(id); break;
+                    case BORROWER: values[id] = archived.borrowerName(id); break;
+                    default: values[id] = archived.borrowerEmail(id); break;
+                }
+                order[id] = id;
+            }
+            Arrays.sort(order, Comparator.comparing(id -> values[id], String.CASE_INSENSITIVE_ORDER));
+            ranks = new int[count];
+            rankOrder = new int[count];
+            List<String> distinct = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int id = order[i];
+                rankOrder[i] = id;
+                if (distinct.isEmpty()
+                        || String.CASE_INSENSITIVE_ORDER.compare(distinct.get(distinct.size() - 1), values[id]) != 0) {
+                    distinct.add(values[id]);
+                }
+                ranks[id] = distinct.size() - 1;
+            }
+            rankedValues = distinct.toArray(new String[0]);
+        }
+
+        // Live matches come from one pass over the live rows, sorted
+        // once; later pages start after the cursor by binary search.
+        private int[] livePage(int after, int limit) {
+            if (liveOrder == null) {
+                sortLive();
+            }
+            int from = 0;
+            if (after >= 0) {
+                int to = liveOrder.length;
+                while (from < to) {
+                    int middle = (from + to) >>> 1;
+                    if (compare(liveOrder[middle], after) <= 0) {
+                        from = middle + 1;
+                    } else {
+                        to = middle;
+                    }
+                }
+            }
+            return Arrays.copyOfRange(liveOrder, from, Math.min(liveOrder.length, from + limit));
+        }
+
+        // Keys are taken once, so a loan returned while paging keeps its
+        // place.
+        private void sortLive() {
+            IntList matches = new IntList();
+            for (int i = 0; i < live.size(); i++) {
+                BorrowRecord record = live.get(i);
+                if (liveMatches(record)) {
+                    matches.add(i);
+                }
+            }
+            int[] indexes = matches.toArray();
+            liveOrder = new int[indexes.length];
+            if (stringSort) {
+                liveValues = new String[live.size()];
+                Integer[] order = new Integer[indexes.length];
+                for (int j = 0; j < indexes.length; j++) {
+                    liveValues[indexes[j]] = liveStringValue(live.get(indexes[j]));
+                    order[j] = archivedRows + indexes[j];
+                }
+                Arrays.sort(order, this::compare);
+                for (int j = 0; j < order.length; j++) {
+                    liveOrder[j] = order[j];
+                }
+            } else {
+                liveKeys = new int[live.size()];
+                long[] codes = new long[indexes.length];
+                for (int j = 0; j < indexes.length; j++) {
+                    liveKeys[indexes[j]] = liveIntValue(live.get(indexes[j]));
+                    codes[j] = code(liveKeys[indexes[j]], archivedRows + indexes[j]);
+                }
+                Arrays.sort(codes);
+                for (int j = 0; j < codes.length; j++) {
+                    liveOrder[j] = query.descending ? ~(int) codes[j] : (int) codes[j];
+                }
+            }
+        }
+
+        private boolean liveMatches(BorrowRecord record) {
+            boolean returned = record.isReturned();
+            int borrowDay = record.getBorrowDay();
+            if (query.status == Status.OPEN && returned || query.status == Status.RETURNED && !returned
+                    || query.status == Status.OVERDUE && (returned || record.getDueDay() >= today)) {
+                return false;
+            }
+            if (borrowDay < firstBorrowDay || borrowDay > lastBorrowDay) {
+                return false;
+            }
+            if (query.returnedFrom != Integer.MIN_VALUE || query.returnedTo != Integer.MAX_VALUE) {
+                int returnDay = record.getReturnDay();
+                if (!returned || returnDay < query.returnedFrom || returnDay > query.returnedTo) {
+                    return false;
+                }
+            }
+            return (query.borrowerName == null || query.borrowerName.equals(record.getBorrowerName()))
+                    && (isbnKey == null || isbnKey.equals(Isbn.normalize(record.getIsbn())));
+        }
+
+        // Sort order over any two positions: the column's value, then the
+        // position; reversed when descending.
+        private int compare(int first, int second) {
+            int order = stringSort
+                    ? String.CASE_INSENSITIVE_ORDER.compare(stringValue(first), stringValue(second))
+                    : Integer.compare(intValue(first), intValue(second));
+            if (order == 0) {
+                order = Integer.compare(first, second);
+            }
+            return query.descending ? -order : order;
+        }
+
+        private String stringValue(int position) {
+            if (position < archivedRows) {
+                switch (query.sortColumn) {
+                    case ISBN: return archived.isbn(archived.bookId(position));
+                    case TITLE: return archived.title(archived.bookId(position));
+                    case BORROWER: return archived.borrowerName(archived.borrowerId(position));
+                    default: return archived.borrowerEmail(archived.borrowerId(position));
+                }
+            }
+            return liveValues[position - archivedRows];
+        }
+
+        private String liveStringValue(BorrowRecord record) {
+            switch (query.sortColumn) {
+                case ISBN: return record.getIsbn();
+                case TITLE: return record.getTitle();
+                case BORROWER: return record.getBorrowerName();
+                default: return record.getBorrowerEmail();
+            }
+        }
+
+        // Dates as epoch days, open loans' return date as the largest, and
+        // statuses in the order of their labels: active, overdue, returned.
+        private int intValue(int position) {
+            return position < archivedRows ? archivedKey(position) : liveKeys[position - archivedRows];
+        }
+
+        private int liveIntValue(BorrowRecord record) {
+            boolean returned = record.isReturned();
+            switch (query.sortColumn) {
+                case BORROW_DATE: return record.getBorrowDay();
+                case DUE_DATE: return record.getDueDay();
+                case RETURN_DATE: return returned ? record.getReturnDay() : Integer.MAX_VALUE;
+                default: return returned ? 2 : record.getDueDay() < today ? 1 : 0;
+            }
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Metrics tab table: one row per timed operation, with the count since
+// startup and throughput and latency percentiles over the last few
+// snapshots (a sliding window of about WINDOW_SNAPSHOTS updates).
+class MetricsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final int WINDOW_SNAPSHOTS = 10;
+
+    private static final String[] COLUMNS = {"Operation", "Total", "Ops/s", "Mean ms", "p50 ms", "p90 ms",
+            "p99 ms", "p99.9 ms", "Max ms"};
+    private static final LibraryMetrics.Operation[] OPERATIONS = LibraryMetrics.Operation.values();
+
+    private final Deque<LibraryMetrics.Snapshot> window = new ArrayDeque<>();
+    private LibraryMetrics.Snapshot latest;
+    private LibraryMetrics.Snapshot recent;
+    private double recentSeconds;
+
+    public void update(LibraryMetrics.Snapshot snapshot) {
+        window.addLast(snapshot);
+        if (window.size() > WINDOW_SNAPSHOTS + 1) {
+            window.removeFirst();
+        }
+        LibraryMetrics.Snapshot oldest = window.peekFirst();
+        latest = snapshot;
+        recent = snapshot.since(oldest);
+        recentSeconds = (snapshot.getTakenAtNanos() - oldest.getTakenAtNanos()) / 1e9;
+        fireTableRowsUpdated(0, OPERATIONS.length - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return OPERATIONS.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        LibraryMetrics.Operation operation = OPERATIONS[rowIndex];
+        if (columnIndex == 0) {
+            return operation.getLabel();
+        }
+        if (latest == null) {
+            return "";
+        }
+        if (columnIndex == 1) {
+            return String.format("%,d", latest.get(operation).getCount());
+        }
+        LatencyHistogram.Snapshot histogram = recent.get(operation);
+        if (histogram.getCount() == 0) {
+            return "-";
+        }
+        switch (columnIndex) {
+            case 2: return recentSeconds > 0 ? String.format("%,.1f", histogram.getCount() / recentSeconds) : "-";
+            case 3: return millis(histogram.getMeanNanos());
+            case 4: return millis(histogram.valueAtPercentile(50));
+            case 5: return millis(histogram.valueAtPercentile(90));
+            case 6: return millis(histogram.valueAtPercentile(99));
+            case 7: return millis(histogram.valueAtPercentile(99.9));
+            case 8: return millis(histogram.getMaxNanos());
+            default: return null;
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Open (not yet returned) loans keyed by (normalized ISBN, borrower), with
+// per-ISBN and per-borrower views. Returned loans never enter it, so lookups
+// do not depend on how long the borrowing history is.
+//
+// Callers must hold the ISBN's lock stripe for add and removeFirst; the
+// per-borrower view spans stripes and is updated atomically per borrower.
+class OpenLoanIndex {
+    private final Map<LoanKey, ArrayDeque<BorrowRecord>> byKey = new ConcurrentHashMap<>();
+    private final Map<String, Set<BorrowRecord>> byIsbn = new ConcurrentHashMap<>();
+    private final Map<String, Set<BorrowRecord>> byBorrower = new ConcurrentHashMap<>();
+
+    public void add(String isbnKey, BorrowRecord record) {
+        byKey.computeIfAbsent(new LoanKey(isbnKey, record.getBorrowerName()), k -> new ArrayDeque<>()).addLast(record);
+        byIsbn.computeIfAbsent(isbnKey, k -> ConcurrentHashMap.newKeySet()).add(record);
+        byBorrower.compute(record.getBorrowerName(), (k, loans) -> {
+            Set<BorrowRecord> updated = loans != null ? loans : ConcurrentHashMap.newKeySet();
+            updated.add(record);
+            return updated;
+        });
+    }
+
+    // Removes and returns the oldest open loan of this ISBN by this borrower.
+    public BorrowRecord removeFirst(String isbnKey, String borrowerName) {
+        LoanKey key = new LoanKey(isbnKey, borrowerName);
+        ArrayDeque<BorrowRecord> loans = byKey.get(key);
+        if (loans == null) {
+            return null;
+        }
+        BorrowRecord record = loans.pollFirst();
+        if (loans.isEmpty()) {
+            byKey.remove(key);
+        }
+        detach(byIsbn, isbnKey, record);
+        detach(byBorrower, borrowerName, record);
+        return record;
+    }
+
+    public Collection<BorrowRecord> forIsbn(String isbnKey) {
+        return byIsbn.getOrDefault(isbnKey, Collections.emptySet());
+    }
+
+    public Collection<BorrowRecord> forBorrower(String borrowerName) {
+        return byBorrower.getOrDefault(borrowerName, Collections.emptySet());
+    }
+
+    private static void detach(Map<String, Set<BorrowRecord>> view, String key, BorrowRecord record) {
+        view.computeIfPresent(key, (k, loans) -> loans.remove(record) && loans.isEmpty() ? null : loans);
+    }
+
+    private static final class LoanKey {
+        private final String isbn;
+        private final String borrowerName;
+
+        LoanKey(String isbn, String borrowerName) {
+            this.isbn = isbn;
+            this.borrowerName = borrowerName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LoanKey)) {
+                return false;
+            }
+            LoanKey other = (LoanKey) o;
+            return isbn.equals(other.isbn) && borrowerName.equals(other.borrowerName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(isbn, borrowerName);
+        }
+    }
+}
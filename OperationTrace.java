@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// A timed log of the operations desks and kiosks issue, one tab-separated
+// line per event:
+//
+//     <nanos since start> <SEARCH|LOOKUP|BORROW|RETURN> <epoch day> <isbn or query> [<name> [<email>]]
+//
+// Recorded from a running library with -Dlibrary.trace=<file>, or written
+// by a workload generator, and replayed against a LibraryManager. Borrows
+// and returns carry their date so a replay reproduces due dates and
+// overdue loans.
+final class OperationTrace {
+    static final String TRACE_PROPERTY = "library.trace";
+
+    enum Kind {
+        SEARCH, LOOKUP, BORROW, RETURN
+    }
+
+    private OperationTrace() {
+    }
+
+    static final class Event {
+        private final long nanos;
+        private final Kind kind;
+        private final int epochDay;
+        private final String subject;
+        private final String borrowerName;
+        private final String borrowerEmail;
+
+        Event(long nanos, Kind kind, int epochDay, String subject, String borrowerName, String borrowerEmail) {
+            this.nanos = nanos;
+            this.kind = kind;
+            this.epochDay = epochDay;
+            this.subject = subject;
+            this.borrowerName = borrowerName;
+            this.borrowerEmail = borrowerEmail;
+        }
+
+        long getNanos() { return nanos; }
+        Kind getKind() { return kind; }
+        LocalDate getDate() { return LocalDate.ofEpochDay(epochDay); }
+        // The ISBN, or the query for SEARCH.
+        String getSubject() { return subject; }
+        String getBorrowerName() { return borrowerName; }
+        String getBorrowerEmail() { return borrowerEmail; }
+    }
+
+    static List<Event> read(Path path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                try {
+                    events.add(new Event(Long.parseLong(fields[0]), Kind.valueOf(fields[1]),
+                            Integer.parseInt(fields[2]), unescape(fields[3]),
+                            fields.length > 4 ? unescape(fields[4]) : null,
+                            fields.length > 5 ? unescape(fields[5]) : null));
+                } catch (RuntimeException e) {
+                    throw new IOException(path + " line " + lineNumber + ": not a trace event: " + line);
+                }
+            }
+        }
+        return events;
+    }
+
+    static void write(Path path, List<Event> events) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Event event : events) {
+                writeEvent(out, event.nanos, event.kind, event.epochDay, event.subject, event.borrowerName,
+                        event.borrowerEmail);
+            }
+        }
+    }
+
+    private static void writeEvent(BufferedWriter out, long nanos, Kind kind, int epochDay, String subject,
+                                   String borrowerName, String borrowerEmail) throws IOException {
+        out.write(Long.toString(nanos));
+        out.write('\t');
+        out.write(kind.name());
+        out.write('\t');
+        out.write(Integer.toString(epochDay));
+        out.write('\t');
+        out.write(escape(subject));
+        if (borrowerName != null) {
+            out.write('\t');
+            out.write(escape(borrowerName));
+            if (borrowerEmail != null) {
+                out.write('\t');
+                out.write(escape(borrowerEmail));
+            }
+        }
+        out.write('\n');
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // Appends events as the library handles them. A write failure stops the
+    // recording rather than the operation being traced.
+    static final class Recorder implements Closeable {
+        private final Path path;
+        private final BufferedWriter out;
+        private final long startNanos = System.nanoTime();
+        private boolean failed;
+
+        private Recorder(Path path) throws IOException {
+            this.path = path;
+            this.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        }
+
+        static Recorder open(Path path) throws IOException {
+            return new Recorder(path);
+        }
+
+        // The recorder named by -Dlibrary.trace, or null when it is unset.
+        static Recorder fromSystemProperty() throws IOException {
+            String path = System.getProperty(TRACE_PROPERTY);
+            return path == null || path.isEmpty() ? null : open(Path.of(path));
+        }
+
+        // Lines are written in time order. Borrows and returns are recorded
+        // under their ISBN's lock, so per title the file also follows the
+        // order the library applied them in.
+        synchronized void record(Kind kind, LocalDate date, String subject, String borrowerName,
+                                 String borrowerEmail) {
+            if (failed) {
+                return;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            try {
+                writeEvent(out, nanos, kind, (int) date.toEpochDay(), subject == null ? "" : subject,
+                        borrowerName, borrowerEmail);
+            } catch (IOException e) {
+                failed = true;
+                System.err.println("Stopped recording " + path + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Open loans bucketed by due date, as an epoch day. "Overdue as of D" reads only the buckets
+// due before D, and advanceTo(D) announces each loan once as it crosses its
+// due date instead of callers polling the whole history.
+//
+// Emptied buckets are kept (one per calendar day) so concurrent add and
+// remove never race on bucket removal. The running overdue count is
+// adjusted by add and remove under the read lock and by advanceTo under
+// the write lock, so a loan is never counted on both sides of a day change.
+//
+// Lists come back by due day, then borrow day, ISBN and borrower, so the
+// same loans are always listed in the same order.
+class OverdueTracker {
+    private static final Comparator<BorrowRecord> BUCKET_ORDER = Comparator.comparingInt(BorrowRecord::getBorrowDay)
+            .thenComparing(BorrowRecord::getIsbn).thenComparing(BorrowRecord::getBorrowerName);
+
+    private final NavigableMap<Integer, Set<BorrowRecord>> byDueDate = new ConcurrentSkipListMap<>();
+    private final List<OverdueListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReadWriteLock dayLock = new ReentrantReadWriteLock();
+    private final LongAdder overdue = new LongAdder();
+    private volatile int announcedBefore = Integer.MIN_VALUE;
+
+    public void addListener(OverdueListener listener) {
+        listeners.add(listener);
+    }
+
+    public void add(BorrowRecord record) {
+        boolean alreadyOverdue;
+        dayLock.readLock().lock();
+        try {
+            byDueDate.computeIfAbsent(record.getDueDay(), d -> ConcurrentHashMap.newKeySet()).add(record);
+            alreadyOverdue = record.getDueDay() < announcedBefore;
+            if (alreadyOverdue) {
+                overdue.increment();
+            }
+        } finally {
+            dayLock.readLock().unlock();
+        }
+        if (alreadyOverdue) {
+            fire(List.of(record));
+        }
+    }
+
+    public void remove(BorrowRecord record) {
+        dayLock.readLock().lock();
+        try {
+            Set<BorrowRecord> bucket = byDueDate.get(record.getDueDay());
+            if (bucket != null && bucket.remove(record) && record.getDueDay() < announcedBefore) {
+                overdue.decrement();
+            }
+        } finally {
+            dayLock.readLock().unlock();
+        }
+    }
+
+    // Loans overdue as of the last advanceTo.
+    public long overdueCount() {
+        return overdue.sum();
+    }
+
+    public List<BorrowRecord> openLoans() {
+        return flatten(byDueDate.values());
+    }
+
+    public List<BorrowRecord> overdueAsOf(int day) {
+        return flatten(byDueDate.headMap(day, false).values());
+    }
+
+    public synchronized void advanceTo(int day) {
+        if (day <= announcedBefore) {
+            return;
+        }
+        List<BorrowRecord> crossed;
+        dayLock.writeLock().lock();
+        try {
+            crossed = flatten(byDueDate.subMap(announcedBefore, true, day, false).values());
+            overdue.add(crossed.size());
+            announcedBefore = day;
+        } finally {
+            dayLock.writeLock().unlock();
+        }
+        if (!crossed.isEmpty()) {
+            fire(crossed);
+        }
+    }
+
+    private void fire(List<BorrowRecord> records) {
+        for (OverdueListener listener : listeners) {
+            listener.loansOverdue(records);
+        }
+    }
+
+    private static List<BorrowRecord> flatten(Collection<Set<BorrowRecord>> buckets) {
+        List<BorrowRecord> records = new ArrayList<>();
+        for (Set<BorrowRecord> bucket : buckets) {
+            int from = records.size();
+            records.addAll(bucket);
+            records.subList(from, records.size()).sort(BUCKET_ORDER);
+        }
+        return records;
+    }
+
+    interface OverdueListener {
+        void loansOverdue(List<BorrowRecord> records);
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// A report spooled to a temporary file, with the byte offset of every page
+// recorded as it is written, so the UI only ever holds one page of text.
+class PagedReport extends ChannelReportSink {
+    private final Path file;
+    private final int linesPerPage;
+    private long[] pageStarts = new long[64];
+    private int pages = 1;
+    private long lines;
+    private long length;
+
+    private PagedReport(Path file, int linesPerPage) throws IOException {
+        super(FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), true);
+        this.file = file;
+        this.linesPerPage = linesPerPage;
+    }
+
+    public static PagedReport create(int linesPerPage) throws IOException {
+        Path file = Files.createTempFile("library-report", ".txt");
+        file.toFile().deleteOnExit();
+        return new PagedReport(file, linesPerPage);
+    }
+
+    @Override
+    protected void written(ByteBuffer chunk, long position) {
+        int start = chunk.position();
+        for (int i = start; i < chunk.limit(); i++) {
+            if (chunk.get(i) == '\n' && ++lines % linesPerPage == 0) {
+                if (pages == pageStarts.length) {
+                    pageStarts = Arrays.copyOf(pageStarts, pages * 2);
+                }
+                pageStarts[pages++] = position + (i - start) + 1;
+            }
+        }
+        length = position + chunk.remaining();
+    }
+
+    public int pageCount() {
+        return pages > 1 && pageStarts[pages - 1] == length ? pages - 1 : pages;
+    }
+
+    public String readPage(int page) throws IOException {
+        long start = pageStarts[page];
+        long end = page + 1 < pages ? pageStarts[page + 1] : length;
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        bytes.flip();
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+}
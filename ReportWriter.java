@@ -0,0 +1,237 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+
+// Formats report lines straight into a reusable char buffer that is handed
+// to a Sink whenever it fills, so a report of any size is written in
+// constant memory and without String.format. Titles, totals and section
+// headings only appear in PLAIN output; CSV carries just the header row and
+// one line per record.
+class ReportWriter implements Closeable {
+    enum Format {
+        PLAIN,
+        CSV
+    }
+
+    interface Sink extends Closeable {
+        void write(char[] chars, int offset, int length) throws IOException;
+    }
+
+    private static final int BUFFER_CHARS = 8 * 1024;
+    private static final String RECORD_SEPARATOR = "----------------------------------------\n";
+
+    private final Sink sink;
+    private final Format format;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private final char[] digits = new char[20];
+    private int used;
+    private boolean firstField = true;
+
+    public ReportWriter(Sink sink, Format format) {
+        this.sink = sink;
+        this.format = format;
+    }
+
+    public ReportWriter title(String title) throws IOException {
+        if (format == Format.PLAIN) {
+            section(title);
+            append('\n');
+        }
+        return this;
+    }
+
+    public ReportWriter section(String heading) throws IOException {
+        if (format == Format.PLAIN) {
+            append(heading);
+            append('\n');
+            for (int i = 0; i < heading.length(); i++) {
+                append('=');
+            }
+            append('\n');
+        }
+        return this;
+    }
+
+    public ReportWriter total(String label, long value) throws IOException {
+        if (format == Format.PLAIN) {
+            append(label);
+            append(": ");
+            appendLong(value);
+            append('\n');
+        }
+        return this;
+    }
+
+    public ReportWriter blankLine() throws IOException {
+        if (format == Format.PLAIN) {
+            append('\n');
+        }
+        return this;
+    }
+
+    public ReportWriter columns(String... labels) throws IOException {
+        if (format == Format.CSV) {
+            for (String label : labels) {
+                field(label, label);
+            }
+            endRecord();
+        }
+        return this;
+    }
+
+    public ReportWriter field(String label, String value) throws IOException {
+        if (format == Format.PLAIN) {
+            append(label);
+            append(": ");
+            append(value);
+            append('\n');
+        } else {
+            nextField();
+            appendCsv(value);
+        }
+        return this;
+    }
+
+    public ReportWriter field(String label, long value) throws IOException {
+        if (format == Format.PLAIN) {
+            append(label);
+            append(": ");
+            appendLong(value);
+            append('\n');
+        } else {
+            nextField();
+            appendLong(value);
+        }
+        return this;
+    }
+
+    public ReportWriter field(String label, LocalDate value) throws IOException {
+        if (format == Format.PLAIN) {
+            append(label);
+            append(": ");
+            appendDate(value);
+            append('\n');
+        } else {
+            nextField();
+            appendDate(value);
+        }
+        return this;
+    }
+
+    public ReportWriter endRecord() throws IOException {
+        if (format == Format.PLAIN) {
+            append(RECORD_SEPARATOR);
+        } else {
+            append('\n');
+            firstField = true;
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush(used);
+        } finally {
+            sink.close();
+        }
+    }
+
+    private void nextField() throws IOException {
+        if (!firstField) {
+            append(',');
+        }
+        firstField = false;
+    }
+
+    private void appendCsv(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            append(value);
+            return;
+        }
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                append('"');
+            }
+            append(c);
+        }
+        append('"');
+    }
+
+    // ISO yyyy-MM-dd, as LocalDate.toString prints four-digit years.
+    private void appendDate(LocalDate date) throws IOException {
+        if (date == null) {
+            return;
+        }
+        appendLong(date.getYear());
+        append('-');
+        appendTwoDigits(date.getMonthValue());
+        append('-');
+        appendTwoDigits(date.getDayOfMonth());
+    }
+
+    private void appendTwoDigits(int value) throws IOException {
+        append((char) ('0' + value / 10));
+        append((char) ('0' + value % 10));
+    }
+
+    private void appendLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            append(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start; i < digits.length; i++) {
+            append(digits[i]);
+        }
+    }
+
+    private void append(String text) throws IOException {
+        int offset = 0;
+        while (offset < text.length()) {
+            if (used == buffer.length) {
+                drain();
+            }
+            int count = Math.min(text.length() - offset, buffer.length - used);
+            text.getChars(offset, offset + count, buffer, used);
+            used += count;
+            offset += count;
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (used == buffer.length) {
+            drain();
+        }
+        buffer[used++] = c;
+    }
+
+    // Holds back a trailing high surrogate so a sink never sees half a pair.
+    private void drain() throws IOException {
+        int count = Character.isHighSurrogate(buffer[used - 1]) ? used - 1 : used;
+        flush(count);
+    }
+
+    private void flush(int count) throws IOException {
+        if (count > 0) {
+            sink.write(buffer, 0, count);
+        }
+        System.arraycopy(buffer, count, buffer, 0, used - count);
+        used -= count;
+    }
+}
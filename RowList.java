@@ -0,0 +1,52 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// Row numbers of an append-only table, added in increasing order, for one
+// key of an index over it.
+//
+// add is serialized by the table. Readers take no lock: the count is
+// published after the rows, and a reader passes the table size it saw so
+// rows appended since are skipped.
+final class RowList {
+    private volatile int[] rows = new int[4];
+    private volatile int count;
+
+    void add(int row) {
+        int n = count;
+        if (n == rows.length) {
+            rows = Arrays.copyOf(rows, n * 2);
+        }
+        rows[n] = row;
+        count = n + 1;
+    }
+
+    // Counts rows added after the caller's view too.
+    int count() {
+        return count;
+    }
+
+    // Visits the rows below rowLimit in order, or in descending order if
+    // asked. Stops and returns false as soon as visitor does.
+    boolean scan(boolean descending, int rowLimit, IntPredicate visitor) {
+        int n = count;
+        int[] current = rows;
+        int end = n;
+        while (end > 0 && current[end - 1] >= rowLimit) {
+            end--;
+        }
+        if (descending) {
+            for (int i = end - 1; i >= 0; i--) {
+                if (!visitor.test(current[i])) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < end; i++) {
+                if (!visitor.test(current[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+// A consortium catalogue split by ISBN across in-process LibraryManager
+// shards. Each shard has its own lock stripes, search index, open-loan and
+// overdue indexes, counters, latency histograms and, when persistent, its
+// own journal, so work on titles in different shards shares no lock and no
+// data. A loan lives in the shard of its book.
+//
+// Searches fan out to every shard on a fork-join pool. Matches come back
+// shard by shard, each shard's in its catalogue order; list views are
+// concatenated the same way. Loan batches are left to single managers,
+// since their all-or-nothing guarantee rests on one journal.
+final class ShardedLibrary implements Closeable {
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final LibraryManager[] shards;
+    private final ForkJoinPool searchPool;
+
+    // In-memory shards with an empty catalogue.
+    ShardedLibrary(int shardCount) {
+        this(newShards(shardCount));
+    }
+
+    private ShardedLibrary(LibraryManager[] shards) {
+        this.shards = shards;
+        searchPool = new ForkJoinPool(Math.min(shards.length, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static LibraryManager[] newShards(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shard count must be positive: " + shardCount);
+        }
+        LibraryManager[] shards = new LibraryManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LibraryManager(false);
+        }
+        return shards;
+    }
+
+    // Journaled shards in directory/shard-0 ... shard-<n-1>. A directory keeps
+    // the shard count it was created with, since that decides where each
+    // ISBN lives.
+    static ShardedLibrary open(Path directory, int shardCount, LibraryJournal.SyncMode syncMode)
+            throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shard count must be positive: " + shardCount);
+        }
+        Files.createDirectories(directory);
+        long existing;
+        try (Stream<Path> children = Files.list(directory)) {
+            existing = children.filter(child -> child.getFileName().toString().startsWith(SHARD_PREFIX)).count();
+        }
+        if (existing != 0 && existing != shardCount) {
+            throw new IOException(directory + " holds " + existing + " shards, not " + shardCount);
+        }
+        LibraryManager[] shards = new LibraryManager[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = new LibraryManager(directory.resolve(SHARD_PREFIX + i), syncMode, false);
+            }
+        } catch (IOException e) {
+            for (LibraryManager shard : shards) {
+                if (shard != null) {
+                    shard.close();
+                }
+            }
+            throw e;
+        }
+        return new ShardedLibrary(shards);
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    // The shard holding isbn. Each manager already picks a lock stripe from
+    // the low bits of the ISBN's hash, so shards are chosen from the high
+    // bits of a remixed hash; otherwise every shard would use only a few of
+    // its stripes.
+    int shardOf(String isbn) {
+        long mixed = (Isbn.normalize(isbn).hashCode() * 0x9E3779B9L) & 0xFFFFFFFFL;
+        return (int) ((mixed * shards.length) >>> 32);
+    }
+
+    LibraryManager shard(int index) {
+        return shards[index];
+    }
+
+    private LibraryManager shardFor(String isbn) {
+        return shards[shardOf(isbn)];
+    }
+
+    public boolean addBook(Book book) {
+        return shardFor(book.getIsbn()).addBook(book);
+    }
+
+    // Splits the batch by shard and adds each part on the search pool, so
+    // the shards index and journal their parts in parallel.
+    public List<Book> addBooks(Collection<Book> batch) {
+        List<List<Book>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Book book : batch) {
+            parts.get(shardOf(book.getIsbn())).add(book);
+        }
+        return searchPool.invoke(new ShardTask<>(
+                shard -> parts.get(shard).isEmpty() ? new ArrayList<>() : shards[shard].addBooks(parts.get(shard)),
+                0, shards.length));
+    }
+
+    public boolean removeBook(String isbn) {
+        return shardFor(isbn).removeBook(isbn);
+    }
+
+    public boolean updateBook(String isbn, String title, String author, String category, int totalCopies) {
+        return shardFor(isbn).updateBook(isbn, title, author, category, totalCopies);
+    }
+
+    public Book findBookByIsbn(String isbn) {
+        return shardFor(isbn).findBookByIsbn(isbn);
+    }
+
+    public List<Book> searchBooks(String query) {
+        long start = LibraryMetrics.start();
+        List<Book> matches = searchPool.invoke(
+                new ShardTask<>(shard -> shards[shard].searchIndex().search(query), 0, shards.length));
+        LibraryMetrics.record(LibraryMetrics.Operation.SEARCH, start);
+        return matches;
+    }
+
+    public boolean borrowBook(String isbn, String borrowerName, String borrowerEmail) {
+        return shardFor(isbn).borrowBook(isbn, borrowerName, borrowerEmail);
+    }
+
+    public boolean returnBook(String isbn, String borrowerName) {
+        return shardFor(isbn).returnBook(isbn, borrowerName);
+    }
+
+    public List<BorrowRecord> getActiveLoansForIsbn(String isbn) {
+        return shardFor(isbn).getActiveLoansForIsbn(isbn);
+    }
+
+    // A borrower's loans may be in any shard.
+    public List<BorrowRecord> getActiveLoansForBorrower(String borrowerName) {
+        List<BorrowRecord> loans = new ArrayList<>();
+        for (LibraryManager shard : shards) {
+            loans.addAll(shard.getActiveLoansForBorrower(borrowerName));
+        }
+        return loans;
+    }
+
+    public int getBookCount() {
+        int count = 0;
+        for (LibraryManager shard : shards) {
+            count += shard.getBookCount();
+        }
+        return count;
+    }
+
+    // Every shard's snapshot, taken one after another; see
+    // LibraryManager.getAllBooks.
+    public List<Book> getAllBooks() {
+        List<List<Book>> parts = new ArrayList<>(shards.length);
+        for (LibraryManager shard : shards) {
+            parts.add(shard.getAllBooks());
+        }
+        return new Concatenation<>(parts);
+    }
+
+    public List<BorrowRecord> getAllBorrowRecords() {
+        List<List<BorrowRecord>> parts = new ArrayList<>(shards.length);
+        for (LibraryManager shard : shards) {
+            parts.add(shard.getAllBorrowRecords());
+        }
+        return new Concatenation<>(parts);
+    }
+
+    public List<BorrowRecord> getActiveBorrowRecords() {
+        List<BorrowRecord> records = new ArrayList<>();
+        for (LibraryManager shard : shards) {
+            records.addAll(shard.getActiveBorrowRecords());
+        }
+        return records;
+    }
+
+    public List<BorrowRecord> getOverdueRecords() {
+        List<BorrowRecord> records = new ArrayList<>();
+        for (LibraryManager shard : shards) {
+            records.addAll(shard.getOverdueRecords());
+        }
+        return records;
+    }
+
+    public LibraryStats getStats() {
+        List<LibraryStats> parts = new ArrayList<>(shards.length);
+        for (LibraryManager shard : shards) {
+            parts.add(shard.getStats());
+        }
+        return LibraryStats.sum(parts);
+    }
+
+    public void checkOverdue() {
+        for (LibraryManager shard : shards) {
+            shard.checkOverdue();
+        }
+    }
+
+    // Closes every shard, even if closing one fails.
+    @Override
+    public void close() throws IOException {
+        searchPool.shutdown();
+        IOException failure = null;
+        for (LibraryManager shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Applies perShard to shards [from, to), splitting the range in half
+    // until a single shard is left, and joins the results in shard order.
+    // Each result must be a list the task may append to.
+    private static final class ShardTask<E> extends RecursiveTask<List<E>> {
+        private static final long serialVersionUID = 1L;
+        private final IntFunction<List<E>> perShard;
+        private final int from;
+        private final int to;
+
+        ShardTask(IntFunction<List<E>> perShard, int from, int to) {
+            this.perShard = perShard;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<E> compute() {
+            if (to - from == 1) {
+                return perShard.apply(from);
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask<E> left = new ShardTask<>(perShard, from, middle);
+            left.fork();
+            List<E> right = new ShardTask<>(perShard, middle, to).compute();
+            List<E> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+
+    // Read-only view of several lists one after another.
+    private static final class Concatenation<E> extends AbstractList<E> implements RandomAccess {
+        private final List<List<E>> parts;
+        private final int[] starts;
+        private final int size;
+
+        Concatenation(List<List<E>> parts) {
+            this.parts = parts;
+            starts = new int[parts.size()];
+            int total = 0;
+            for (int i = 0; i < parts.size(); i++) {
+                starts[i] = total;
+                total += parts.get(i).size();
+            }
+            size = total;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            int part = 0;
+            int low = 0;
+            int high = starts.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= index) {
+                    part = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return parts.get(part).get(index - starts[part]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
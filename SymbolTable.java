@@ -0,0 +1,53 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonical instances, with dense int ids, for strings that repeat across
+// many books and loans. Every book by the same author and every loan by the
+// same borrower then point at one String instead of a copy per parse.
+// Entries are never dropped: these vocabularies grow with the catalogue and
+// the membership, not with the loan history.
+final class SymbolTable {
+    static final SymbolTable CATEGORIES = new SymbolTable();
+    static final SymbolTable AUTHORS = new SymbolTable();
+    static final SymbolTable BORROWERS = new SymbolTable();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[256];
+    private int count;
+
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    // -1 when the name has never been seen, without registering it.
+    int find(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    String nameOf(int id) {
+        return names[id];
+    }
+
+    String intern(String name) {
+        return name == null ? null : nameOf(idOf(name));
+    }
+
+    private synchronized int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] table = names;
+        if (count == table.length) {
+            table = Arrays.copyOf(table, count * 2);
+        }
+        table[count] = name;
+        // Publish the array before the id, so a reader holding the id can
+        // always resolve it.
+        names = table;
+        ids.put(name, count);
+        return count++;
+    }
+}
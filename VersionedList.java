@@ -0,0 +1,294 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+// A list that hands out immutable point-in-time snapshots without copying.
+// Every element gets a sequence number when it is added, which stays its
+// handle for remove. Elements sit in fixed-size chunks of an append log
+// indexed by sequence. An append claims the next sequence with one atomic
+// increment and fills its slot, taking no lock, so desks adding to the list
+// never wait for each other or for a removal. A chunk is created under a
+// small lock once per CHUNK_SIZE appends.
+//
+// A removal only records the sequence as removed. The next snapshot after
+// one moves the surviving elements, in order, into a dense base and starts
+// the log again after them. Base chunks before the first removed element
+// are shared rather than copied, so dropping a recent element copies
+// little. Until then snapshots are a view of the base and the log that
+// copies nothing. Older snapshots keep the chunks they were taken from.
+//
+// Removals and snapshots are serialized with each other, not with appends.
+final class VersionedList<E> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Object chunkLock = new Object();
+    private volatile AtomicReferenceArray<Object[]> log = new AtomicReferenceArray<>(16);
+
+    // Guarded by this. Elements with sequences below logFrom that survived
+    // the last compaction, and the sequences added or removed since.
+    private Object[][] baseChunks = new Object[0][];
+    private long[][] baseSequences = new long[0][];
+    private int baseSize;
+    private long logFrom;
+    private long published;
+    private final Set<Long> removed = new HashSet<>();
+    private volatile Snapshot<E> snapshot = new Snapshot<>(baseChunks, 0, new Object[0][], 0, 0);
+
+    // Returns the element's sequence, for remove.
+    public long add(E element) {
+        long sequence = nextSequence.getAndIncrement();
+        SLOTS.setRelease(chunkFor(sequence), (int) (sequence & CHUNK_MASK), element);
+        return sequence;
+    }
+
+    // Removes the element add returned this sequence for.
+    public synchronized boolean remove(long sequence) {
+        if (sequence >= logFrom) {
+            if (sequence >= nextSequence.get() || removed.contains(sequence)) {
+                return false;
+            }
+        } else if (basePosition(sequence) < 0 || removed.contains(sequence)) {
+            return false;
+        }
+        removed.add(sequence);
+        snapshot = null;
+        return true;
+    }
+
+    // Tests each element exactly once, so the filter may act on what it
+    // removes. Appends made while it runs are not tested.
+    public synchronized boolean removeIf(Predicate<? super E> filter) {
+        long end = awaitAppends();
+        int before = removed.size();
+        for (int i = 0; i < baseSize; i++) {
+            long sequence = baseSequence(i);
+            if (!removed.contains(sequence) && filter.test(baseElement(i))) {
+                removed.add(sequence);
+            }
+        }
+        for (long sequence = logFrom; sequence < end; sequence++) {
+            if (!removed.contains(sequence) && filter.test(logElement(sequence))) {
+                removed.add(sequence);
+            }
+        }
+        if (removed.size() == before) {
+            return false;
+        }
+        snapshot = null;
+        return true;
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    // The list as it is now, including every add that has returned. Later
+    // changes are not visible through it.
+    public Snapshot<E> snapshot() {
+        Snapshot<E> current = snapshot;
+        if (current != null && current.end == nextSequence.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long end = awaitAppends();
+            current = snapshot;
+            if (current != null && current.end == end) {
+                return current;
+            }
+            if (!removed.isEmpty()) {
+                compact(end);
+            }
+            AtomicReferenceArray<Object[]> chunks = log;
+            int firstChunk = (int) (logFrom >>> CHUNK_BITS);
+            Object[][] logChunks = new Object[(int) ((end + CHUNK_MASK) >>> CHUNK_BITS) - firstChunk][];
+            for (int i = 0; i < logChunks.length; i++) {
+                logChunks[i] = chunks.get(firstChunk + i);
+            }
+            current = new Snapshot<>(baseChunks, baseSize, logChunks, logFrom, end);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    private Object[] chunkFor(long sequence) {
+        int index = (int) (sequence >>> CHUNK_BITS);
+        AtomicReferenceArray<Object[]> chunks = log;
+        if (index < chunks.length()) {
+            Object[] chunk = chunks.get(index);
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        synchronized (chunkLock) {
+            chunks = log;
+            if (index >= chunks.length()) {
+                chunks = copyOf(chunks, 0, Math.max(index + 1, chunks.length() * 2));
+                log = chunks;
+            }
+            Object[] chunk = chunks.get(index);
+            if (chunk == null) {
+                chunk = new Object[CHUNK_SIZE];
+                chunks.set(index, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    private static AtomicReferenceArray<Object[]> copyOf(AtomicReferenceArray<Object[]> chunks, int from, int length) {
+        AtomicReferenceArray<Object[]> copy = new AtomicReferenceArray<>(length);
+        for (int i = from; i < chunks.length(); i++) {
+            copy.set(i, chunks.get(i));
+        }
+        return copy;
+    }
+
+    // Waits for appends that have claimed a sequence but not yet filled
+    // their slot, so a snapshot never has gaps; each is a few instructions
+    // from done. Returns the end of the appends now visible.
+    private long awaitAppends() {
+        long end = nextSequence.get();
+        for (long sequence = published; sequence < end; sequence++) {
+            for (int spins = 0; logElement(sequence) == null; spins++) {
+                if (spins < SPINS_BEFORE_YIELD) {
+                    Thread.onSpinWait();
+                } else {
+                    // The appender was descheduled mid-way; let it run.
+                    Thread.yield();
+                }
+            }
+        }
+        published = end;
+        return end;
+    }
+
+    // Moves what survives of the base and the log up to end into a new
+    // base, in order, and drops the log chunks wholly before end. Base
+    // chunks before the first removed element are shared as they are.
+    private void compact(long end) {
+        long firstRemoved = Long.MAX_VALUE;
+        for (long sequence : removed) {
+            firstRemoved = Math.min(firstRemoved, sequence);
+        }
+        int kept = firstRemoved < logFrom ? basePosition(firstRemoved) : baseSize;
+        int sharedChunks = kept >>> CHUNK_BITS;
+        int capacity = baseSize + (int) (end - logFrom) - removed.size();
+        int chunkCount = (capacity + CHUNK_MASK) >>> CHUNK_BITS;
+        Object[][] chunks = Arrays.copyOf(baseChunks, chunkCount);
+        long[][] sequences = Arrays.copyOf(baseSequences, chunkCount);
+        Arrays.fill(chunks, sharedChunks, chunkCount, null);
+        Arrays.fill(sequences, sharedChunks, chunkCount, null);
+
+        int size = sharedChunks << CHUNK_BITS;
+        for (int i = size; i < baseSize; i++) {
+            long sequence = baseSequence(i);
+            if (!removed.contains(sequence)) {
+                size = append(chunks, sequences, size, baseElement(i), sequence);
+            }
+        }
+        for (long sequence = logFrom; sequence < end; sequence++) {
+            if (!removed.contains(sequence)) {
+                size = append(chunks, sequences, size, logElement(sequence), sequence);
+            }
+        }
+        baseChunks = chunks;
+        baseSequences = sequences;
+        baseSize = size;
+        logFrom = end;
+        removed.clear();
+        synchronized (chunkLock) {
+            log = copyOf(log, (int) (end >>> CHUNK_BITS), log.length());
+        }
+    }
+
+    private static int append(Object[][] chunks, long[][] sequences, int size, Object element, long sequence) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[CHUNK_SIZE];
+            sequences[chunk] = new long[CHUNK_SIZE];
+        }
+        chunks[chunk][size & CHUNK_MASK] = element;
+        sequences[chunk][size & CHUNK_MASK] = sequence;
+        return size + 1;
+    }
+
+    // The base is in sequence order, so this is a binary search; -1 when
+    // the sequence is not in the base.
+    private int basePosition(long sequence) {
+        int low = 0;
+        int high = baseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = baseSequence(middle);
+            if (found < sequence) {
+                low = middle + 1;
+            } else if (found > sequence) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private long baseSequence(int index) {
+        return baseSequences[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E baseElement(int index) {
+        return (E) baseChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E logElement(long sequence) {
+        Object[] chunk = log.get((int) (sequence >>> CHUNK_BITS));
+        return chunk == null ? null : (E) SLOTS.getAcquire(chunk, (int) (sequence & CHUNK_MASK));
+    }
+
+    static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[][] baseChunks;
+        private final int baseSize;
+        private final Object[][] logChunks;
+        private final long logFrom;
+        private final long end;
+
+        private Snapshot(Object[][] baseChunks, int baseSize, Object[][] logChunks, long logFrom, long end) {
+            this.baseChunks = baseChunks;
+            this.baseSize = baseSize;
+            this.logChunks = logChunks;
+            this.logFrom = logFrom;
+            this.end = end;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+            }
+            if (index < baseSize) {
+                return (E) baseChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+            }
+            long sequence = logFrom + (index - baseSize);
+            int chunk = (int) ((sequence >>> CHUNK_BITS) - (logFrom >>> CHUNK_BITS));
+            return (E) logChunks[chunk][(int) (sequence & CHUNK_MASK)];
+        }
+
+        @Override
+        public int size() {
+            return baseSize + (int) (end - logFrom);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Self-checkout stacks of 10 borrows followed by returns bins of 200, applied
+// one borrowBook/returnBook call at a time against applyLoans batches, in
+// memory and with a journal (where each unbatched call waits for its own
+// flush and each batch waits once).
+// Usage: java -cp <classes> BatchLoanBenchmark [operations]
+public class BatchLoanBenchmark {
+    private static final int TITLES = 10_000;
+    private static final int STACK = 10;
+    private static final int BIN = 200;
+
+    public static void main(String[] args) throws IOException {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.printf("%,d operations, stacks of %d, bins of %d%n", operations, STACK, BIN);
+        run("in-memory", false, operations);
+        run("journaled", true, Math.min(operations, 20_000));
+    }
+
+    private static void run(String name, boolean journaled, int operations) throws IOException {
+        for (boolean batched : new boolean[] {false, true}) {
+            Path directory = journaled ? Files.createTempDirectory("library") : null;
+            LibraryManager manager = journaled
+                    ? new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH) : new LibraryManager();
+            for (int i = 0; i < TITLES; i++) {
+                manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author", "Fiction", 2));
+            }
+
+            long start = System.nanoTime();
+            int succeeded = batched ? batched(manager, operations) : unbatched(manager, operations);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %-10s %,8d ok in %,7.0f ms  %,10d ops/sec%n", name,
+                    batched ? "batched" : "unbatched", succeeded, elapsed / 1e6,
+                    (long) (operations / (elapsed / 1e9)));
+            manager.close();
+            if (journaled) {
+                JournalBenchmark.deleteDirectory(directory);
+            }
+        }
+    }
+
+    // Borrower b takes titles b*STACK .. b*STACK+9; every BIN/STACK borrowers
+    // their books come back in one bin.
+    private static int unbatched(LibraryManager manager, int operations) {
+        int succeeded = 0;
+        int borrower = 0;
+        for (int done = 0; done < operations; borrower += BIN / STACK) {
+            for (int b = borrower; b < borrower + BIN / STACK && done < operations; b++) {
+                for (int i = 0; i < STACK && done < operations; i++, done++) {
+                    if (manager.borrowBook(isbn(b, i), "Patron " + b, "patron@example.org")) {
+                        succeeded++;
+                    }
+                }
+            }
+            for (int b = borrower; b < borrower + BIN / STACK && done < operations; b++) {
+                for (int i = 0; i < STACK && done < operations; i++, done++) {
+                    if (manager.returnBook(isbn(b, i), "Patron " + b)) {
+                        succeeded++;
+                    }
+                }
+            }
+        }
+        return succeeded;
+    }
+
+    private static int batched(LibraryManager manager, int operations) {
+        int succeeded = 0;
+        int borrower = 0;
+        for (int done = 0; done < operations; borrower += BIN / STACK) {
+            for (int b = borrower; b < borrower + BIN / STACK && done < operations; b++) {
+                LoanBatch stack = new LoanBatch();
+                for (int i = 0; i < STACK && done < operations; i++, done++) {
+                    stack.borrow(isbn(b, i), "Patron " + b, "patron@example.org");
+                }
+                succeeded += count(manager.applyLoans(stack));
+            }
+            LoanBatch bin = new LoanBatch();
+            for (int b = borrower; b < borrower + BIN / STACK && done < operations; b++) {
+                for (int i = 0; i < STACK && done < operations; i++, done++) {
+                    bin.returnBook(isbn(b, i), "Patron " + b);
+                }
+            }
+            succeeded += count(manager.applyLoans(bin));
+        }
+        return succeeded;
+    }
+
+    private static String isbn(int borrower, int item) {
+        return IsbnLookupBenchmark.isbnFor((borrower * STACK + item) % TITLES);
+    }
+
+    private static int count(List<LoanBatch.Result> results) {
+        int succeeded = 0;
+        for (LoanBatch.Result result : results) {
+            if (result.succeeded()) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Many desks race on the same titles; verifies no copy is ever oversold and
+// that copy counts and running stats agree with open loans afterwards. Exits non-zero on failure.
+// Usage: java -cp <classes> CheckoutStressCheck [threads] [rounds]
+public class CheckoutStressCheck {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        for (int round = 0; round < rounds; round++) {
+            lastCopyRace(threads, round);
+        }
+        System.out.printf("last-copy race: %d rounds x %d threads, no oversell%n", rounds, threads);
+
+        mixedTraffic(threads);
+        System.out.println("mixed borrow/return traffic: copy counts and stats consistent");
+    }
+
+    private static void lastCopyRace(int threads, int round) throws InterruptedException {
+        LibraryManager manager = new LibraryManager();
+        String isbn = "979-1000000000";
+        int copies = 1 + round % 4;
+        manager.addBook(new Book(isbn, "Contended", "Author", "Fiction", copies));
+
+        AtomicInteger successes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String borrower = "Desk " + t;
+            workers[t] = new Thread(() -> {
+                await(start);
+                if (manager.borrowBook(isbn, borrower, "desk@example.org")) {
+                    successes.incrementAndGet();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Book book = manager.findBookByIsbn(isbn);
+        check(successes.get() == copies, "round " + round + ": " + successes.get() + " borrows of " + copies + " copies");
+        check(book.getAvailableCopies() == 0, "round " + round + ": available=" + book.getAvailableCopies());
+        check(manager.getActiveLoansForIsbn(isbn).size() == copies, "round " + round + ": open loans mismatch");
+    }
+
+    private static void mixedTraffic(int threads) throws InterruptedException {
+        LibraryManager manager = new LibraryManager();
+        int titles = 50;
+        for (int i = 0; i < titles; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author", "Fiction", 3));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                String borrower = "Desk " + seed;
+                await(start);
+                for (int i = 0; i < 20_000; i++) {
+                    String isbn = IsbnLookupBenchmark.isbnFor(random.nextInt(titles));
+                    if (random.nextBoolean()) {
+                        manager.borrowBook(isbn, borrower, "desk@example.org");
+                    } else {
+                        manager.returnBook(isbn, borrower);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        int open = 0;
+        for (Book book : manager.getAllBooks()) {
+            List<BorrowRecord> loans = manager.getActiveLoansForIsbn(book.getIsbn());
+            open += loans.size();
+            check(book.getAvailableCopies() >= 0, book.getIsbn() + " negative availability");
+            check(book.getAvailableCopies() + loans.size() == book.getTotalCopies(),
+                    book.getIsbn() + ": available " + book.getAvailableCopies() + " + open " + loans.size()
+                            + " != total " + book.getTotalCopies());
+        }
+        check(open == manager.getActiveBorrowRecords().size(), "open loan views disagree");
+
+        LibraryStats stats = manager.getStats();
+        List<Book> books = manager.getAllBooks();
+        int available = 0;
+        int total = 0;
+        for (Book book : books) {
+            available += book.getAvailableCopies();
+            total += book.getTotalCopies();
+        }
+        check(stats.getTitles() == books.size(), "stats titles " + stats.getTitles());
+        check(stats.getTotalCopies() == total, "stats total copies " + stats.getTotalCopies() + " != " + total);
+        check(stats.getAvailableCopies() == available,
+                "stats available copies " + stats.getAvailableCopies() + " != " + available);
+        check(stats.getActiveLoans() == open, "stats active loans " + stats.getActiveLoans() + " != " + open);
+        check(stats.getLoansRecorded() == manager.getAllBorrowRecords().size(), "stats loans recorded disagree");
+        check(stats.getOverdueLoans() == manager.getOverdueRecords().size(), "stats overdue loans disagree");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Borrow+return throughput with 1, 8 and 32 desks working concurrently.
+// Usage: java -cp <classes> CheckoutThroughputBenchmark [seconds] [threads ...]
+public class CheckoutThroughputBenchmark {
+    private static final int TITLES = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] threadCounts = {1, 8, 32};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        LibraryManager manager = new LibraryManager();
+        String[] isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            isbns[i] = IsbnLookupBenchmark.isbnFor(i);
+            manager.addBook(new Book(isbns[i], "Title " + i, "Author", "Fiction", 64));
+        }
+
+        System.out.printf("cores=%d%n", Runtime.getRuntime().availableProcessors());
+        run(manager, isbns, 1, seconds);
+        for (int threads : threadCounts) {
+            long ops = run(manager, isbns, threads, seconds);
+            System.out.printf("threads=%2d  %,12.0f borrow+return pairs/s%n", threads, (double) ops / seconds);
+        }
+    }
+
+    private static long run(LibraryManager manager, String[] isbns, int threads, int seconds)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + 1_000_000_000L * seconds;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String borrower = "Desk " + t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while ((done & 255) != 0 || System.nanoTime() < deadline) {
+                    String isbn = isbns[random.nextInt(isbns.length)];
+                    if (manager.borrowBook(isbn, borrower, "desk@example.org")) {
+                        manager.returnBook(isbn, borrower);
+                    }
+                    done++;
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum();
+    }
+}
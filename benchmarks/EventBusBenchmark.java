@@ -0,0 +1,122 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// How LibraryManager's change events reach a listener whose executor is a
+// single "ui" thread that spends REPAINT_MS on every batch. A burst applied
+// on that thread arrives as one batch. The same burst from desk threads
+// arrives as a few batches. Then
+// borrow+return throughput with and without a listener, alternated over
+// three rounds, shows what publishing costs the desks.
+// Usage: java -cp <classes> EventBusBenchmark [burst] [desks] [seconds]
+public class EventBusBenchmark {
+    private static final int TITLES = 10_000;
+    private static final int REPAINT_MS = 2;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int burst = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int desks = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        ExecutorService ui = Executors.newSingleThreadExecutor(r -> new Thread(r, "ui"));
+        LongAdder batches = new LongAdder();
+        LongAdder events = new LongAdder();
+        LibraryManager manager = newManager();
+        manager.addListener(ui, batch -> {
+            batches.increment();
+            events.add(batch.size());
+            sleep(REPAINT_MS);
+        });
+
+        ui.submit(() -> loans(manager, 0, burst, "Desk")).get();
+        drain(ui);
+        System.out.printf("burst of %,d on the ui thread:    %,d events in %,d batches%n", burst, events.sum(),
+                batches.sum());
+
+        batches.reset();
+        events.reset();
+        Thread[] workers = new Thread[desks];
+        for (int d = 0; d < desks; d++) {
+            int desk = d;
+            workers[d] = new Thread(() -> loans(manager, desk * TITLES / desks, burst / desks, "Desk " + desk));
+            workers[d].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        drain(ui);
+        System.out.printf("burst of %,d from %d desk threads: %,d events in %,d batches%n", burst / desks * desks,
+                desks, events.sum(), batches.sum());
+
+        for (int round = 0; round < 3; round++) {
+            long without = throughput(newManager(), desks, seconds);
+            LibraryManager listened = newManager();
+            listened.addListener(ui, batch -> sleep(REPAINT_MS));
+            long with = throughput(listened, desks, seconds);
+            System.out.printf("round %d  %d desks: no listener %,12.0f ops/s   listener %,12.0f ops/s%n",
+                    round, desks, (double) without / seconds, (double) with / seconds);
+        }
+        ui.shutdown();
+    }
+
+    private static LibraryManager newManager() {
+        LibraryManager manager = new LibraryManager(false);
+        for (int i = 0; i < TITLES; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 500),
+                    "Fiction", 1_000));
+        }
+        return manager;
+    }
+
+    // operations borrows and returns, alternating, from consecutive titles.
+    private static void loans(LibraryManager manager, int firstTitle, int operations, String borrower) {
+        for (int i = 0; i < operations; i++) {
+            String isbn = IsbnLookupBenchmark.isbnFor((firstTitle + i / 2) % TITLES);
+            if (i % 2 == 0) {
+                manager.borrowBook(isbn, borrower, "desk@example.org");
+            } else {
+                manager.returnBook(isbn, borrower);
+            }
+        }
+    }
+
+    // Waits until the deliveries scheduled so far have run.
+    private static void drain(ExecutorService ui) throws InterruptedException, ExecutionException {
+        ui.submit(() -> { }).get();
+    }
+
+    private static long throughput(LibraryManager manager, int desks, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong ops = new AtomicLong();
+        Thread[] workers = new Thread[desks];
+        for (int d = 0; d < desks; d++) {
+            int desk = d;
+            workers[d] = new Thread(() -> {
+                long done = 0;
+                while (running.get()) {
+                    loans(manager, (int) (done % TITLES), 2, "Desk " + desk);
+                    done += 2;
+                }
+                ops.addAndGet(done);
+            });
+            workers[d].start();
+        }
+        Thread.sleep(1000L * seconds);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.get();
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
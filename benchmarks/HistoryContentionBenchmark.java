@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Borrow+return throughput and latency while the loan history and the
+// catalogue are churned behind the desks' backs: a clerk thread keeps
+// removing and re-adding titles and taking catalogue and history
+// snapshots, and every ARCHIVE_THRESHOLD returns a desk moves returned
+// loans to the archive. Desks share the history and catalogue lists, so
+// anything that serializes appends to them shows up here as lost
+// throughput and as a long tail.
+// Usage: java -cp <classes> HistoryContentionBenchmark [seconds] [desks ...]
+public class HistoryContentionBenchmark {
+    private static final int TITLES = 100_000;
+    private static final int SAMPLES = 1 << 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] deskCounts = {1, 4, 16};
+        if (args.length > 1) {
+            deskCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                deskCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        LibraryManager manager = new LibraryManager(false);
+        String[] isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            isbns[i] = IsbnLookupBenchmark.isbnFor(i);
+            manager.addBook(new Book(isbns[i], "Title " + i, "Author", "Fiction", 64));
+        }
+
+        System.out.printf("cores=%d titles=%,d%n", Runtime.getRuntime().availableProcessors(), TITLES);
+        run(manager, isbns, 1, 1);
+        for (int desks : deskCounts) {
+            run(manager, isbns, desks, seconds);
+        }
+    }
+
+    private static void run(LibraryManager manager, String[] isbns, int desks, int seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[][] latencies = new long[desks][SAMPLES];
+        long[] done = new long[desks];
+        Thread[] workers = new Thread[desks];
+        for (int d = 0; d < desks; d++) {
+            int desk = d;
+            String borrower = "Desk " + d;
+            workers[d] = new Thread(() -> {
+                awaitQuietly(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (running.get()) {
+                    String isbn = isbns[random.nextInt(isbns.length)];
+                    long begin = System.nanoTime();
+                    if (manager.borrowBook(isbn, borrower, "desk@example.org")) {
+                        manager.returnBook(isbn, borrower);
+                    }
+                    latencies[desk][(int) (count & (SAMPLES - 1))] = System.nanoTime() - begin;
+                    count++;
+                }
+                done[desk] = count;
+            });
+            workers[d].start();
+        }
+        Thread clerk = new Thread(() -> {
+            awaitQuietly(start);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running.get()) {
+                Book book = manager.findBookByIsbn(isbns[random.nextInt(isbns.length)]);
+                if (book != null && manager.removeBook(book.getIsbn())) {
+                    manager.addBook(new Book(book.getIsbn(), book.getTitle(), book.getAuthor(), book.getCategory(),
+                            book.getTotalCopies()));
+                }
+                manager.getAllBooks().size();
+                manager.getAllBorrowRecords().size();
+            }
+        });
+        clerk.start();
+
+        start.countDown();
+        Thread.sleep(1000L * seconds);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        clerk.join();
+
+        long total = 0;
+        int samples = 0;
+        for (int d = 0; d < desks; d++) {
+            total += done[d];
+            samples += (int) Math.min(done[d], SAMPLES);
+        }
+        long[] all = new long[samples];
+        int at = 0;
+        for (int d = 0; d < desks; d++) {
+            int n = (int) Math.min(done[d], SAMPLES);
+            System.arraycopy(latencies[d], 0, all, at, n);
+            at += n;
+        }
+        Arrays.sort(all);
+        System.out.printf("desks=%2d  %,12.0f borrow+return pairs/s   p50 %,8d ns   p99.9 %,10d ns   max %,12d ns%n",
+                desks, (double) total / seconds, all[all.length / 2], all[(int) (all.length * 0.999)],
+                all[all.length - 1]);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
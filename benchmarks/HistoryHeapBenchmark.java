@@ -0,0 +1,60 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Retained heap per returned loan: BorrowRecord objects in a list, as the
+// history used to be held, against the same loans in a LoanArchive. Names
+// and titles are built per record, as they are when read back from a
+// journal or snapshot. Measured as used heap after GC, so run with a fixed
+// heap and nothing else in the JVM.
+// Usage: java -Xms4g -Xmx4g -cp <classes> HistoryHeapBenchmark [records]
+public class HistoryHeapBenchmark {
+    private static final int TITLES = 10_000;
+    private static final int BORROWERS = 100_000;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        LocalDate start = LocalDate.of(2020, 1, 1);
+
+        long base = usedAfterGc();
+        List<BorrowRecord> objects = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            BorrowRecord record = new BorrowRecord(IsbnLookupBenchmark.isbnFor(i % TITLES), "Title " + (i % TITLES),
+                    "Borrower " + (i % BORROWERS), "borrower" + (i % BORROWERS) + "@example.org",
+                    start.plusDays(i % 2000));
+            record.markReturned(start.plusDays(i % 2000 + i % 21));
+            objects.add(record);
+        }
+        long objectBytes = usedAfterGc() - base;
+        System.out.printf("BorrowRecord list: %,d records  %,d bytes  %.1f bytes/record%n",
+                objects.size(), objectBytes, (double) objectBytes / records);
+        objects = null;
+
+        base = usedAfterGc();
+        LoanArchive archive = new LoanArchive();
+        for (int i = 0; i < records; i++) {
+            int borrowed = (int) start.toEpochDay() + i % 2000;
+            archive.add(IsbnLookupBenchmark.isbnFor(i % TITLES), "Title " + (i % TITLES),
+                    "Borrower " + (i % BORROWERS), "borrower" + (i % BORROWERS) + "@example.org",
+                    borrowed, borrowed + i % 21);
+        }
+        long archiveBytes = usedAfterGc() - base;
+        System.out.printf("LoanArchive:       %,d records  %,d bytes  %.1f bytes/record%n",
+                archive.size(), archiveBytes, (double) archiveBytes / records);
+
+        long scanned = 0;
+        long scanStart = System.nanoTime();
+        for (BorrowRecord record : archive) {
+            scanned += record.getReturnDate().getDayOfMonth();
+        }
+        System.out.printf("archive scan: %,.0f ms (%d)%n", (System.nanoTime() - scanStart) / 1e6, scanned % 10);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,166 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Closed-loop load against a local LibraryHttpServer: each client sends a
+// kiosk-like mix (60% search, 25% ISBN lookup, 15% borrow followed by its
+// return) and waits for every response before sending the next request.
+// Reports requests/sec and p50/p99/p99.9 latency per request kind.
+// --journal serves a journaled manager in a temporary directory instead of
+// an in-memory one.
+// Usage: java -cp <classes> HttpLoadTest [seconds] [clients] [--journal]
+public class HttpLoadTest {
+    private static final int TITLES = 10_000;
+    private static final String[] KINDS = {"search", "lookup", "borrow", "return"};
+    private static final String[] WORDS = {"title 1", "title 42", "author", "fic", "title 9", "ti"};
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        boolean journaled = args.length > 2 && args[2].equals("--journal");
+
+        Path directory = journaled ? Files.createTempDirectory("http-load") : null;
+        LibraryManager manager = journaled
+                ? new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH) : new LibraryManager();
+        String[] isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            isbns[i] = IsbnLookupBenchmark.isbnFor(i);
+            manager.addBook(new Book(isbns[i], "Title " + i, "Author " + (i % 500), "Fiction", 1_000));
+        }
+        LibraryHttpServer server = LibraryHttpServer.start(manager, new InetSocketAddress("127.0.0.1", 0));
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        System.out.printf("cores=%d clients=%d journal=%s virtualThreads=%s%n",
+                Runtime.getRuntime().availableProcessors(), clients, journaled, server.usesVirtualThreads());
+
+        run(client, base, isbns, clients, Math.min(seconds, 3));
+        Latencies[] results = run(client, base, isbns, clients, seconds);
+
+        long total = 0;
+        for (Latencies latencies : results) {
+            total += latencies.count;
+        }
+        System.out.printf("%,.0f requests/s over %d s%n", (double) total / seconds, seconds);
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            Latencies merged = new Latencies();
+            for (int c = 0; c < clients; c++) {
+                merged.addAll(results[c * KINDS.length + kind]);
+            }
+            long[] sorted = merged.sorted();
+            System.out.printf("%-7s %,9d requests  p50 %7.2f ms  p99 %7.2f ms  p99.9 %7.2f ms%n", KINDS[kind],
+                    sorted.length, percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999));
+        }
+
+        server.close();
+        manager.close();
+        if (directory != null) {
+            JournalBenchmark.deleteDirectory(directory);
+        }
+    }
+
+    // One Latencies per client per request kind, indexed client * KINDS.length + kind.
+    private static Latencies[] run(HttpClient client, String base, String[] isbns, int clients, int seconds)
+            throws InterruptedException {
+        Latencies[] results = new Latencies[clients * KINDS.length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new Latencies();
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int first = c * KINDS.length;
+            String borrower = URLEncoder.encode("Kiosk " + c, StandardCharsets.UTF_8);
+            workers[c] = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long deadline = System.nanoTime() + 1_000_000_000L * seconds;
+                    while (System.nanoTime() < deadline) {
+                        int pick = random.nextInt(100);
+                        String isbn = isbns[random.nextInt(isbns.length)];
+                        if (pick < 60) {
+                            String query = URLEncoder.encode(WORDS[random.nextInt(WORDS.length)],
+                                    StandardCharsets.UTF_8);
+                            send(client, results[first], HttpRequest.newBuilder(
+                                    URI.create(base + "/books?limit=20&q=" + query)).GET().build(), 200);
+                        } else if (pick < 85) {
+                            send(client, results[first + 1], HttpRequest.newBuilder(
+                                    URI.create(base + "/books/" + isbn)).GET().build(), 200);
+                        } else {
+                            String form = "isbn=" + isbn + "&name=" + borrower + "&email=kiosk%40example.org";
+                            send(client, results[first + 2], post(base + "/borrow", form), 200);
+                            send(client, results[first + 3], post(base + "/return", form), 200);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers[c].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return results;
+    }
+
+    private static HttpRequest post(String uri, String form) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static void send(HttpClient client, Latencies latencies, HttpRequest request, int expectedStatus)
+            throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        latencies.add(System.nanoTime() - start);
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ": "
+                    + new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static final class Latencies {
+        long[] nanos = new long[1024];
+        int count;
+
+        void add(long value) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
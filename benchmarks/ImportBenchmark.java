@@ -0,0 +1,80 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Bulk import of a generated branch catalogue (about 1% duplicate ISBNs
+// and 0.1% malformed rows) into an in-memory and a journaled library,
+// against adding rows one addBook call at a time (the journaled loop is
+// capped at 20,000 rows, since each call waits for its own flush).
+// Usage: java -Xmx4g -cp <classes> ImportBenchmark [records] [threads]
+public class ImportBenchmark {
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Path file = Files.createTempFile("branch", ".csv");
+        Path directory = Files.createTempDirectory("library");
+        try {
+            write(file, size);
+            System.out.printf("%,d rows, %,d bytes, %d parser threads%n", size, Files.size(file), threads);
+
+            new CatalogueImport(new LibraryManager(), threads)
+                    .importFile(file, (records, bytesRead, totalBytes) -> { });
+
+            run("in-memory import", new LibraryManager(), file, threads);
+            LibraryManager journaled = new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH);
+            run("journaled import", journaled, file, threads);
+            journaled.close();
+            JournalBenchmark.deleteDirectory(directory);
+
+            addOneByOne("addBook loop", new LibraryManager(), size);
+            journaled = new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH);
+            addOneByOne("journaled addBook", journaled, Math.min(size, 20_000));
+            journaled.close();
+        } finally {
+            Files.deleteIfExists(file);
+            JournalBenchmark.deleteDirectory(directory);
+        }
+    }
+
+    private static void addOneByOne(String name, LibraryManager manager, int rows) {
+        int distinct = rows - rows / 100;
+        long start = System.nanoTime();
+        int added = 0;
+        for (int i = 0; i < rows; i++) {
+            if (manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i % distinct), "Title " + i,
+                    "Author " + (i % 5000), "Category " + (i % 40), 1 + i % 5))) {
+                added++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-18s %,9d added in %,6.0f ms  %,10d records/sec%n", name, added, elapsed / 1e6,
+                (long) (rows / (elapsed / 1e9)));
+    }
+
+    private static void run(String name, LibraryManager manager, Path file, int threads) throws IOException {
+        CatalogueImport.Result result = new CatalogueImport(manager, threads)
+                .importFile(file, (records, bytesRead, totalBytes) -> { });
+        System.out.printf("%-18s %,9d added in %,6.0f ms  %,10d records/sec  (%,d duplicates, %,d rejected)%n",
+                name, result.getImported(), result.getElapsedNanos() / 1e6, result.recordsPerSecond(),
+                result.getDuplicates(), result.getRejected());
+    }
+
+    private static void write(Path file, int size) throws IOException {
+        int distinct = size - size / 100;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("ISBN,Title,Author,Category,Copies\n");
+            for (int i = 0; i < size; i++) {
+                if (i % 1000 == 999) {
+                    out.write("not,a,valid,row\n");
+                    continue;
+                }
+                out.write(IsbnLookupBenchmark.isbnFor(i % distinct));
+                out.write(i % 10 == 0 ? ",\"Title " + i + ", Volume " + (i % 7) + "\"" : ",Title " + i);
+                out.write(",Author " + (i % 5000) + ",Category " + (i % 40) + "," + (1 + i % 5) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.time.LocalDate;
+
+// Retained heap for a synthetic library whose strings arrive as fresh
+// instances per row, as they do from CSV import, the journal or the UI:
+// books share 50,000 authors and 40 categories, loans share 200,000
+// borrowers. One loan in ten is left open; the rest are returned. Also
+// times a category filter over the whole catalogue.
+// Usage: java -Xms4g -Xmx4g -cp <classes> InternHeapBenchmark [books] [loans]
+public class InternHeapBenchmark {
+    private static final int AUTHORS = 50_000;
+    private static final int CATEGORIES = 40;
+    private static final int BORROWERS = 200_000;
+
+    public static void main(String[] args) {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int loanCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        LocalDate start = LocalDate.of(2020, 1, 1);
+
+        long base = usedAfterGc();
+        LibraryManager manager = new LibraryManager();
+        String[] isbns = new String[bookCount];
+        String[] titles = new String[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Book book = new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % AUTHORS),
+                    "Category " + (i % CATEGORIES), 5, start);
+            manager.restoreBook(book, 5);
+            isbns[i] = book.getIsbn();
+            titles[i] = book.getTitle();
+        }
+        long booksBytes = usedAfterGc() - base;
+        System.out.printf("%,d books: %,d bytes (%.1f bytes/book, search index included)%n",
+                bookCount, booksBytes, (double) booksBytes / bookCount);
+
+        for (int i = 0; i < loanCount; i++) {
+            int book = (int) ((i * 7L) % bookCount);
+            int borrower = i % BORROWERS;
+            BorrowRecord record = new BorrowRecord(isbns[book], titles[book], "Borrower " + borrower,
+                    "borrower" + borrower + "@example.org", start.plusDays(i % 2000));
+            if (i % 10 != 0) {
+                record.markReturned(start.plusDays(i % 2000 + i % 21));
+            }
+            manager.restoreRecord(record);
+        }
+        long loansBytes = usedAfterGc() - base - booksBytes;
+        System.out.printf("%,d loans: %,d bytes (%.1f bytes/loan)%n",
+                loanCount, loansBytes, (double) loansBytes / loanCount);
+        System.out.printf("total: %,d bytes%n", booksBytes + loansBytes);
+
+        String category = "Category " + (CATEGORIES / 2);
+        for (int round = 0; round < 5; round++) {
+            long filterStart = System.nanoTime();
+            int matches = manager.getBooksInCategory(category).size();
+            System.out.printf("category filter: %,d matches in %.1f ms%n",
+                    matches, (System.nanoTime() - filterStart) / 1e6);
+        }
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
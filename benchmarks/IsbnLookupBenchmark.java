@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Compares the old linear findBookByIsbn scan with the ISBN index.
+// Usage: java -cp <classes> IsbnLookupBenchmark [size ...]
+public class IsbnLookupBenchmark {
+    private static final int LOOKUPS = 200_000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? parseSizes(args) : new int[] {10_000, 100_000, 1_000_000};
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    static String isbnFor(int i) {
+        return String.format("979-%09d", i);
+    }
+
+    private static void run(int size) {
+        LibraryManager manager = new LibraryManager();
+        List<Book> linear = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Book book = new Book(isbnFor(i), "Title " + i, "Author " + (i % 5000), "Category " + (i % 40), 2);
+            manager.addBook(book);
+            linear.add(book);
+        }
+
+        String[] keys = new String[LOOKUPS];
+        Random random = new Random(42);
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = isbnFor(random.nextInt(size));
+        }
+
+        int linearLookups = Math.max(100, LOOKUPS / Math.max(1, size / 1000));
+        for (int round = 0; round < 3; round++) {
+            indexed(manager, keys, LOOKUPS);
+            scanned(linear, keys, linearLookups);
+        }
+        double indexedNs = indexed(manager, keys, LOOKUPS);
+        double scannedNs = scanned(linear, keys, linearLookups);
+
+        System.out.printf("books=%,d  linear scan: %,.0f ns/op  index: %,.0f ns/op  speedup: %,.0fx%n",
+                size, scannedNs, indexedNs, scannedNs / indexedNs);
+    }
+
+    private static double indexed(LibraryManager manager, String[] keys, int count) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (manager.findBookByIsbn(keys[i]) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found, count);
+        return (double) elapsed / count;
+    }
+
+    private static double scanned(List<Book> books, String[] keys, int count) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String key = keys[i];
+            if (books.stream().filter(book -> book.getIsbn().equals(key)).findFirst().orElse(null) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found, count);
+        return (double) elapsed / count;
+    }
+
+    private static void check(long found, int expected) {
+        if (found != expected) {
+            throw new IllegalStateException("expected " + expected + " hits, got " + found);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Journaled borrow/return throughput with fsync per batch vs fsync per entry,
+// followed by a restart that must reproduce the live state. Long runs also
+// cross the compaction threshold, so snapshots are taken under load.
+// Usage: java -cp <classes> JournalBenchmark [seconds] [threads ...]
+public class JournalBenchmark {
+    private static final int TITLES = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] threadCounts = {1, 8, 32};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        for (LibraryJournal.SyncMode mode : LibraryJournal.SyncMode.values()) {
+            for (int threads : threadCounts) {
+                run(mode, threads, seconds);
+            }
+        }
+    }
+
+    private static void run(LibraryJournal.SyncMode mode, int threads, int seconds) throws Exception {
+        Path directory = Files.createTempDirectory("library");
+        try {
+            LibraryManager manager = new LibraryManager(directory, mode);
+            String[] isbns = new String[TITLES];
+            for (int i = 0; i < TITLES; i++) {
+                isbns[i] = IsbnLookupBenchmark.isbnFor(i);
+                manager.addBook(new Book(isbns[i], "Title " + i, "Author", "Fiction", 4));
+            }
+
+            long ops = drive(manager, isbns, threads, seconds);
+            System.out.printf("%-9s threads=%2d  %,10.0f ops/s%n", mode, threads, (double) ops / seconds);
+
+            List<Book> live = manager.getAllBooks();
+            int liveOpen = manager.getActiveBorrowRecords().size();
+            manager.close();
+
+            long start = System.nanoTime();
+            LibraryManager replayed = new LibraryManager(directory, mode);
+            long replayNs = System.nanoTime() - start;
+            verify(live, liveOpen, replayed);
+            System.out.printf("          replayed %,d records in %,.1f ms%n",
+                    replayed.getAllBorrowRecords().size(), replayNs / 1e6);
+            replayed.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static long drive(LibraryManager manager, String[] isbns, int threads, int seconds)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + 1_000_000_000L * seconds;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String borrower = "Desk " + t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String isbn = isbns[random.nextInt(isbns.length)];
+                    if (random.nextBoolean()) {
+                        manager.borrowBook(isbn, borrower, "desk@example.org");
+                    } else {
+                        manager.returnBook(isbn, borrower);
+                    }
+                    ops.increment();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum();
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void verify(List<Book> live, int liveOpen, LibraryManager replayed) {
+        if (replayed.getActiveBorrowRecords().size() != liveOpen) {
+            throw new IllegalStateException("open loans differ after replay");
+        }
+        for (Book book : live) {
+            Book copy = replayed.findBookByIsbn(book.getIsbn());
+            if (copy == null || copy.getAvailableCopies() != book.getAvailableCopies()) {
+                throw new IllegalStateException("copy counts differ after replay for " + book.getIsbn());
+            }
+        }
+    }
+}
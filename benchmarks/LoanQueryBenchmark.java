@@ -0,0 +1,71 @@
+import java.time.LocalDate;
+
+// Time to the first and second page of typical Records tab queries over a
+// long history: returned loans restored straight into the archive, spread
+// evenly over ten years, plus open loans from the last few weeks. Each
+// figure is the best of several runs; "first" includes resolving filters
+// and ranking the dictionary a string sort needs.
+// Usage: java -Xmx6g -cp <classes> LoanQueryBenchmark [records] [openLoans]
+public class LoanQueryBenchmark {
+    private static final int TITLES = 100_000;
+    private static final int BORROWERS = 200_000;
+    private static final int DAYS = 3_650;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int openLoans = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        LocalDate today = LocalDate.now();
+        int firstDay = (int) today.toEpochDay() - DAYS;
+
+        LibraryManager manager = new LibraryManager(false);
+        for (int i = 0; i < TITLES; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 5_000),
+                    "Category " + (i % 40), 1_000));
+        }
+        for (int i = 0; i < records; i++) {
+            int borrowed = firstDay + (int) ((long) i * DAYS / records);
+            manager.restoreReturnedLoan(IsbnLookupBenchmark.isbnFor(i % TITLES), "Title " + (i % TITLES),
+                    "Borrower " + (i % BORROWERS), "borrower" + (i % BORROWERS) + "@example.org",
+                    borrowed, borrowed + i % 21);
+        }
+        for (int i = 0; i < openLoans; i++) {
+            manager.recordBorrow(IsbnLookupBenchmark.isbnFor(i % TITLES), "Borrower " + (i % BORROWERS),
+                    "borrower" + (i % BORROWERS) + "@example.org", today.minusDays(i % 30));
+        }
+        System.out.printf("history=%,d records%n", manager.getAllBorrowRecords().size());
+
+        time(manager, "newest first", new LoanQuery().sortBy(LoanQuery.Column.BORROW_DATE, true));
+        time(manager, "oldest first", new LoanQuery());
+        time(manager, "one borrower, newest first", new LoanQuery().borrower("Borrower 4242")
+                .sortBy(LoanQuery.Column.BORROW_DATE, true));
+        time(manager, "one ISBN, by return date", new LoanQuery().isbn(IsbnLookupBenchmark.isbnFor(777))
+                .sortBy(LoanQuery.Column.RETURN_DATE, false));
+        time(manager, "returned last week", new LoanQuery()
+                .returnedBetween(today.minusDays(7), today).sortBy(LoanQuery.Column.RETURN_DATE, true));
+        time(manager, "borrowed in a month, by title", new LoanQuery()
+                .borrowedBetween(today.minusDays(400), today.minusDays(370)).sortBy(LoanQuery.Column.TITLE, false));
+        time(manager, "open loans, by due date", new LoanQuery().status(LoanQuery.Status.OPEN)
+                .sortBy(LoanQuery.Column.DUE_DATE, false));
+        time(manager, "everything, by borrower", new LoanQuery().sortBy(LoanQuery.Column.BORROWER, false));
+    }
+
+    private static void time(LibraryManager manager, String label, LoanQuery query) {
+        long first = Long.MAX_VALUE;
+        long second = Long.MAX_VALUE;
+        int rows = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            LoanQuery.Page page = manager.queryBorrowRecords(query);
+            first = Math.min(first, System.nanoTime() - start);
+            rows = page.getRecords().size();
+            if (page.getNext() != null) {
+                start = System.nanoTime();
+                manager.queryBorrowRecords(page.getNext());
+                second = Math.min(second, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("%-32s first page %9.3f ms   next page %9.3f ms   (%d rows)%n", label, first / 1e6,
+                second == Long.MAX_VALUE ? 0 : second / 1e6, rows);
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-memory borrow+return throughput with the metrics on; run it again with
+// -Dlibrary.metrics=false to compare against the instrumentation compiled
+// away. Prints the recorded latencies when they are on.
+// Usage: java [-Dlibrary.metrics=false] -cp <classes> MetricsOverheadBenchmark [seconds] [threads]
+public class MetricsOverheadBenchmark {
+    private static final int TITLES = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        LibraryManager manager = new LibraryManager();
+        String[] isbns = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            isbns[i] = IsbnLookupBenchmark.isbnFor(i);
+            manager.addBook(new Book(isbns[i], "Title " + i, "Author", "Fiction", 64));
+        }
+
+        System.out.printf("metrics=%s cores=%d threads=%d%n", LibraryMetrics.ENABLED,
+                Runtime.getRuntime().availableProcessors(), threads);
+        run(manager, isbns, threads, 2);
+        LibraryMetrics.Snapshot before = LibraryMetrics.snapshot();
+        for (int round = 0; round < 3; round++) {
+            long ops = run(manager, isbns, threads, seconds);
+            System.out.printf("round %d  %,12.0f borrow+return pairs/s%n", round, (double) ops / seconds);
+        }
+        if (LibraryMetrics.ENABLED) {
+            LibraryMetrics.Snapshot measured = LibraryMetrics.snapshot().since(before);
+            for (LibraryMetrics.Operation operation : new LibraryMetrics.Operation[] {
+                    LibraryMetrics.Operation.BORROW, LibraryMetrics.Operation.RETURN}) {
+                LatencyHistogram.Snapshot histogram = measured.get(operation);
+                System.out.printf("%-6s %,d ops  p50 %,d ns  p99 %,d ns  p99.9 %,d ns  max %,d ns%n",
+                        operation.getLabel(), histogram.getCount(), histogram.valueAtPercentile(50),
+                        histogram.valueAtPercentile(99), histogram.valueAtPercentile(99.9),
+                        histogram.getMaxNanos());
+            }
+        }
+    }
+
+    private static long run(LibraryManager manager, String[] isbns, int threads, int seconds)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String borrower = "Desk " + t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long deadline = System.nanoTime() + 1_000_000_000L * seconds;
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    String isbn = isbns[random.nextInt(isbns.length)];
+                    if (manager.borrowBook(isbn, borrower, "desk@example.org")) {
+                        manager.returnBook(isbn, borrower);
+                        done++;
+                    }
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum();
+    }
+}
@@ -0,0 +1,50 @@
+import java.time.LocalDate;
+
+// The Records tab's status column over a page of open loans, worked out the
+// way it used to be, with LocalDate.now() per row, and from LibraryClock's
+// cached epoch day. Each figure is the best of several rounds.
+// Usage: java -cp <classes> OverdueStatusBenchmark [loans] [rounds]
+public class OverdueStatusBenchmark {
+    public static void main(String[] args) {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        LibraryClock clock = LibraryClock.system();
+        int firstDay = clock.today() - 60;
+        BorrowRecord[] records = new BorrowRecord[loans];
+        for (int i = 0; i < loans; i++) {
+            records[i] = new BorrowRecord(IsbnLookupBenchmark.isbnFor(i % 10_000), "Title", "Borrower " + (i % 1_000),
+                    "borrower@example.org", firstDay + i % 60);
+        }
+
+        long perRow = Long.MAX_VALUE;
+        long cached = Long.MAX_VALUE;
+        int overdue = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            int count = 0;
+            for (BorrowRecord record : records) {
+                if (!record.isReturned() && LocalDate.now().isAfter(record.getDueDate())) {
+                    count++;
+                }
+            }
+            perRow = Math.min(perRow, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int counted = 0;
+            for (BorrowRecord record : records) {
+                if (record.isOverdue(clock.today())) {
+                    counted++;
+                }
+            }
+            cached = Math.min(cached, System.nanoTime() - start);
+            if (count != counted) {
+                throw new AssertionError(count + " != " + counted);
+            }
+            overdue = counted;
+        }
+        System.out.printf("%,d loans, %,d overdue%n", loans, overdue);
+        System.out.printf("LocalDate.now() per row   %8.2f ns/row%n", (double) perRow / loans);
+        System.out.printf("cached epoch day          %8.2f ns/row%n", (double) cached / loans);
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Inventory report over a large catalogue: the old StringBuilder and
+// String.format build against the streaming writer into a file (plain and
+// CSV) and into the paged UI spool. Reports wall time, bytes allocated by
+// the writing thread and the largest heap growth seen while writing.
+// Usage: java -Xmx4g -cp <classes> ReportBenchmark [books]
+public class ReportBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < size; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 5000),
+                    "Category " + (i % 40), 3));
+        }
+        Path file = Files.createTempFile("inventory", ".txt");
+        try {
+            for (int round = 0; round < 2; round++) {
+                boolean print = round == 1;
+                measure("String.format + StringBuilder", print, () -> formatted(manager).length());
+                measure("streaming plain -> file", print, () -> stream(manager, ChannelReportSink.toFile(file),
+                        ReportWriter.Format.PLAIN, file));
+                measure("streaming CSV -> file", print, () -> stream(manager, ChannelReportSink.toFile(file),
+                        ReportWriter.Format.CSV, file));
+                measure("streaming plain -> pages", print, () -> {
+                    PagedReport pages = PagedReport.create(500);
+                    try {
+                        try (ReportWriter out = new ReportWriter(pages, ReportWriter.Format.PLAIN)) {
+                            LibraryReports.INVENTORY.write(manager, out, (done, total) -> { });
+                        }
+                        return pages.pageCount();
+                    } finally {
+                        pages.delete();
+                    }
+                });
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Report {
+        long run() throws IOException;
+    }
+
+    private static long stream(LibraryManager manager, ChannelReportSink sink, ReportWriter.Format format, Path file)
+            throws IOException {
+        try (ReportWriter out = new ReportWriter(sink, format)) {
+            LibraryReports.INVENTORY.write(manager, out, (done, total) -> { });
+        }
+        return Files.size(file);
+    }
+
+    private static String formatted(LibraryManager manager) {
+        StringBuilder report = new StringBuilder();
+        List<Book> books = manager.getAllBooks();
+        report.append(String.format("Total Books: %d\n\n", books.size()));
+        for (Book book : books) {
+            report.append(String.format("ISBN: %s\n", book.getIsbn()));
+            report.append(String.format("Title: %s\n", book.getTitle()));
+            report.append(String.format("Author: %s\n", book.getAuthor()));
+            report.append(String.format("Category: %s\n", book.getCategory()));
+            report.append(String.format("Total Copies: %d\n", book.getTotalCopies()));
+            report.append(String.format("Available: %d\n", book.getAvailableCopies()));
+            report.append("----------------------------------------\n");
+        }
+        return report.toString();
+    }
+
+    private static void measure(String name, boolean print, Report report) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+        long[] peak = {baseline};
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long result = report.run();
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+        sampler.interrupt();
+
+        if (print) {
+            System.out.printf("%-30s %,7.0f ms  allocated %,6d MB  peak heap growth %,6d MB  (result %,d)%n",
+                    name, elapsed / 1e6, allocated >> 20, (peak[0] - baseline) >> 20, result);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// returnBook and open-loan lookups against a large returned-loan history.
+// Usage: java -Xmx4g -cp <classes> ReturnBenchmark [historyRecords]
+public class ReturnBenchmark {
+    private static final int TITLES = 10_000;
+    private static final int BORROWERS = 100_000;
+    private static final int OPEN_LOANS = 100_000;
+
+    public static void main(String[] args) {
+        int history = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < TITLES; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author", "Fiction", 100));
+        }
+
+        for (int i = 0; i < history; i++) {
+            String isbn = IsbnLookupBenchmark.isbnFor(i % TITLES);
+            String borrower = "Borrower " + (i % BORROWERS);
+            manager.borrowBook(isbn, borrower, "b@example.org");
+            manager.returnBook(isbn, borrower);
+        }
+        System.out.printf("history=%,d records%n", manager.getAllBorrowRecords().size());
+
+        String[] isbns = new String[OPEN_LOANS];
+        String[] patrons = new String[OPEN_LOANS];
+        for (int i = 0; i < OPEN_LOANS; i++) {
+            isbns[i] = IsbnLookupBenchmark.isbnFor((i * 7) % TITLES);
+            patrons[i] = "Patron " + i;
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < OPEN_LOANS; i++) {
+                manager.borrowBook(isbns[i], patrons[i], "p@example.org");
+            }
+            long held = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < OPEN_LOANS; i++) {
+                held += manager.getActiveLoansForBorrower(patrons[i]).size();
+                held += manager.getActiveLoansForIsbn(isbns[i]).size();
+            }
+            long lookupNs = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < OPEN_LOANS; i++) {
+                if (!manager.returnBook(isbns[i], patrons[i])) {
+                    throw new IllegalStateException("return failed for " + patrons[i]);
+                }
+            }
+            long returnNs = System.nanoTime() - start;
+            if (held != OPEN_LOANS + (long) OPEN_LOANS * OPEN_LOANS / TITLES) {
+                throw new IllegalStateException("unexpected open loan count " + held);
+            }
+            System.out.printf("round %d  returnBook: %,.0f ns/op  borrower+isbn lookup: %,.0f ns/op%n",
+                    round, (double) returnNs / OPEN_LOANS, (double) lookupNs / OPEN_LOANS);
+        }
+    }
+}
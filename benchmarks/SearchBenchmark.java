@@ -0,0 +1,62 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Query latency of LibraryManager.searchBooks against the old per-query
+// lowercase-and-contains scan. Results of both are compared for every query.
+// Usage: java -cp <classes> SearchBenchmark [books]
+public class SearchBenchmark {
+    private static final String[] QUERIES = {
+        "title 123456", "Author 42", "category 7", "979-0000123", "science", "le 99", "zz", "no such book"
+    };
+    private static final String[] CATEGORIES = {"Programming", "Science", "History", "Fiction", "Poetry"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < size; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 5000),
+                    CATEGORIES[i % CATEGORIES.length] + " " + (i % 40), 2));
+        }
+        // Exercise incremental maintenance before measuring.
+        for (int i = 0; i < size; i += 97) {
+            manager.removeBook(IsbnLookupBenchmark.isbnFor(i));
+        }
+        for (int i = 1; i < size; i += 101) {
+            manager.updateBook(IsbnLookupBenchmark.isbnFor(i), "Retitled " + i, "Author " + i, "Science", 3);
+        }
+        List<Book> all = manager.getAllBooks();
+
+        System.out.printf("books=%,d%n", all.size());
+        for (String query : QUERIES) {
+            for (int warmup = 0; warmup < 5; warmup++) {
+                manager.searchBooks(query);
+                scan(all, query);
+            }
+            long start = System.nanoTime();
+            List<Book> indexed = manager.searchBooks(query);
+            long indexedNs = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Book> scanned = scan(all, query);
+            long scannedNs = System.nanoTime() - start;
+            if (!indexed.equals(scanned)) {
+                throw new IllegalStateException("results differ for '" + query + "'");
+            }
+            System.out.printf("%-16s hits=%,9d  scan: %,9.3f ms  index: %,9.3f ms%n",
+                    "'" + query + "'", indexed.size(), scannedNs / 1e6, indexedNs / 1e6);
+        }
+    }
+
+    private static List<Book> scan(List<Book> books, String query) {
+        List<Book> results = new ArrayList<>();
+        String lowerQuery = query.toLowerCase();
+        for (Book book : books) {
+            if (book.getTitle().toLowerCase().contains(lowerQuery) ||
+                book.getAuthor().toLowerCase().contains(lowerQuery) ||
+                book.getIsbn().toLowerCase().contains(lowerQuery) ||
+                book.getCategory().toLowerCase().contains(lowerQuery)) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Borrow+return throughput of a ShardedLibrary as the shard count grows,
+// with a search across all shards every 64th operation. In "any" mode desks
+// pick titles from the whole catalogue. In "branch" mode desk t only serves
+// titles held by shard t % shards, as a branch desk would. --journal gives
+// each shard a journal in a temporary directory.
+// Usage: java -cp <classes> ShardScalingBenchmark [seconds] [threads] [shards ...] [--journal]
+public class ShardScalingBenchmark {
+    private static final int TITLES = 100_000;
+    private static final int SEARCH_EVERY = 64;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        boolean journaled = args.length > 0 && args[args.length - 1].equals("--journal");
+        int argCount = journaled ? args.length - 1 : args.length;
+        int seconds = argCount > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = argCount > 1 ? Integer.parseInt(args[1]) : 16;
+        int[] shardCounts = {1, 2, 4, 8, 16};
+        if (argCount > 2) {
+            shardCounts = new int[argCount - 2];
+            for (int i = 2; i < argCount; i++) {
+                shardCounts[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("cores=%d threads=%d titles=%,d%s%n", Runtime.getRuntime().availableProcessors(),
+                threads, TITLES, journaled ? " journaled" : "");
+        for (int shardCount : shardCounts) {
+            ShardedLibrary library = journaled
+                    ? ShardedLibrary.open(Files.createTempDirectory("shards"), shardCount,
+                            LibraryJournal.SyncMode.PER_BATCH)
+                    : new ShardedLibrary(shardCount);
+            List<Book> catalogue = new ArrayList<>(TITLES);
+            for (int i = 0; i < TITLES; i++) {
+                catalogue.add(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 500),
+                        "Fiction", 64));
+            }
+            library.addBooks(catalogue);
+
+            String[][] titlesByShard = titlesByShard(library);
+            run(library, titlesByShard, threads, 1, false);
+            long any = run(library, titlesByShard, threads, seconds, false);
+            long branch = run(library, titlesByShard, threads, seconds, true);
+            System.out.printf("shards=%2d  any %,12.0f ops/s   branch %,12.0f ops/s%n", shardCount,
+                    (double) any / seconds, (double) branch / seconds);
+            library.close();
+        }
+    }
+
+    private static String[][] titlesByShard(ShardedLibrary library) {
+        List<List<String>> byShard = new ArrayList<>();
+        for (int i = 0; i < library.getShardCount(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < TITLES; i++) {
+            String isbn = IsbnLookupBenchmark.isbnFor(i);
+            byShard.get(library.shardOf(isbn)).add(isbn);
+        }
+        String[][] titles = new String[byShard.size()][];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = byShard.get(i).toArray(new String[0]);
+        }
+        return titles;
+    }
+
+    // Operations completed: borrow+return pairs plus searches.
+    private static long run(ShardedLibrary library, String[][] titlesByShard, int threads, int seconds,
+                            boolean branchDesks) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + 1_000_000_000L * seconds;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String borrower = "Desk " + t;
+            int home = t % titlesByShard.length;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while ((done & 255) != 0 || System.nanoTime() < deadline) {
+                    if (done % SEARCH_EVERY == 0) {
+                        library.searchBooks("title " + random.nextInt(1_000, 10_000));
+                    } else {
+                        String[] titles = titlesByShard[branchDesks ? home : random.nextInt(titlesByShard.length)];
+                        String isbn = titles[random.nextInt(titles.length)];
+                        if (library.borrowBook(isbn, borrower, "desk@example.org")) {
+                            library.returnBook(isbn, borrower);
+                        }
+                    }
+                    done++;
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum();
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// What a Books or Records tab refresh costs: take getAllBooks() or
+// getAllBorrowRecords() and read the first screenful of rows. It runs while
+// a desk thread keeps borrowing, returning and adding books. Afterwards it
+// checks that a snapshot taken before all that traffic still reads exactly
+// as it did.
+// Usage: java -Xmx4g -cp <classes> SnapshotBenchmark [books] [historyRecords] [seconds]
+public class SnapshotBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+
+    public static void main(String[] args) throws InterruptedException {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int history = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < bookCount; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 5_000),
+                    "Category " + (i % 40), 5));
+        }
+        for (int i = 0; i < history; i++) {
+            String isbn = IsbnLookupBenchmark.isbnFor(i % bookCount);
+            String borrower = "Member " + (i % 100_000);
+            manager.borrowBook(isbn, borrower, "member@example.org");
+            if (i % 20 != 0) {
+                manager.returnBook(isbn, borrower);
+            }
+        }
+        System.out.printf("books=%,d history=%,d%n", manager.getBookCount(), manager.getAllBorrowRecords().size());
+
+        List<Book> booksBefore = manager.getAllBooks();
+        List<BorrowRecord> recordsBefore = manager.getAllBorrowRecords();
+        String booksFingerprint = fingerprintBooks(booksBefore);
+        String recordsFingerprint = fingerprintRecords(recordsBefore);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong deskOps = new AtomicLong();
+        Thread desk = new Thread(() -> {
+            int i = 0;
+            while (running.get()) {
+                String isbn = IsbnLookupBenchmark.isbnFor(i % bookCount);
+                manager.borrowBook(isbn, "Desk", "desk@example.org");
+                manager.returnBook(isbn, "Desk");
+                if (i % 100 == 0) {
+                    manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(bookCount + i), "New " + i, "Author",
+                            "Category 0", 1));
+                    manager.removeBook(IsbnLookupBenchmark.isbnFor(bookCount + i - 100));
+                }
+                i++;
+                deskOps.addAndGet(2);
+            }
+        }, "desk");
+        desk.start();
+
+        for (int round = 0; round < seconds; round++) {
+            long booksNs = 0;
+            long recordsNs = 0;
+            int refreshes = 0;
+            long deadline = System.nanoTime() + 1_000_000_000L;
+            long checksum = 0;
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                checksum += render(manager.getAllBooks());
+                booksNs += System.nanoTime() - start;
+                start = System.nanoTime();
+                checksum += render(manager.getAllBorrowRecords());
+                recordsNs += System.nanoTime() - start;
+                refreshes++;
+            }
+            System.out.printf("round %d  books refresh %,10.0f ns  records refresh %,10.0f ns  (%,d refreshes, "
+                            + "checksum %d)%n", round, (double) booksNs / refreshes, (double) recordsNs / refreshes,
+                    refreshes, checksum % 10);
+        }
+        running.set(false);
+        desk.join();
+
+        boolean stable = booksFingerprint.equals(fingerprintBooks(booksBefore))
+                && recordsFingerprint.equals(fingerprintRecords(recordsBefore));
+        System.out.printf("desk ops during refreshes: %,d; earlier snapshots unchanged: %s%n", deskOps.get(), stable);
+        if (!stable) {
+            System.exit(1);
+        }
+    }
+
+    private static long render(List<?> rows) {
+        long sum = rows.size();
+        for (int row = 0; row < Math.min(VISIBLE_ROWS, rows.size()); row++) {
+            sum += rows.get(row).hashCode();
+        }
+        return sum;
+    }
+
+    // Membership and order only; copy counts and return dates are live.
+    private static String fingerprintBooks(List<Book> books) {
+        long hash = books.size();
+        for (Book book : books) {
+            hash = hash * 31 + book.getIsbn().hashCode();
+        }
+        return Long.toString(hash);
+    }
+
+    private static String fingerprintRecords(List<BorrowRecord> records) {
+        long hash = records.size();
+        for (BorrowRecord record : records) {
+            hash = hash * 31 + record.getIsbn().hashCode() * 17 + record.getBorrowerName().hashCode()
+                    + record.getBorrowDate().hashCode();
+        }
+        return Long.toString(hash);
+    }
+}
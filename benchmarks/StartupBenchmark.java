@@ -0,0 +1,88 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+// Time to become ready from a snapshot of a large library, with and without
+// a journal tail to replay on top of it.
+// Usage: java -Xmx4g -cp <classes> StartupBenchmark [books] [records] [tailOps]
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int records = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+        int tail = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        Path directory = Files.createTempDirectory("library");
+        try {
+            List<Book> catalogue = new ArrayList<>(books);
+            for (int i = 0; i < books; i++) {
+                catalogue.add(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 50_000),
+                        "Category " + (i % 40), 5));
+            }
+            long start = System.nanoTime();
+            LibrarySnapshot.write(directory, 1, catalogue, history(catalogue, records));
+            System.out.printf("wrote snapshot: %,d books, %,d records, %,d bytes in %,.0f ms%n", books, records,
+                    Files.size(directory.resolve("snapshot-0000000001.bin")), (System.nanoTime() - start) / 1e6);
+            catalogue = null;
+
+            LibraryManager manager = timeStartup(directory, "snapshot only");
+            for (int i = 0; i < tail; i++) {
+                String isbn = IsbnLookupBenchmark.isbnFor(i % books);
+                manager.borrowBook(isbn, "Tail " + i, "tail@example.org");
+            }
+            manager.close();
+            manager = null;
+
+            timeStartup(directory, "snapshot + " + tail + " journal entries").close();
+        } finally {
+            JournalBenchmark.deleteDirectory(directory);
+        }
+    }
+
+    private static LibraryManager timeStartup(Path directory, String label) throws Exception {
+        System.gc();
+        long start = System.nanoTime();
+        LibraryManager manager = new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH);
+        System.out.printf("ready (%s): %,.0f ms%n", label, (System.nanoTime() - start) / 1e6);
+        return manager;
+    }
+
+    // Returned loans generated on the fly so the writer never holds them all.
+    private static Collection<BorrowRecord> history(List<Book> catalogue, int size) {
+        LocalDate start = LocalDate.now().minusYears(5);
+        return new AbstractCollection<BorrowRecord>() {
+            @Override
+            public Iterator<BorrowRecord> iterator() {
+                return new Iterator<BorrowRecord>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public BorrowRecord next() {
+                        Book book = catalogue.get((int) ((next * 2654435761L) % catalogue.size()));
+                        LocalDate borrowed = start.plusDays(next / 12_000);
+                        BorrowRecord record = new BorrowRecord(book.getIsbn(), book.getTitle(),
+                                "Borrower " + (next % 200_000), "borrower" + (next % 200_000) + "@example.org",
+                                borrowed);
+                        record.markReturned(borrowed.plusDays(3 + next % 20));
+                        next++;
+                        return record;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Replays an OperationTrace against a LibraryManager across several threads
+// and reports throughput and latency per kind of operation.
+//  - speed=N replays at N times the recorded pace; speed=0 as fast as
+//    possible. Latency is measured from when an event was due, not from
+//    when a busy thread got round to it, so a stall shows up in the tail.
+//  - Events on the same ISBN go to the same thread in trace order, so every
+//    borrow and return meets the copies and loans it met when recorded.
+//  - Afterwards the same borrows and returns are applied one by one to a
+//    second library; copy counts, open loans and stats must match exactly.
+// The library is built from the trace's "# synthetic" header (see
+// WorkloadGenerator), or copied from data=<dir>. For a trace recorded with
+// -Dlibrary.trace, pass a copy of the data directory taken before recording.
+// Usage: java -cp <classes> TraceReplay <trace> [speed=1] [threads=8] [data=<dir>]
+public class TraceReplay {
+    private static final OperationTrace.Kind[] KINDS = OperationTrace.Kind.values();
+    // Applied to a scratch library first so the JIT has compiled the hot
+    // paths before the clock starts.
+    private static final int WARMUP_EVENTS = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: java TraceReplay <trace> [speed=1] [threads=8] [data=<dir>]");
+            System.exit(2);
+        }
+        Path trace = Paths.get(args[0]);
+        Map<String, String> options = WorkloadGenerator.options(args, 1);
+        double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+        int threads = WorkloadGenerator.intOption(options, "threads", 8);
+        Path data = options.containsKey("data") ? Paths.get(options.get("data")) : null;
+
+        List<OperationTrace.Event> events = OperationTrace.read(trace);
+        Map<String, String> header = header(trace);
+        LibraryManager scratch = open(data, header);
+        for (OperationTrace.Event event : events.subList(0, Math.min(WARMUP_EVENTS, events.size()))) {
+            apply(scratch, event);
+        }
+        scratch.close();
+        LibraryManager manager = open(data, header);
+        LibraryManager reference = open(data, header);
+
+        List<List<OperationTrace.Event>> lanes = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            lanes.add(new ArrayList<>());
+        }
+        int searches = 0;
+        for (OperationTrace.Event event : events) {
+            int lane = event.getKind() == OperationTrace.Kind.SEARCH
+                    ? searches++ % threads
+                    : Math.floorMod(Isbn.normalize(event.getSubject()).hashCode(), threads);
+            lanes.get(lane).add(event);
+        }
+
+        Map<OperationTrace.Kind, LatencyHistogram> latencies = new EnumMap<>(OperationTrace.Kind.class);
+        for (OperationTrace.Kind kind : KINDS) {
+            latencies.put(kind, new LatencyHistogram());
+        }
+        AtomicLong refused = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] startNanos = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            List<OperationTrace.Event> lane = lanes.get(t);
+            workers[t] = new Thread(() -> {
+                ready.countDown();
+                await(start);
+                long origin = startNanos[0];
+                for (OperationTrace.Event event : lane) {
+                    long due = speed > 0 ? origin + (long) (event.getNanos() / speed) : System.nanoTime();
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (!apply(manager, event)) {
+                        refused.incrementAndGet();
+                    }
+                    latencies.get(event.getKind()).record(System.nanoTime() - due);
+                }
+            }, "replay-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        startNanos[0] = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - startNanos[0];
+
+        long traced = events.isEmpty() ? 0 : events.get(events.size() - 1).getNanos();
+        System.out.printf("%,d events, %d threads, speed %s: %.2f s (trace %.2f s), %,.0f ops/sec, "
+                        + "%,d borrows/returns refused%n", events.size(), threads,
+                speed > 0 ? speed + "x" : "unthrottled", elapsed / 1e9, traced / 1e9,
+                events.size() / (elapsed / 1e9), refused.get());
+        for (OperationTrace.Kind kind : KINDS) {
+            LatencyHistogram.Snapshot snapshot = latencies.get(kind).snapshot();
+            System.out.printf("  %-6s %,9d  p50 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us%n",
+                    kind.name().toLowerCase(), snapshot.getCount(), snapshot.valueAtPercentile(50) / 1e3,
+                    snapshot.valueAtPercentile(99) / 1e3, snapshot.valueAtPercentile(99.9) / 1e3,
+                    snapshot.getMaxNanos() / 1e3);
+        }
+
+        long expectedRefused = 0;
+        for (OperationTrace.Event event : events) {
+            if (!apply(reference, event)) {
+                expectedRefused++;
+            }
+        }
+        manager.checkOverdue();
+        reference.checkOverdue();
+        List<String> problems = compare(manager, reference);
+        if (refused.get() != expectedRefused) {
+            problems.add(refused.get() + " borrows/returns refused, " + expectedRefused + " in sequential order");
+        }
+        manager.close();
+        reference.close();
+        if (!problems.isEmpty()) {
+            problems.forEach(problem -> System.err.println("FAILED: " + problem));
+            System.exit(1);
+        }
+        LibraryStats stats = manager.getStats();
+        System.out.printf("consistent: %,d titles, %,d of %,d copies available, %,d open loans (%,d overdue)%n",
+                stats.getTitles(), stats.getAvailableCopies(), stats.getTotalCopies(), stats.getActiveLoans(),
+                stats.getOverdueLoans());
+    }
+
+    // False when a borrow or return was refused.
+    private static boolean apply(LibraryManager manager, OperationTrace.Event event) {
+        switch (event.getKind()) {
+            case SEARCH:
+                manager.searchBooks(event.getSubject());
+                return true;
+            case LOOKUP:
+                manager.findBookByIsbn(event.getSubject());
+                return true;
+            case BORROW:
+                return manager.recordBorrow(event.getSubject(), event.getBorrowerName(), event.getBorrowerEmail(),
+                        event.getDate()) != null;
+            default:
+                return manager.recordReturn(event.getSubject(), event.getBorrowerName(), event.getDate()) != null;
+        }
+    }
+
+    private static List<String> compare(LibraryManager manager, LibraryManager reference) {
+        List<String> problems = new ArrayList<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (Book book : reference.getAllBooks()) {
+            expected.put(book.getIsbn(), book.getAvailableCopies());
+        }
+        int available = 0;
+        for (Book book : manager.getAllBooks()) {
+            available += book.getAvailableCopies();
+            Integer copies = expected.get(book.getIsbn());
+            if (copies == null || copies != book.getAvailableCopies()) {
+                problems.add(book.getIsbn() + ": " + book.getAvailableCopies() + " available, " + copies
+                        + " in sequential order");
+            }
+        }
+        if (!openLoans(manager).equals(openLoans(reference))) {
+            problems.add("open loans differ from sequential order");
+        }
+        LibraryStats stats = manager.getStats();
+        if (stats.getAvailableCopies() != available) {
+            problems.add("stats available copies " + stats.getAvailableCopies() + " != " + available);
+        }
+        if (stats.getActiveLoans() != manager.getActiveBorrowRecords().size()) {
+            problems.add("stats active loans " + stats.getActiveLoans() + " != "
+                    + manager.getActiveBorrowRecords().size());
+        }
+        if (stats.getOverdueLoans() != manager.getOverdueRecords().size()) {
+            problems.add("stats overdue loans " + stats.getOverdueLoans() + " != "
+                    + manager.getOverdueRecords().size());
+        }
+        if (stats.getLoansRecorded() != reference.getStats().getLoansRecorded()) {
+            problems.add("stats loans recorded " + stats.getLoansRecorded() + " != "
+                    + reference.getStats().getLoansRecorded());
+        }
+        return problems;
+    }
+
+    // Open loans as counts of isbn/borrower/borrow date.
+    private static Map<String, Integer> openLoans(LibraryManager manager) {
+        Map<String, Integer> loans = new HashMap<>();
+        for (BorrowRecord record : manager.getActiveBorrowRecords()) {
+            loans.merge(record.getIsbn() + "\t" + record.getBorrowerName() + "\t" + record.getBorrowDate(), 1,
+                    Integer::sum);
+        }
+        return loans;
+    }
+
+    private static LibraryManager open(Path data, Map<String, String> header) throws IOException {
+        if (data != null) {
+            Path copy = Files.createTempDirectory("trace-replay");
+            try (Stream<Path> files = Files.walk(data)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Path target = copy.resolve(data.relativize(file).toString());
+                    if (Files.isDirectory(file)) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.copy(file, target);
+                    }
+                }
+            }
+            return new LibraryManager(copy, LibraryJournal.SyncMode.PER_BATCH);
+        }
+        int titles = WorkloadGenerator.intOption(header, "titles", 10_000);
+        int copies = WorkloadGenerator.intOption(header, "copies", 3);
+        LibraryManager manager = new LibraryManager();
+        List<Book> catalogue = new ArrayList<>(titles);
+        for (int i = 0; i < titles; i++) {
+            catalogue.add(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 500),
+                    "Category " + (i % 40), copies));
+        }
+        manager.addBooks(catalogue);
+        return manager;
+    }
+
+    // name=value pairs from a leading "# synthetic ..." line, if any.
+    private static Map<String, String> header(Path trace) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (line == null || !line.startsWith("# synthetic ")) {
+                return new HashMap<>();
+            }
+            String[] fields = line.substring("# synthetic ".length()).trim().split(" +");
+            return WorkloadGenerator.options(fields, 0);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+// Per-keystroke latency of search-as-you-type: every prefix of a query is
+// searched in turn, as the debounced search field would, with a cold cache,
+// a warm cache, and again right after a catalogue edit.
+// Usage: java -Xmx4g -cp <classes> TypeaheadBenchmark [books]
+public class TypeaheadBenchmark {
+    private static final String[] TYPED = {"title 123456", "author 4217", "science 3", "979-00004"};
+    private static final String[] CATEGORIES = {"Programming", "Science", "History", "Fiction", "Poetry"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < size; i++) {
+            manager.addBook(new Book(IsbnLookupBenchmark.isbnFor(i), "Title " + i, "Author " + (i % 5000),
+                    CATEGORIES[i % CATEGORIES.length] + " " + (i % 40), 2));
+        }
+        IncrementalSearch search = new IncrementalSearch(manager);
+        for (int warmup = 0; warmup < 3; warmup++) {
+            type(new IncrementalSearch(manager), false);
+        }
+
+        System.out.printf("books=%,d%n", size);
+        type(search, true);
+        System.out.println("-- same keystrokes, warm cache");
+        type(search, true);
+        manager.updateBook(IsbnLookupBenchmark.isbnFor(7), "Edited", "Someone", "Science", 2);
+        System.out.println("-- after a catalogue edit");
+        type(search, true);
+    }
+
+    private static void type(IncrementalSearch search, boolean print) {
+        for (String query : TYPED) {
+            long worst = 0;
+            long total = 0;
+            int hits = 0;
+            for (int end = 1; end <= query.length(); end++) {
+                long start = System.nanoTime();
+                hits = search.search(query.substring(0, end)).size();
+                long elapsed = System.nanoTime() - start;
+                worst = Math.max(worst, elapsed);
+                total += elapsed;
+            }
+            if (print) {
+                System.out.printf("%-16s final hits=%,8d  mean %,7.2f ms/keystroke  worst %,7.2f ms%n",
+                        "'" + query + "'", hits, total / 1e6 / query.length(), worst / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Writes a synthetic OperationTrace for TraceReplay: `days` simulated days,
+// each squeezed into dayMillis of trace time and ending today.
+//  - Borrows pick titles from a Zipf distribution (exponent zipf) over a
+//    shuffled catalogue, so a few titles are in heavy demand. Asking for a
+//    title with no copy on the shelf is traced too, as a refused borrow.
+//  - Returns mostly fall within the 14-day loan, skewed towards the due
+//    date. A fraction `overdue` come back 1-30 days late. Loans whose return
+//    falls after the last day stay open.
+//  - Searches are title prefixes and author names, drawn from the same
+//    popularity. Lookups are ISBNs of popular titles.
+// The first line records the catalogue the trace expects (isbnFor(i),
+// "Title i", `copies` each), which TraceReplay builds unless told otherwise.
+// Usage: java -cp <classes> WorkloadGenerator <trace> [name=value ...]
+//   titles=10000 copies=3 members=5000 days=60 dayMillis=100 borrowsPerDay=500
+//   searchesPerDay=800 lookupsPerDay=400 zipf=1.0 overdue=0.1 seed=42
+public class WorkloadGenerator {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java WorkloadGenerator <trace> [name=value ...]");
+            System.exit(2);
+        }
+        Map<String, String> options = options(args, 1);
+        int titles = intOption(options, "titles", 10_000);
+        int copies = intOption(options, "copies", 3);
+        int members = intOption(options, "members", 5_000);
+        int days = intOption(options, "days", 60);
+        long dayNanos = intOption(options, "dayMillis", 100) * 1_000_000L;
+        int borrowsPerDay = intOption(options, "borrowsPerDay", 500);
+        int searchesPerDay = intOption(options, "searchesPerDay", 800);
+        int lookupsPerDay = intOption(options, "lookupsPerDay", 400);
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        double overdue = Double.parseDouble(options.getOrDefault("overdue", "0.1"));
+        Random random = new Random(intOption(options, "seed", 42));
+
+        Zipf popularity = new Zipf(titles, zipf, random);
+        long firstDay = LocalDate.now().toEpochDay() - days + 1;
+        List<OperationTrace.Event> events = new ArrayList<>();
+        int openAtEnd = 0;
+        int lateReturns = 0;
+        int refused = 0;
+        int[] onShelf = new int[titles];
+        Arrays.fill(onShelf, copies);
+        PriorityQueue<long[]> onLoan = new PriorityQueue<>(Comparator.comparingLong((long[] loan) -> loan[0]));
+        for (int day = 0; day < days; day++) {
+            long[] borrowTimes = new long[borrowsPerDay];
+            for (int i = 0; i < borrowsPerDay; i++) {
+                borrowTimes[i] = day * dayNanos + (long) (random.nextDouble() * dayNanos);
+            }
+            Arrays.sort(borrowTimes);
+            for (long at : borrowTimes) {
+                while (!onLoan.isEmpty() && onLoan.peek()[0] <= at) {
+                    onShelf[(int) onLoan.poll()[1]]++;
+                }
+                int title = popularity.next();
+                String isbn = IsbnLookupBenchmark.isbnFor(title);
+                int member = random.nextInt(members);
+                String name = "Member " + member;
+                events.add(new OperationTrace.Event(at, OperationTrace.Kind.BORROW, (int) (firstDay + day), isbn,
+                        name, "member" + member + "@example.org"));
+                if (onShelf[title] == 0) {
+                    refused++;
+                    continue;
+                }
+                onShelf[title]--;
+
+                boolean late = random.nextDouble() < overdue;
+                int loanDays = late
+                        ? BorrowRecord.LOAN_DAYS + 1 + random.nextInt(30)
+                        : 1 + (int) ((BorrowRecord.LOAN_DAYS - 1) * Math.sqrt(random.nextDouble()));
+                int returnDay = day + loanDays;
+                if (returnDay >= days) {
+                    openAtEnd++;
+                    onLoan.add(new long[] {Long.MAX_VALUE, title});
+                    continue;
+                }
+                lateReturns += late ? 1 : 0;
+                long returnAt = returnDay * dayNanos + (long) (random.nextDouble() * dayNanos);
+                onLoan.add(new long[] {returnAt, title});
+                events.add(new OperationTrace.Event(returnAt, OperationTrace.Kind.RETURN,
+                        (int) (firstDay + returnDay), isbn, name, null));
+            }
+            for (int i = 0; i < searchesPerDay; i++) {
+                long at = day * dayNanos + (long) (random.nextDouble() * dayNanos);
+                int title = popularity.next();
+                String query = random.nextInt(4) == 0
+                        ? "author " + (title % 500)
+                        : prefix("title " + title, 7 + random.nextInt(4));
+                events.add(new OperationTrace.Event(at, OperationTrace.Kind.SEARCH, (int) (firstDay + day), query,
+                        null, null));
+            }
+            for (int i = 0; i < lookupsPerDay; i++) {
+                long at = day * dayNanos + (long) (random.nextDouble() * dayNanos);
+                events.add(new OperationTrace.Event(at, OperationTrace.Kind.LOOKUP, (int) (firstDay + day),
+                        IsbnLookupBenchmark.isbnFor(popularity.next()), null, null));
+            }
+        }
+        events.sort(Comparator.comparingLong(OperationTrace.Event::getNanos));
+
+        Path trace = Paths.get(args[0]);
+        OperationTrace.write(trace, events);
+        String header = "# synthetic titles=" + titles + " copies=" + copies + "\n";
+        Files.writeString(trace, header + Files.readString(trace));
+        System.out.printf("%,d events over %d days (%.1f s of trace): %,d borrows (%,d refused, "
+                        + "no copy on the shelf), %,d returned late, %,d still open%n", events.size(), days,
+                days * dayNanos / 1e9, (long) borrowsPerDay * days, refused, lateReturns, openAtEnd);
+    }
+
+    private static String prefix(String text, int length) {
+        return text.substring(0, Math.min(length, text.length()));
+    }
+
+    static Map<String, String> options(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("expected name=value but found " + args[i]);
+            }
+            options.put(args[i].substring(0, equals), args[i].substring(equals + 1));
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    // Ranks drawn with probability proportional to 1 / rank^exponent, mapped
+    // onto a shuffled catalogue.
+    private static final class Zipf {
+        private final double[] cumulative;
+        private final int[] titleAtRank;
+        private final Random random;
+
+        Zipf(int titles, double exponent, Random random) {
+            this.random = random;
+            cumulative = new double[titles];
+            double total = 0;
+            for (int rank = 0; rank < titles; rank++) {
+                total += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < titles; rank++) {
+                cumulative[rank] /= total;
+            }
+            titleAtRank = new int[titles];
+            for (int i = 0; i < titles; i++) {
+                titleAtRank[i] = i;
+            }
+            for (int i = titles - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = titleAtRank[i];
+                titleAtRank[i] = titleAtRank[j];
+                titleAtRank[j] = swap;
+            }
+        }
+
+        int next() {
+            double u = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return titleAtRank[low];
+        }
+    }
+}
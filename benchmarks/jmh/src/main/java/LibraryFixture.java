@@ -0,0 +1,106 @@
+import library.jmh.LibraryOperations;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// The default-package side of library.jmh.LibraryOperations; see there.
+public class LibraryFixture implements LibraryOperations {
+    private static final int COPIES = 5;
+    private static final int VISIBLE_ROWS = 40;
+
+    private final LibraryManager manager = new LibraryManager();
+    private final int books;
+    private final String[] isbns;
+    private final List<String> added = new ArrayList<>();
+    private int nextAdded;
+
+    public LibraryFixture(int books) {
+        this.books = books;
+        isbns = new String[books];
+        List<Book> catalogue = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            isbns[i] = isbnFor(i);
+            catalogue.add(new Book(isbns[i], "Title " + i, "Author " + (i % 5_000), "Category " + (i % 40),
+                    COPIES));
+        }
+        manager.addBooks(catalogue);
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < books; i += 10) {
+            LocalDate borrowed = today.minusDays(i % 20 < 10 ? 1 : BorrowRecord.LOAN_DAYS + 10);
+            manager.recordBorrow(isbns[i], "Member " + (i % 10_000), "member@example.org", borrowed);
+        }
+        manager.checkOverdue();
+    }
+
+    // Same scheme as the stand-alone benchmarks' IsbnLookupBenchmark.isbnFor.
+    private static String isbnFor(int i) {
+        return String.format("979-%09d", i);
+    }
+
+    @Override
+    public String isbn(int i) {
+        return isbns[Math.floorMod(i, books)];
+    }
+
+    @Override
+    public String query(int i) {
+        // "title 123" matches Title 123, Title 1230-1239, Title 12300-12399...
+        return "title " + (Math.floorMod(i, 900) + 100);
+    }
+
+    @Override
+    public boolean addBook() {
+        String isbn = isbnFor(books + nextAdded++);
+        added.add(isbn);
+        return manager.addBook(new Book(isbn, "Added " + nextAdded, "Author", "Category 0", COPIES));
+    }
+
+    @Override
+    public void removeAdded() {
+        for (String isbn : added) {
+            manager.removeBook(isbn);
+        }
+        added.clear();
+    }
+
+    @Override
+    public Object findBookByIsbn(String isbn) {
+        return manager.findBookByIsbn(isbn);
+    }
+
+    @Override
+    public Object searchBooks(String query) {
+        return manager.searchBooks(query);
+    }
+
+    @Override
+    public boolean borrowBook(String isbn, String borrower) {
+        return manager.borrowBook(isbn, borrower, "member@example.org");
+    }
+
+    @Override
+    public boolean returnBook(String isbn, String borrower) {
+        return manager.returnBook(isbn, borrower);
+    }
+
+    @Override
+    public Object getOverdueRecords() {
+        return manager.getOverdueRecords();
+    }
+
+    @Override
+    public Object refreshBooksTable() {
+        BooksTableModel model = new BooksTableModel();
+        model.setBooks(manager.getAllBooks());
+        int rows = Math.min(VISIBLE_ROWS, model.getRowCount());
+        Object last = null;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                last = model.getValueAt(row, column);
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,57 @@
+package library.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Read paths, which leave the catalogue as they found it and so can run in
+// steady state.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class CatalogueBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int books;
+
+    private LibraryOperations library;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryOperations.create(books);
+    }
+
+    @Benchmark
+    public Object findBookByIsbn() {
+        return library.findBookByIsbn(library.isbn(next++ * 7919));
+    }
+
+    @Benchmark
+    public Object searchBooks() {
+        return library.searchBooks(library.query(next++));
+    }
+
+    @Benchmark
+    public Object getOverdueRecords() {
+        return library.getOverdueRecords();
+    }
+
+    @Benchmark
+    public Object refreshBooksTable() {
+        return library.refreshBooksTable();
+    }
+}
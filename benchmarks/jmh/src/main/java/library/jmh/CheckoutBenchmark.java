@@ -0,0 +1,122 @@
+package library.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Paths that change the catalogue or the loans. Each cannot repeat forever
+// (copies run out, the catalogue grows), so every iteration is a batch of
+// BATCH calls and untimed setup/teardown restores the state around it.
+// Scores are milliseconds per batch of BATCH calls.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 40, batchSize = CheckoutBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = CheckoutBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CheckoutBenchmark {
+    // Each title is borrowed at most once per batch, even at 1,000 titles.
+    static final int BATCH = 1000;
+    private static final String BORROWER = "Benchmark Desk";
+
+    // One state per benchmark, each carrying its own fixture: JMH does not
+    // share a state that is passed to another state's helper methods with
+    // the benchmark method, so splitting them would build the catalogue
+    // several times and borrow from a different copy than it returns to.
+    @State(Scope.Thread)
+    public abstract static class Library {
+        @Param({"1000", "10000", "100000", "1000000"})
+        int books;
+
+        LibraryOperations operations;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            operations = LibraryOperations.create(books);
+        }
+
+        String isbn(int i) {
+            return operations.isbn(i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Additions extends Library {
+        @TearDown(Level.Iteration)
+        public void removeAdded() {
+            operations.removeAdded();
+        }
+    }
+
+    // Borrows title first, first + 1, ... and hands them back afterwards.
+    @State(Scope.Thread)
+    public static class Borrows extends Library {
+        int first;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            first = next;
+        }
+
+        @TearDown(Level.Iteration)
+        public void returnAll() {
+            for (int i = first; i < next; i++) {
+                operations.returnBook(isbn(i), BORROWER);
+            }
+        }
+    }
+
+    // Opens BATCH loans before each iteration for it to return, and closes
+    // any the iteration left open (a batch size given on the command line
+    // may be smaller than BATCH).
+    @State(Scope.Thread)
+    public static class Loans extends Library {
+        int first;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void borrowBatch() {
+            first += BATCH;
+            next = first;
+            for (int i = first; i < first + BATCH; i++) {
+                if (!operations.borrowBook(isbn(i), BORROWER)) {
+                    throw new IllegalStateException("could not borrow " + isbn(i));
+                }
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void returnRest() {
+            for (int i = next; i < first + BATCH; i++) {
+                operations.returnBook(isbn(i), BORROWER);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addBook(Additions additions) {
+        return additions.operations.addBook();
+    }
+
+    @Benchmark
+    public boolean borrowBook(Borrows borrows) {
+        return borrows.operations.borrowBook(borrows.isbn(borrows.next++), BORROWER);
+    }
+
+    @Benchmark
+    public boolean returnBook(Loans loans) {
+        return loans.operations.returnBook(loans.isbn(loans.next++), BORROWER);
+    }
+}
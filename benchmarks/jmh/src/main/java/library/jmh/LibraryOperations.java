@@ -0,0 +1,45 @@
+package library.jmh;
+
+// The library classes live in the default package, which JMH refuses for
+// benchmark classes and which named packages cannot refer to. Benchmarks
+// therefore drive a LibraryFixture (default package) through this
+// interface; the fixture is looked up reflectively once per trial, and
+// every measured call is an ordinary monomorphic interface call.
+public interface LibraryOperations {
+    // A catalogue of `books` titles with 5 copies each, plus open loans on
+    // a tenth of them, half of those overdue.
+    static LibraryOperations create(int books) {
+        try {
+            return (LibraryOperations) Class.forName("LibraryFixture")
+                    .getConstructor(int.class)
+                    .newInstance(books);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("LibraryFixture is not on the classpath", e);
+        }
+    }
+
+    // ISBN of the i-th catalogued title, for any i (wraps around).
+    String isbn(int i);
+
+    // A search term matching roughly one title in a thousand.
+    String query(int i);
+
+    // Adds a title that is not yet catalogued; removeAdded() takes them out.
+    boolean addBook();
+
+    void removeAdded();
+
+    Object findBookByIsbn(String isbn);
+
+    Object searchBooks(String query);
+
+    boolean borrowBook(String isbn, String borrower);
+
+    boolean returnBook(String isbn, String borrower);
+
+    Object getOverdueRecords();
+
+    // What the Books tab does on refresh: fetch the catalogue into the table
+    // model, then render the first screenful of cells.
+    Object refreshBooksTable();
+}
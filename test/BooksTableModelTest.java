@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTable;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BooksTableModelTest {
+    private final List<String> events = new ArrayList<>();
+
+    @Test
+    void appendsAddedBooksAndSkipsOnesAlreadyListed() {
+        List<Book> books = books(3);
+        BooksTableModel model = model(books.subList(0, 2));
+
+        model.booksAdded(List.of(books.get(1), books.get(2)));
+
+        assertEquals(List.of("insert 2-2"), events);
+        assertEquals(3, model.getRowCount());
+        assertSame(books.get(2), model.getBookAt(2));
+        assertEquals(2, model.rowOf(books.get(2)));
+    }
+
+    @Test
+    void dropsRemovedRowsAndKeepsTheSelectedBookSelected() {
+        List<Book> books = books(5);
+        BooksTableModel model = model(books);
+        JTable table = new JTable(model);
+        table.setRowSelectionInterval(3, 3);
+
+        model.booksRemoved(List.of(books.get(0), books.get(4), books.get(1)));
+
+        assertEquals(List.of("delete 4-4", "delete 1-1", "delete 0-0"), events);
+        assertEquals(List.of(books.get(2), books.get(3)), rows(model));
+        assertEquals(1, table.getSelectedRow());
+        assertSame(books.get(3), model.getBookAt(table.getSelectedRow()));
+        assertEquals(1, model.rowOf(books.get(3)));
+        assertEquals(-1, model.rowOf(books.get(0)));
+    }
+
+    @Test
+    void repaintsOnlyTheRowsOfChangedBooks() {
+        List<Book> books = books(4);
+        BooksTableModel model = model(books.subList(0, 3));
+
+        model.booksUpdated(List.of(books.get(2), books.get(3), books.get(0)));
+
+        assertEquals(List.of("update 2-2", "update 0-0"), events);
+    }
+
+    @Test
+    void doesNotMatchAnotherBookWithTheSameIsbn() {
+        List<Book> books = books(2);
+        BooksTableModel model = model(books);
+        Book readded = new Book(books.get(1).getIsbn(), "Second edition", "Author", "Fiction", 1);
+
+        model.booksRemoved(List.of(readded));
+        model.booksUpdated(List.of(readded));
+
+        assertEquals(List.of(), events);
+        assertEquals(-1, model.rowOf(readded));
+    }
+
+    private BooksTableModel model(List<Book> books) {
+        BooksTableModel model = new BooksTableModel();
+        model.setBooks(books);
+        model.addTableModelListener(e -> events.add(describe(e)));
+        return model;
+    }
+
+    private static String describe(TableModelEvent e) {
+        String type = e.getType() == TableModelEvent.INSERT ? "insert"
+                : e.getType() == TableModelEvent.DELETE ? "delete" : "update";
+        return type + " " + e.getFirstRow() + "-" + e.getLastRow();
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book(String.format("979-0-%07d", i), "Title " + i, "Author", "Fiction", 1));
+        }
+        return books;
+    }
+
+    private static List<Book> rows(BooksTableModel model) {
+        List<Book> rows = new ArrayList<>();
+        for (int i = 0; i < model.getRowCount(); i++) {
+            rows.add(model.getBookAt(i));
+        }
+        return rows;
+    }
+}
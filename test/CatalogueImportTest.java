@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogueImportTest {
+    private static final int BOOKS = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsCompletionOnlyOnceTheBooksAreCatalogued() throws IOException {
+        StringBuilder csv = new StringBuilder("isbn,title,author,category,copies\n");
+        for (int i = 0; i < BOOKS; i++) {
+            csv.append(String.format("979-0-%07d", i)).append(",Title ").append(i).append(",Author,Fiction,1\n");
+        }
+        Path file = Files.writeString(directory.resolve("catalogue.csv"), csv);
+        LibraryManager manager = new LibraryManager(false);
+        List<Integer> cataloguedAtUpdate = new ArrayList<>();
+        List<Boolean> completeAtUpdate = new ArrayList<>();
+
+        CatalogueImport.Result result = new CatalogueImport(manager, 2).importFile(file,
+                (records, bytesRead, totalBytes) -> {
+                    assertTrue(bytesRead <= totalBytes, bytesRead + " of " + totalBytes);
+                    completeAtUpdate.add(bytesRead == totalBytes);
+                    cataloguedAtUpdate.add(manager.getAllBooks().size());
+                });
+
+        assertEquals(BOOKS, result.getImported());
+        int last = completeAtUpdate.size() - 1;
+        assertTrue(completeAtUpdate.get(last));
+        assertFalse(completeAtUpdate.subList(0, last).contains(true), completeAtUpdate.toString());
+        assertEquals(BOOKS, cataloguedAtUpdate.get(last));
+    }
+}
@@ -0,0 +1,36 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IsbnTest {
+    @Test
+    void rewritesAValidIsbn10AsIts978Isbn13() {
+        assertEquals("9780134685991", Isbn.normalize("0-13-468599-7"));
+        assertEquals("9780134685991", Isbn.normalize("978-0-13-468599-1"));
+        assertEquals(Isbn.normalize("0 13 468599 7"), Isbn.normalize("9780134685991"));
+    }
+
+    @Test
+    void acceptsXAsAnIsbn10CheckDigit() {
+        assertEquals("9780804429573", Isbn.normalize("0-8044-2957-X"));
+        assertEquals("9780804429573", Isbn.normalize("080442957x"));
+    }
+
+    @Test
+    void keepsAMistypedIsbn10AsTyped() {
+        assertEquals("0134685998", Isbn.normalize("0-13-468599-8"));
+        assertEquals("0804429575", Isbn.normalize("0-8044-2957-5"));
+        assertEquals("12345X7890", Isbn.normalize("12345x7890"));
+    }
+
+    @Test
+    void findsABookByEitherForm() {
+        LibraryManager manager = new LibraryManager(false);
+        manager.addBook(new Book("978-0-13-468599-1", "Effective Java", "Joshua Bloch", "Programming", 3));
+        Book book = manager.findBookByIsbn("0134685997");
+        assertNotNull(book);
+        assertSame(book, manager.findBookByIsbn("978 0134685991"));
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void reportsValuesWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.getCount());
+        assertWithin(50_000_000, snapshot.valueAtPercentile(50));
+        assertWithin(99_000_000, snapshot.valueAtPercentile(99));
+        assertWithin(100_000_000, snapshot.getMaxNanos());
+        assertEquals(0, new LatencyHistogram().snapshot().valueAtPercentile(99));
+    }
+
+    @Test
+    void losesNoCountsToConcurrentRecorders() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        int threads = 8;
+        int perThread = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long nanos = 1000L << t;
+            Thread recorder = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(nanos);
+                }
+            });
+            recorders.add(recorder);
+            recorder.start();
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        LatencyHistogram.Snapshot recorded = histogram.snapshot().since(before);
+        assertEquals((long) threads * perThread, recorded.getCount());
+        assertWithin(1000, recorded.valueAtPercentile(100.0 / threads));
+        assertWithin(1000L << (threads - 1), recorded.getMaxNanos());
+    }
+
+    private static void assertWithin(long expected, long reported) {
+        assertTrue(Math.abs(reported - expected) <= expected / 64, reported + " for " + expected);
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryHttpServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private LibraryHttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        LibraryManager manager = new LibraryManager(false);
+        manager.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
+        manager.addBook(new Book("LOCAL+7", "Staff Handbook", "Library", "Reference", 1));
+        server = LibraryHttpServer.start(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void servesTheSearchAndSingleBookRoutes() throws Exception {
+        assertEquals(200, get("/books").statusCode());
+        assertEquals(200, get("/books/").statusCode());
+        HttpResponse<String> book = get("/books/978-0134685991");
+        assertEquals(200, book.statusCode());
+        assertTrue(book.body().contains("Effective Java"), book.body());
+    }
+
+    @Test
+    void keepsAPlusInThePathLiteral() throws Exception {
+        HttpResponse<String> plain = get("/books/LOCAL+7");
+        assertEquals(200, plain.statusCode(), plain.body());
+        assertTrue(plain.body().contains("Staff Handbook"), plain.body());
+        assertEquals(200, get("/books/LOCAL%2B7").statusCode());
+        assertEquals(404, get("/books/LOCAL%207").statusCode());
+    }
+
+    @Test
+    void answersOtherPathsUnderTheContextWithNotFound() throws Exception {
+        assertEquals(404, get("/booksXYZ").statusCode());
+        assertEquals(404, get("/books-978-0134685991").statusCode());
+        assertEquals(404, get("/books/978-0134685991/copies").statusCode());
+        assertEquals(404, get("/books//978-0134685991").statusCode());
+        assertEquals(404, get("/books/978-0000000000").statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + path);
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,178 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryJournalTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryKindOfChangeOnReopen() throws IOException {
+        List<String> expected;
+        LibraryManager manager = open();
+        try {
+            manager.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
+            manager.addBooks(List.of(new Book("978-0132350884", "Clean Code", "Robert Martin", "Programming", 2),
+                    new Book("978-0596007126", "Head First Design Patterns", "Eric Freeman", "Programming", 1)));
+            manager.addBook(new Book("978-1617294945", "Spring in Action", "Craig Walls", "Programming", 1));
+            manager.updateBook("978-0132350884", "Clean Code, 2nd ed.", "Robert C. Martin", "Craft", 4);
+            manager.removeBook("978-1617294945");
+            assertNotNull(manager.recordBorrow("978-0134685991", "Ada", "ada@example.org", DAY));
+            assertNotNull(manager.recordBorrow("978-0132350884", "Ada", "ada@example.org", DAY));
+            assertNotNull(manager.recordReturn("978-0134685991", "Ada", DAY.plusDays(3)));
+            manager.applyLoans(new LoanBatch()
+                    .borrow("978-0596007126", "Grace", "grace@example.org")
+                    .returnBook("978-0132350884", "Ada"), DAY.plusDays(5));
+            expected = TestLibraries.describe(manager);
+        } finally {
+            manager.close();
+        }
+
+        LibraryManager reopened = open();
+        try {
+            assertEquals(expected, TestLibraries.describe(reopened));
+            assertNull(reopened.findBookByIsbn("978-1617294945"));
+            assertEquals(0, reopened.findBookByIsbn("978-0596007126").getAvailableCopies());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void dropsATornTailAndKeepsAppendingAfterIt() throws IOException {
+        List<String> expected;
+        LibraryManager manager = open();
+        try {
+            manager.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
+            manager.recordBorrow("978-0134685991", "Ada", "ada@example.org", DAY);
+            expected = TestLibraries.describe(manager);
+        } finally {
+            manager.close();
+        }
+        Path segment = onlySegment();
+        long intact = Files.size(segment);
+        // A crash half way through the next entry: a header promising more
+        // bytes than made it to disk.
+        Files.write(segment, new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        LibraryManager reopened = open();
+        try {
+            assertEquals(expected, TestLibraries.describe(reopened));
+            assertEquals(intact, Files.size(segment));
+            reopened.recordReturn("978-0134685991", "Ada", DAY.plusDays(1));
+            expected = TestLibraries.describe(reopened);
+        } finally {
+            reopened.close();
+        }
+        LibraryManager again = open();
+        try {
+            assertEquals(expected, TestLibraries.describe(again));
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void dropsATailEntryWhoseChecksumDoesNotMatch() throws IOException {
+        List<String> expected;
+        LibraryManager manager = open();
+        try {
+            manager.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3));
+            expected = TestLibraries.describe(manager);
+            manager.addBook(new Book("978-0132350884", "Clean Code", "Robert Martin", "Programming", 2));
+        } finally {
+            manager.close();
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The last byte of the second entry's payload.
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), channel.size() - 1);
+        }
+
+        LibraryManager reopened = open();
+        try {
+            assertEquals(expected, TestLibraries.describe(reopened));
+            assertNull(reopened.findBookByIsbn("978-0132350884"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void refusesADamagedSealedSegment() throws IOException {
+        LibraryManager manager = new LibraryManager(false);
+        LibraryJournal journal = LibraryJournal.open(directory, 0, LibraryJournal.SyncMode.PER_BATCH, manager);
+        journal.awaitDurable(journal.bookAdded(new Book("978-0134685991", "Effective Java", "Joshua Bloch",
+                "Programming", 3)));
+        journal.rotate();
+        journal.close();
+        Path sealed = directory.resolve("journal-0000000000.log");
+        Files.write(sealed, new byte[] {0, 0, 0, 100}, StandardOpenOption.APPEND);
+
+        IOException failure = assertThrows(IOException.class,
+                () -> LibraryJournal.open(directory, 0, LibraryJournal.SyncMode.PER_BATCH, new LibraryManager(false)));
+        assertTrue(failure.getMessage().contains("damaged"), failure.getMessage());
+    }
+
+    @Test
+    void failsWaitersOnceTheWriterIsInterrupted() throws Exception {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        LibraryJournal journal = LibraryJournal.open(directory, 0, LibraryJournal.SyncMode.PER_BATCH,
+                new LibraryManager(false));
+        try {
+            Thread writer = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("library-journal") && !before.contains(thread))
+                    .findFirst().orElseThrow();
+            // Appending before the writer has exited could race its wake-up
+            // and fail the write on the interrupted channel instead.
+            writer.interrupt();
+            writer.join(10_000);
+            assertFalse(writer.isAlive());
+            long ticket = journal.bookRemoved("978-0134685991");
+
+            UncheckedIOException failure = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(UncheckedIOException.class, () -> journal.awaitDurable(ticket)));
+            assertInstanceOf(InterruptedIOException.class, failure.getCause());
+        } finally {
+            journal.close();
+        }
+    }
+
+    private LibraryManager open() throws IOException {
+        return new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH, false);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .collect(Collectors.toList());
+            assertEquals(1, segments.size(), segments.toString());
+            return segments.get(0);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LibraryMetricsTest {
+    @Test
+    void addsUpTheHistogramsOfEveryManager() throws IOException {
+        LibraryMetrics.Snapshot before = LibraryMetrics.snapshot();
+        ShardedLibrary library = new ShardedLibrary(4);
+        LibraryManager single = new LibraryManager(false);
+        for (int i = 0; i < 40; i++) {
+            Book book = new Book(String.format("979-0-%07d", i), "Title " + i, "Author", "Fiction", 1);
+            library.addBook(book);
+            if (i < 3) {
+                single.addBook(new Book(book.getIsbn(), book.getTitle(), "Author", "Fiction", 1));
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            library.borrowBook(String.format("979-0-%07d", i), "Ada", "ada@example.org");
+        }
+        for (int i = 0; i < 3; i++) {
+            single.borrowBook(String.format("979-0-%07d", i), "Ada", "ada@example.org");
+            single.returnBook(String.format("979-0-%07d", i), "Ada");
+        }
+        library.searchBooks("Title");
+        library.close();
+
+        LibraryMetrics.Snapshot recorded = LibraryMetrics.snapshot().since(before);
+        assertEquals(43, recorded.get(LibraryMetrics.Operation.BORROW).getCount());
+        assertEquals(3, recorded.get(LibraryMetrics.Operation.RETURN).getCount());
+        assertEquals(1, recorded.get(LibraryMetrics.Operation.SEARCH).getCount());
+        assertEquals(0, recorded.get(LibraryMetrics.Operation.LOAN_BATCH).getCount());
+    }
+}
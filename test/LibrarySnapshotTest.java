@@ -0,0 +1,117 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibrarySnapshotTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesAndLoadsTheCatalogueAndHistory() throws IOException {
+        LibraryManager manager = new LibraryManager(false);
+        populate(manager);
+
+        LibrarySnapshot.write(directory, 7, manager.getAllBooks(), manager.getAllBorrowRecords());
+        LibraryManager loaded = new LibraryManager(false);
+        assertEquals(7, LibrarySnapshot.loadLatest(directory, loaded));
+
+        assertEquals(TestLibraries.describe(manager), TestLibraries.describe(loaded));
+        assertEquals(manager.getActiveBorrowRecords().size(), loaded.getActiveBorrowRecords().size());
+        assertEquals(manager.getActiveLoansForBorrower("Ada").size(), loaded.getActiveLoansForBorrower("Ada").size());
+        LibraryStats before = manager.getStats();
+        LibraryStats after = loaded.getStats();
+        assertEquals(before.getTitles(), after.getTitles());
+        assertEquals(before.getTotalCopies(), after.getTotalCopies());
+        assertEquals(before.getAvailableCopies(), after.getAvailableCopies());
+        assertEquals(before.getLoansRecorded(), after.getLoansRecorded());
+        assertEquals(before.getActiveLoans(), after.getActiveLoans());
+        assertEquals(before.getTitlesByCategory(), after.getTitlesByCategory());
+    }
+
+    @Test
+    void compactionKeepsStateAcrossRestartAndDropsOldSegments() throws IOException {
+        List<String> expected;
+        LibraryManager manager = open();
+        try {
+            populate(manager);
+            manager.compact();
+            // Changes after the snapshot come back from the journal.
+            manager.addBook(new Book("978-1617294945", "Spring in Action", "Craig Walls", "Programming", 1));
+            manager.recordBorrow("978-1617294945", "Grace", "grace@example.org", DAY.plusDays(9));
+            manager.recordReturn("978-0132350884", "Grace", DAY.plusDays(9));
+            expected = TestLibraries.describe(manager);
+        } finally {
+            manager.close();
+        }
+
+        assertEquals(List.of("journal-0000000001.log", "snapshot-0000000001.bin"), files());
+        LibraryManager reopened = open();
+        try {
+            assertEquals(expected, TestLibraries.describe(reopened));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void refusesADamagedSnapshot() throws IOException {
+        LibraryManager manager = new LibraryManager(false);
+        populate(manager);
+        LibrarySnapshot.write(directory, 1, manager.getAllBooks(), manager.getAllBorrowRecords());
+        Path snapshot = directory.resolve("snapshot-0000000001.bin");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, 20);
+            one.put(0, (byte) (one.get(0) ^ 1));
+            one.rewind();
+            channel.write(one, 20);
+        }
+
+        IOException failure = assertThrows(IOException.class,
+                () -> LibrarySnapshot.loadLatest(directory, new LibraryManager(false)));
+        assertTrue(failure.getMessage().contains("damaged"), failure.getMessage());
+    }
+
+    // Books with repeated and non-ASCII strings, open and returned loans,
+    // some of them archived.
+    private static void populate(LibraryManager manager) {
+        manager.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", "Programming", 3,
+                LocalDate.of(2020, 1, 15)));
+        manager.addBook(new Book("978-0132350884", "Clean Code", "Robert Martin", "Programming", 2));
+        manager.addBook(new Book("978-0596007126", "Ébauches — 設計", "Eric Freeman", "Design", 2));
+        manager.recordBorrow("978-0134685991", "Ada", "ada@example.org", DAY);
+        manager.recordBorrow("978-0132350884", "Ada", "ada@example.org", DAY);
+        manager.recordReturn("978-0134685991", "Ada", DAY.plusDays(4));
+        manager.archiveReturnedLoans();
+        manager.recordBorrow("978-0134685991", "Ada", "ada@example.org", DAY.plusDays(5));
+        manager.recordBorrow("978-0596007126", "Grace", "grace@example.org", DAY.plusDays(6));
+        manager.recordBorrow("978-0132350884", "Grace", "grace@example.org", DAY.plusDays(6));
+        manager.recordReturn("978-0596007126", "Grace", DAY.plusDays(8));
+    }
+
+    private LibraryManager open() throws IOException {
+        return new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH, false);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
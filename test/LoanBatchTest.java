@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanBatchTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    private static final String JAVA = "978-0134685991";
+    private static final String CLEAN_CODE = "978-0132350884";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsAnOutcomePerItemInOrder() {
+        LibraryManager manager = new LibraryManager(false, LibraryClock.fixed(DAY));
+        addBooks(manager);
+        manager.recordBorrow(CLEAN_CODE, "Grace", "grace@example.org", DAY.minusDays(3));
+
+        List<LoanBatch.Result> results = manager.applyLoans(new LoanBatch()
+                .borrow(JAVA, "Ada", "ada@example.org")
+                .borrow("9780134685991", "Linus", "linus@example.org")
+                .borrow(JAVA, "Edsger", "edsger@example.org")
+                .borrow("978-0000000000", "Ada", "ada@example.org")
+                .returnBook(CLEAN_CODE, "Grace")
+                .returnBook(CLEAN_CODE, "Grace")
+                .returnBook(JAVA, "Ada"));
+
+        assertEquals(List.of(LoanBatch.Outcome.BORROWED, LoanBatch.Outcome.BORROWED, LoanBatch.Outcome.UNAVAILABLE,
+                LoanBatch.Outcome.UNKNOWN_ISBN, LoanBatch.Outcome.RETURNED, LoanBatch.Outcome.NO_OPEN_LOAN,
+                LoanBatch.Outcome.RETURNED), outcomes(results));
+        for (LoanBatch.Result result : results) {
+            assertEquals(result.succeeded(), result.getRecord() != null, result.getOutcome().toString());
+        }
+        assertNull(results.get(3).getBook());
+        assertSame(manager.findBookByIsbn(JAVA), results.get(2).getBook());
+
+        // Ada's loan was opened and closed within the batch; Linus's is open.
+        assertEquals(1, manager.findBookByIsbn(JAVA).getAvailableCopies());
+        assertEquals(1, manager.findBookByIsbn(CLEAN_CODE).getAvailableCopies());
+        assertTrue(results.get(6).getRecord().isReturned());
+        assertEquals(DAY, results.get(6).getRecord().getReturnDate());
+        assertFalse(results.get(1).getRecord().isReturned());
+        assertEquals(1, manager.getActiveLoansForBorrower("Linus").size());
+        assertTrue(manager.getActiveLoansForBorrower("Ada").isEmpty());
+        assertTrue(manager.getActiveLoansForBorrower("Grace").isEmpty());
+        assertEquals(1, manager.getStats().getActiveLoans());
+    }
+
+    @Test
+    void aBatchOfFailuresChangesNothing() {
+        LibraryManager manager = new LibraryManager(false, LibraryClock.fixed(DAY));
+        addBooks(manager);
+        List<String> before = TestLibraries.describe(manager);
+
+        List<LoanBatch.Result> results = manager.applyLoans(new LoanBatch()
+                .borrow("978-0000000000", "Ada", "ada@example.org")
+                .returnBook(JAVA, "Ada"));
+
+        assertEquals(List.of(LoanBatch.Outcome.UNKNOWN_ISBN, LoanBatch.Outcome.NO_OPEN_LOAN), outcomes(results));
+        assertEquals(before, TestLibraries.describe(manager));
+    }
+
+    @Test
+    void replaysTheAppliedItemsFromTheJournal() throws IOException {
+        List<String> expected;
+        LibraryManager manager = new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH, false);
+        try {
+            addBooks(manager);
+            manager.applyLoans(new LoanBatch()
+                    .borrow(JAVA, "Ada", "ada@example.org")
+                    .borrow(JAVA, "Linus", "linus@example.org")
+                    .borrow(JAVA, "Edsger", "edsger@example.org")
+                    .borrow(CLEAN_CODE, "Grace", "grace@example.org"), DAY);
+            manager.applyLoans(new LoanBatch()
+                    .returnBook(JAVA, "Ada")
+                    .returnBook(CLEAN_CODE, "Ada"), DAY.plusDays(2));
+            expected = TestLibraries.describe(manager);
+        } finally {
+            manager.close();
+        }
+
+        LibraryManager reopened = new LibraryManager(directory, LibraryJournal.SyncMode.PER_BATCH, false);
+        try {
+            assertEquals(expected, TestLibraries.describe(reopened));
+            assertEquals(1, reopened.findBookByIsbn(JAVA).getAvailableCopies());
+            assertEquals(1, reopened.getActiveLoansForBorrower("Linus").size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void addBooks(LibraryManager manager) {
+        manager.addBook(new Book(JAVA, "Effective Java", "Joshua Bloch", "Programming", 2));
+        manager.addBook(new Book(CLEAN_CODE, "Clean Code", "Robert Martin", "Programming", 1));
+    }
+
+    private static List<LoanBatch.Outcome> outcomes(List<LoanBatch.Result> results) {
+        List<LoanBatch.Outcome> outcomes = new ArrayList<>();
+        for (LoanBatch.Result result : results) {
+            outcomes.add(result.getOutcome());
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,342 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanQueryTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 1);
+    private static final int TITLES = 300;
+
+    // Random queries over a history with archived, returned and open loans,
+    // paged to the end through cursors and checked against filtering and
+    // sorting every record.
+    @Test
+    void pagesMatchFilteringAndSortingEveryRecord() {
+        Random random = new Random(42);
+        LibraryManager manager = historyOf(random, 40_000);
+        LocalDate first = TODAY.minusDays(400);
+        LoanQuery.Column[] columns = LoanQuery.Column.values();
+        for (int run = 0; run < 300; run++) {
+            Filters filters = new Filters(columns[random.nextInt(columns.length)], random.nextBoolean());
+            if (random.nextInt(3) == 0) {
+                filters.borrower = "Member " + random.nextInt(55);
+            }
+            if (random.nextInt(4) == 0) {
+                filters.isbn = isbn(random.nextInt(TITLES));
+            }
+            if (random.nextBoolean()) {
+                filters.status = LoanQuery.Status.values()[random.nextInt(3)];
+            }
+            if (random.nextInt(3) == 0) {
+                filters.borrowedFrom = maybe(random, first.plusDays(random.nextInt(400)));
+                filters.borrowedTo = maybe(random, first.plusDays(random.nextInt(420)));
+            }
+            if (random.nextInt(4) == 0) {
+                filters.dueFrom = maybe(random, first.plusDays(random.nextInt(420)));
+                filters.dueTo = maybe(random, first.plusDays(random.nextInt(420)));
+            }
+            if (random.nextInt(4) == 0) {
+                filters.returnedFrom = maybe(random, first.plusDays(random.nextInt(420)));
+                filters.returnedTo = maybe(random, first.plusDays(random.nextInt(420)));
+            }
+            LoanQuery query = filters.query().pageSize(1 + random.nextInt(random.nextBoolean() ? 20 : 3000));
+
+            List<String> expected = bruteForce(manager.getAllBorrowRecords(), filters);
+            assertEquals(expected, allPages(manager, query), "run " + run);
+        }
+    }
+
+    @Test
+    void laterPagesComeFromTheFirstPagesSnapshot() {
+        LibraryManager manager = historyOf(new Random(7), 5_000);
+        Filters filters = new Filters(LoanQuery.Column.TITLE, false);
+        LoanQuery query = filters.query().pageSize(50);
+        List<String> expected = bruteForce(manager.getAllBorrowRecords(), filters);
+
+        LoanQuery.Page page = manager.queryBorrowRecords(query);
+        List<String> seen = new ArrayList<>();
+        for (BorrowRecord record : page.getRecords()) {
+            seen.add(TestLibraries.describe(record));
+        }
+        // New loans, returns and archiving after the first page must not
+        // shift the rest of it.
+        for (int i = 0; i < TITLES; i++) {
+            manager.recordBorrow(isbn(i), "Late " + i, "late@example.org", TODAY);
+        }
+        manager.recordReturn(isbn(0), "Late 0", TODAY);
+        manager.archiveReturnedLoans();
+        query.sortBy(LoanQuery.Column.BORROWER, true);
+        while (page.getNext() != null) {
+            page = manager.queryBorrowRecords(page.getNext());
+            for (BorrowRecord record : page.getRecords()) {
+                seen.add(TestLibraries.describe(record));
+            }
+        }
+        assertEquals(expected, seen);
+    }
+
+    // More archived rows than LoanQuery sorts up front, so pages are read
+    // from the archive's indexes in sort order.
+    @Test
+    void pagesALargeArchiveInIndexOrder() {
+        int rows = 1_100_000;
+        int books = 1_000;
+        int borrowers = 700;
+        int firstDay = (int) TODAY.toEpochDay() - 2_000;
+        LibraryManager manager = new LibraryManager(false, LibraryClock.fixed(TODAY));
+        int[] book = new int[rows];
+        int[] borrower = new int[rows];
+        int[] borrowDay = new int[rows];
+        int[] returnDay = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            book[row] = (int) ((row * 7919L) % books);
+            borrower[row] = (int) ((row * 31L) % borrowers);
+            borrowDay[row] = firstDay + row / 1_000;
+            returnDay[row] = borrowDay[row] + row % 21;
+            manager.restoreReturnedLoan(isbn(book[row]), title(book[row]), borrowerName(borrower[row]),
+                    "b" + borrower[row] + "@example.org", borrowDay[row], returnDay[row]);
+        }
+
+        Comparator<Integer> byTitle = Comparator.comparingInt(row -> book[row]);
+        checkFirstPages(manager, new LoanQuery().sortBy(LoanQuery.Column.TITLE, false), rows,
+                byTitle.thenComparingInt(row -> row));
+        checkFirstPages(manager, new LoanQuery().sortBy(LoanQuery.Column.TITLE, true), rows,
+                byTitle.thenComparingInt(row -> row).reversed());
+
+        int from = firstDay + 20;
+        Comparator<Integer> byBorrower = Comparator.comparingInt(row -> borrower[row]);
+        checkFirstPages(manager, new LoanQuery().sortBy(LoanQuery.Column.BORROWER, true)
+                        .borrowedBetween(LocalDate.ofEpochDay(from), null), rows,
+                byBorrower.thenComparingInt(row -> row).reversed(), row -> borrowDay[row] >= from);
+
+        checkFirstPages(manager, new LoanQuery().sortBy(LoanQuery.Column.STATUS, false), rows,
+                Comparator.comparingInt(row -> row));
+        checkFirstPages(manager, new LoanQuery().sortBy(LoanQuery.Column.STATUS, true), rows,
+                Comparator.<Integer>comparingInt(row -> row).reversed());
+
+        Comparator<Integer> byReturn = Comparator.comparingInt(row -> returnDay[row]);
+        checkFirstPages(manager, new LoanQuery().borrower(borrowerName(42))
+                        .sortBy(LoanQuery.Column.RETURN_DATE, true), rows,
+                byReturn.thenComparingInt(row -> row).reversed(), row -> borrower[row] == 42);
+    }
+
+    private static void checkFirstPages(LibraryManager manager, LoanQuery query, int rows,
+                                        Comparator<Integer> order) {
+        checkFirstPages(manager, query, rows, order, row -> true);
+    }
+
+    // The first three pages against every matching archived row sorted.
+    private static void checkFirstPages(LibraryManager manager, LoanQuery query, int rows,
+                                        Comparator<Integer> order, IntPredicate matches) {
+        List<Integer> matching = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (matches.test(row)) {
+                matching.add(row);
+            }
+        }
+        matching.sort(order);
+        List<BorrowRecord> history = manager.getAllBorrowRecords();
+        List<String> expected = new ArrayList<>();
+        for (int row : matching.subList(0, Math.min(matching.size(), 3 * 400))) {
+            expected.add(TestLibraries.describe(history.get(row)));
+        }
+
+        List<String> pages = new ArrayList<>();
+        LoanQuery.Page page = manager.queryBorrowRecords(query.pageSize(400));
+        for (int i = 0; i < 3 && page != null; i++) {
+            for (BorrowRecord record : page.getRecords()) {
+                pages.add(TestLibraries.describe(record));
+            }
+            page = page.getNext() != null ? manager.queryBorrowRecords(page.getNext()) : null;
+        }
+        assertEquals(expected, pages, query.getSortColumn() + (query.isDescending() ? " descending" : ""));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        LibraryManager manager = new LibraryManager(false, LibraryClock.fixed(TODAY));
+        manager.addBook(new Book(isbn(0), title(0), "Author", "Fiction", 5));
+        for (int i = 0; i < 4; i++) {
+            manager.recordBorrow(isbn(0), "Member " + i, "m@example.org", TODAY.minusDays(i));
+        }
+
+        LoanQuery.Page page = manager.queryBorrowRecords(new LoanQuery().pageSize(2));
+        assertEquals(2, page.getRecords().size());
+        page = manager.queryBorrowRecords(page.getNext());
+        assertEquals(2, page.getRecords().size());
+        assertNull(page.getNext());
+
+        LoanQuery.Page none = manager.queryBorrowRecords(new LoanQuery().borrower("Nobody"));
+        assertTrue(none.getRecords().isEmpty());
+        assertNull(none.getNext());
+    }
+
+    // Loans over 400 days among TITLES books and 50 members, some with two
+    // email addresses, with returns archived along the way.
+    private static LibraryManager historyOf(Random random, int operations) {
+        LibraryManager manager = new LibraryManager(false, LibraryClock.fixed(TODAY));
+        for (int i = 0; i < TITLES; i++) {
+            manager.addBook(new Book(isbn(i), (i % 7 == 0 ? "alpha " : "Beta ") + i, "Author", "Fiction", 50));
+        }
+        LocalDate first = TODAY.minusDays(400);
+        List<String[]> open = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            LocalDate day = first.plusDays((long) i * 400 / operations);
+            if (!open.isEmpty() && random.nextInt(3) > 0) {
+                String[] loan = open.remove(random.nextInt(open.size()));
+                manager.recordReturn(loan[0], loan[1], day.plusDays(random.nextInt(5)));
+            } else {
+                String isbn = isbn(random.nextInt(TITLES));
+                String member = "Member " + random.nextInt(50);
+                String email = (random.nextBoolean() ? "x" : "Y") + member + "@example.org";
+                if (manager.recordBorrow(isbn, member, email, day) != null) {
+                    open.add(new String[] {isbn, member});
+                }
+            }
+            if (i % (operations / 4) == 0) {
+                manager.archiveReturnedLoans();
+            }
+        }
+        return manager;
+    }
+
+    private static List<String> allPages(LibraryManager manager, LoanQuery query) {
+        List<String> records = new ArrayList<>();
+        LoanQuery.Page page = manager.queryBorrowRecords(query);
+        while (true) {
+            for (BorrowRecord record : page.getRecords()) {
+                records.add(TestLibraries.describe(record));
+            }
+            if (page.getNext() == null) {
+                return records;
+            }
+            assertFalse(page.getRecords().isEmpty(), "empty page with a cursor");
+            page = manager.queryBorrowRecords(page.getNext());
+        }
+    }
+
+    private static List<String> bruteForce(List<BorrowRecord> history, Filters filters) {
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < history.size(); position++) {
+            if (filters.matches(history.get(position))) {
+                positions.add(position);
+            }
+        }
+        positions.sort((first, second) -> {
+            int order = filters.compare(history.get(first), history.get(second));
+            if (order == 0) {
+                order = Integer.compare(first, second);
+            }
+            return filters.descending ? -order : order;
+        });
+        List<String> records = new ArrayList<>();
+        for (int position : positions) {
+            records.add(TestLibraries.describe(history.get(position)));
+        }
+        return records;
+    }
+
+    private static LocalDate maybe(Random random, LocalDate date) {
+        return random.nextBoolean() ? date : null;
+    }
+
+    private static String isbn(int book) {
+        return String.format("979-0-%07d", book);
+    }
+
+    private static String title(int book) {
+        return String.format("Title %04d", book);
+    }
+
+    private static String borrowerName(int borrower) {
+        return String.format("Borrower %03d", borrower);
+    }
+
+    // A query's settings, applied record by record the slow way.
+    private static final class Filters {
+        final LoanQuery.Column column;
+        final boolean descending;
+        String borrower;
+        String isbn;
+        LoanQuery.Status status;
+        LocalDate borrowedFrom;
+        LocalDate borrowedTo;
+        LocalDate dueFrom;
+        LocalDate dueTo;
+        LocalDate returnedFrom;
+        LocalDate returnedTo;
+
+        Filters(LoanQuery.Column column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        LoanQuery query() {
+            LoanQuery query = new LoanQuery().sortBy(column, descending).borrower(borrower).isbn(isbn).status(status);
+            if (borrowedFrom != null || borrowedTo != null) {
+                query.borrowedBetween(borrowedFrom, borrowedTo);
+            }
+            if (dueFrom != null || dueTo != null) {
+                query.dueBetween(dueFrom, dueTo);
+            }
+            if (returnedFrom != null || returnedTo != null) {
+                query.returnedBetween(returnedFrom, returnedTo);
+            }
+            return query;
+        }
+
+        boolean matches(BorrowRecord record) {
+            boolean returned = record.isReturned();
+            if (status == LoanQuery.Status.OPEN && returned || status == LoanQuery.Status.RETURNED && !returned
+                    || status == LoanQuery.Status.OVERDUE && (returned || !TODAY.isAfter(record.getDueDate()))) {
+                return false;
+            }
+            if ((returnedFrom != null || returnedTo != null) && !returned) {
+                return false;
+            }
+            return within(record.getBorrowDate(), borrowedFrom, borrowedTo)
+                    && within(record.getDueDate(), dueFrom, dueTo)
+                    && (!returned || within(record.getReturnDate(), returnedFrom, returnedTo))
+                    && (borrower == null || borrower.equals(record.getBorrowerName()))
+                    && (isbn == null || Isbn.normalize(isbn).equals(Isbn.normalize(record.getIsbn())));
+        }
+
+        private static boolean within(LocalDate date, LocalDate from, LocalDate to) {
+            return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+        }
+
+        // Ascending order by the sort column alone; open loans return last,
+        // and statuses go active, overdue, returned.
+        int compare(BorrowRecord first, BorrowRecord second) {
+            switch (column) {
+                case ISBN: return String.CASE_INSENSITIVE_ORDER.compare(first.getIsbn(), second.getIsbn());
+                case TITLE: return String.CASE_INSENSITIVE_ORDER.compare(first.getTitle(), second.getTitle());
+                case BORROWER:
+                    return String.CASE_INSENSITIVE_ORDER.compare(first.getBorrowerName(), second.getBorrowerName());
+                case EMAIL:
+                    return String.CASE_INSENSITIVE_ORDER.compare(first.getBorrowerEmail(), second.getBorrowerEmail());
+                case BORROW_DATE: return first.getBorrowDate().compareTo(second.getBorrowDate());
+                case DUE_DATE: return first.getDueDate().compareTo(second.getDueDate());
+                case RETURN_DATE: return Long.compare(returnDay(first), returnDay(second));
+                default: return Integer.compare(status(first), status(second));
+            }
+        }
+
+        private static long returnDay(BorrowRecord record) {
+            return record.isReturned() ? record.getReturnDate().toEpochDay() : Long.MAX_VALUE;
+        }
+
+        private static int status(BorrowRecord record) {
+            return record.isReturned() ? 2 : TODAY.isAfter(record.getDueDate()) ? 1 : 0;
+        }
+    }
+}
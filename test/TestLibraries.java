@@ -0,0 +1,30 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Helpers shared by the tests.
+final class TestLibraries {
+    private TestLibraries() {
+    }
+
+    // The catalogue, with copy counts, and every loan, as lines sorted so
+    // that two managers holding the same state describe it the same way
+    // whatever order their history is kept in.
+    static List<String> describe(LibraryManager manager) {
+        List<String> lines = new ArrayList<>();
+        for (Book book : manager.getAllBooks()) {
+            lines.add("book " + book.getIsbn() + " | " + book.getTitle() + " | " + book.getAuthor() + " | "
+                    + book.getCategory() + " | " + book.getAvailableCopies() + "/" + book.getTotalCopies() + " | "
+                    + book.getDateAdded());
+        }
+        for (BorrowRecord record : manager.getAllBorrowRecords()) {
+            lines.add("loan " + describe(record));
+        }
+        lines.sort(null);
+        return lines;
+    }
+
+    static String describe(BorrowRecord record) {
+        return record.getIsbn() + " | " + record.getTitle() + " | " + record.getBorrowerName() + " | "
+                + record.getBorrowerEmail() + " | " + record.getBorrowDate() + " | " + record.getReturnDate();
+    }
+}
@@ -0,0 +1,255 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionedListTest {
+    // VersionedList's chunk size.
+    private static final int CHUNK = 1024;
+    private static final int WRITERS = 4;
+    private static final int ADDS_PER_WRITER = 40_000;
+
+    // Removes by sequence across compactions: the first one builds the base,
+    // the later ones share its leading chunks, and snapshots taken before
+    // each keep what they saw.
+    @Test
+    void removesBySequenceAcrossCompactionsThatShareBaseChunks() {
+        VersionedList<Long> list = new VersionedList<>();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long i = 0; i < 5 * CHUNK; i++) {
+            assertEquals(i, list.add(i));
+            expected.add(i);
+        }
+
+        assertTrue(remove(list, expected, 5000));
+        List<Long> first = List.copyOf(list.snapshot());
+        VersionedList.Snapshot<Long> firstSnapshot = list.snapshot();
+        assertEquals(List.copyOf(expected), first);
+
+        // Now in the base's last chunk; chunks 0-3 are shared by the next compaction.
+        assertTrue(remove(list, expected, 4500));
+        VersionedList.Snapshot<Long> second = list.snapshot();
+        assertEquals(List.copyOf(expected), second);
+
+        // Inside a shared chunk, and either side of a chunk boundary.
+        assertTrue(remove(list, expected, 100));
+        assertTrue(remove(list, expected, CHUNK - 1));
+        assertTrue(remove(list, expected, CHUNK));
+        assertFalse(list.remove(5000));
+        assertFalse(list.remove(4500));
+        assertFalse(list.remove(5 * CHUNK));
+        for (long i = 5 * CHUNK; i < 6 * CHUNK + 10; i++) {
+            assertEquals(i, list.add(i));
+            expected.add(i);
+        }
+        assertTrue(remove(list, expected, 6 * CHUNK + 3));
+        assertTrue(remove(list, expected, 2 * CHUNK + 7));
+        assertEquals(List.copyOf(expected), list.snapshot());
+        assertEquals(expected.size(), list.size());
+
+        assertTrue(list.removeIf(value -> value % 1000 == 0));
+        expected.removeIf(value -> value % 1000 == 0);
+        assertFalse(list.remove(3000));
+        assertEquals(List.copyOf(expected), list.snapshot());
+
+        // Older snapshots still see the base they were taken from.
+        assertEquals(first, firstSnapshot);
+        assertTrue(second.contains(100L) && second.contains(5L * CHUNK - 1) && !second.contains(4500L));
+    }
+
+    // Writers add while a remover removes by sequence and by filter, and
+    // snapshots are taken throughout. Each snapshot must hold every element
+    // whose add returned and whose removal had not started before it was
+    // taken, none whose removal had finished, no gaps, each in sequence
+    // order, and must not change afterwards.
+    @Test
+    void snapshotsArePointInTimeWhileAddsAndRemovesRace() throws Exception {
+        VersionedList<Item> list = new VersionedList<>();
+        Item[][] items = new Item[WRITERS][ADDS_PER_WRITER];
+        AtomicInteger[] added = new AtomicInteger[WRITERS];
+        for (int w = 0; w < WRITERS; w++) {
+            added[w] = new AtomicInteger();
+            for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                items[w][i] = new Item(w, i);
+            }
+        }
+        AtomicInteger writersLeft = new AtomicInteger(WRITERS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(guarded(failure, () -> {
+                start.await();
+                try {
+                    for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                        Item item = items[writer][i];
+                        item.sequence = list.add(item);
+                        added[writer].set(i + 1);
+                    }
+                } finally {
+                    writersLeft.decrementAndGet();
+                }
+            })));
+        }
+
+        threads.add(new Thread(guarded(failure, () -> {
+            Random random = new Random(7);
+            start.await();
+            for (int round = 0; writersLeft.get() > 0; round++) {
+                int writer = random.nextInt(WRITERS);
+                int count = added[writer].get();
+                if (count == 0) {
+                    Thread.yield();
+                    continue;
+                }
+                if (round % 500 == 499) {
+                    int modulus = 1000 + round % 7;
+                    List<Item> matched = new ArrayList<>();
+                    list.removeIf(item -> {
+                        boolean match = !item.removeStarted && item.index % modulus == 3;
+                        if (match) {
+                            item.removeStarted = true;
+                            matched.add(item);
+                        }
+                        return match;
+                    });
+                    for (Item item : matched) {
+                        item.removed = true;
+                    }
+                    continue;
+                }
+                Item item = items[writer][random.nextInt(count)];
+                if (!item.removeStarted) {
+                    item.removeStarted = true;
+                    assertTrue(list.remove(item.sequence), item.toString());
+                    item.removed = true;
+                    assertFalse(list.remove(item.sequence), item.toString());
+                }
+            }
+        })));
+
+        List<List<Item>> kept = new ArrayList<>();
+        List<VersionedList.Snapshot<Item>> keptSnapshots = new ArrayList<>();
+        AtomicInteger snapshots = new AtomicInteger();
+        threads.add(new Thread(guarded(failure, () -> {
+            start.await();
+            while (writersLeft.get() > 0) {
+                int[] addedBefore = new int[WRITERS];
+                for (int w = 0; w < WRITERS; w++) {
+                    addedBefore[w] = added[w].get();
+                }
+                boolean[][] removedBefore = new boolean[WRITERS][];
+                for (int w = 0; w < WRITERS; w++) {
+                    removedBefore[w] = new boolean[addedBefore[w]];
+                    for (int i = 0; i < addedBefore[w]; i++) {
+                        removedBefore[w][i] = items[w][i].removed;
+                    }
+                }
+                VersionedList.Snapshot<Item> snapshot = list.snapshot();
+                boolean[][] present = new boolean[WRITERS][ADDS_PER_WRITER];
+                int[] last = new int[WRITERS];
+                Arrays.fill(last, -1);
+                for (Item item : snapshot) {
+                    assertNotNull(item, "gap in snapshot");
+                    assertTrue(item.index > last[item.writer], "out of order: " + item);
+                    last[item.writer] = item.index;
+                    present[item.writer][item.index] = true;
+                }
+                for (int w = 0; w < WRITERS; w++) {
+                    for (int i = 0; i < addedBefore[w]; i++) {
+                        Item item = items[w][i];
+                        if (removedBefore[w][i]) {
+                            assertFalse(present[w][i], "removed but listed: " + item);
+                        } else if (!item.removeStarted) {
+                            assertTrue(present[w][i], "added but missing: " + item);
+                        }
+                    }
+                }
+                if (snapshots.getAndIncrement() % 20 == 0) {
+                    kept.add(new ArrayList<>(snapshot));
+                    keptSnapshots.add(snapshot);
+                }
+            }
+        })));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(snapshots.get() > 0);
+
+        for (int s = 0; s < kept.size(); s++) {
+            assertEquals(kept.get(s), keptSnapshots.get(s), "snapshot changed after it was taken");
+            long previous = -1;
+            for (Item item : kept.get(s)) {
+                assertTrue(item.sequence > previous, "not in sequence order: " + item);
+                previous = item.sequence;
+            }
+        }
+        List<Item> survivors = new ArrayList<>();
+        for (Item[] writerItems : items) {
+            for (Item item : writerItems) {
+                if (!item.removeStarted) {
+                    survivors.add(item);
+                }
+            }
+        }
+        survivors.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        assertEquals(survivors, list.snapshot());
+    }
+
+    private static boolean remove(VersionedList<Long> list, TreeSet<Long> expected, long sequence) {
+        expected.remove(sequence);
+        return list.remove(sequence);
+    }
+
+    private static Runnable guarded(AtomicReference<Throwable> failure, Task task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static final class Item {
+        final int writer;
+        final int index;
+        volatile long sequence;
+        volatile boolean removeStarted;
+        volatile boolean removed;
+
+        Item(int writer, int index) {
+            this.writer = writer;
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            return "writer " + writer + " item " + index + " sequence " + sequence;
+        }
+    }
+}